@@ -0,0 +1,19 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// JMH entry point that always attaches the GC profiler, so every result reports its allocation rate.
+// Accepts the usual JMH command line, e.g. "java -jar benchmarks.jar PlotLine -p bufferSize=2000".
+public class BenchmarkMain {
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import ingest.CobsFrameDecoder;
+import ingest.LineParser;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Decodes the same 1000 rows of samples from the text format and from COBS-framed float32 packets.
+// Both chunks are fed in 64-byte reads, like a serial port delivers them.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecoderBenchmark {
+    private static final int ROWS = 1000;
+    private static final int READ_SIZE = 64;
+
+    @Param({"1", "8"})
+    public int channels;
+
+    private byte[] textChunk;
+    private byte[] labeledChunk;
+    private byte[] binaryChunk;
+    private LineParser lineParser;
+    private CobsFrameDecoder frameDecoder;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        StringBuilder labeled = new StringBuilder();
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+
+        for (int row = 0; row < ROWS; row++) {
+            ByteBuffer packet = ByteBuffer.allocate(2 + channels * 4).order(ByteOrder.LITTLE_ENDIAN);
+            packet.put((byte) CobsFrameDecoder.TYPE_FLOAT32).put((byte) channels);
+            for (int c = 0; c < channels; c++) {
+                float value = (float) (random.nextGaussian() * 100);
+                text.append(c == 0 ? "" : ",").append(String.format("%.3f", value));
+                labeled.append(c == 0 ? "" : ",").append(String.format("sensor%d:%.3f", c, value));
+                packet.putFloat(value);
+            }
+            text.append("\r\n");
+            labeled.append("\r\n");
+            byte[] encoded = cobsEncode(packet.array());
+            binary.write(encoded, 0, encoded.length);
+        }
+
+        textChunk = text.toString().getBytes(StandardCharsets.US_ASCII);
+        labeledChunk = labeled.toString().getBytes(StandardCharsets.US_ASCII);
+        binaryChunk = binary.toByteArray();
+        lineParser = new LineParser((values, count) -> blackhole.consume(values[count - 1]));
+        frameDecoder = new CobsFrameDecoder((values, count) -> blackhole.consume(values[count - 1]));
+    }
+
+    @Benchmark
+    public void parseText() {
+        feed(lineParser::feed, textChunk);
+    }
+
+    // Same values as "name:value" fields, resolved through the channel registry's label hash
+    @Benchmark
+    public void parseLabeledText() {
+        feed(lineParser::feed, labeledChunk);
+    }
+
+    @Benchmark
+    public void decodeBinary() {
+        feed(frameDecoder::feed, binaryChunk);
+    }
+
+    private interface Feeder {
+        void feed(byte[] data, int offset, int length);
+    }
+
+    private static void feed(Feeder feeder, byte[] chunk) {
+        for (int offset = 0; offset < chunk.length; offset += READ_SIZE)
+            feeder.feed(chunk, offset, Math.min(READ_SIZE, chunk.length - offset));
+    }
+
+    private static byte[] cobsEncode(byte[] packet) {
+        byte[] encoded = new byte[packet.length + packet.length / 254 + 2];
+        int codeIndex = 0;
+        int write = 1;
+        int code = 1;
+        for (byte b : packet) {
+            if (b == 0) {
+                encoded[codeIndex] = (byte) code;
+                codeIndex = write++;
+                code = 1;
+            } else {
+                encoded[write++] = b;
+                if (++code == 0xFF) {
+                    encoded[codeIndex] = (byte) code;
+                    codeIndex = write++;
+                    code = 1;
+                }
+            }
+        }
+        encoded[codeIndex] = (byte) code;
+        encoded[write++] = 0;
+        return Arrays.copyOf(encoded, write);
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import expression.DerivedStage;
+import expression.ExpressionCompiler;
+import ingest.LineParser;
+import ingest.SampleQueue;
+import org.openjdk.jmh.annotations.*;
+import plotting.PlotLine;
+import source.SyntheticSource;
+import source.Waveform;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Whole ingest path for 1000 synthetic rows on one thread: generate text, parse, queue, drain into plot lines.
+// Without pacing this is the ceiling the pipeline can sustain, comparable to the target rate in rows per second.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestBenchmark {
+    private static final int ROWS = 1000;
+
+    @Param({"1", "8"})
+    public int channels;
+
+    // Derived channel appended to every row, "none" for the plain pipeline
+    @Param({"none", "ch0 * 3.3 / 4095", "avg(ch0, 50)"})
+    public String derived;
+
+    private SyntheticSource source;
+    private byte[] chunk;
+    private LineParser lineParser;
+    private DerivedStage derivedStage;
+    private SampleQueue queue;
+    private PlotLine[] lines;
+    private long row;
+
+    @Setup
+    public void setup() {
+        source = new SyntheticSource(channels, 100_000, Waveform.SINE, 50, 100, 0.05, 1, 1);
+        chunk = new byte[ROWS * source.maxRowBytes()];
+        queue = new SampleQueue(1 << 18);
+        if (derived.equals("none")) {
+            lineParser = new LineParser((values, count) -> queue.offer(row++, values, count));
+        } else {
+            derivedStage = new DerivedStage(List.of(ExpressionCompiler.compile(derived)), queue::offer);
+            lineParser = new LineParser((values, count) -> derivedStage.add(row++, values, count));
+        }
+        lines = new PlotLine[channels + 1];
+        for (int i = 0; i < lines.length; i++)
+            lines[i] = new PlotLine(i, 2000);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public int ingestRows() {
+        int length = source.generate(chunk, 0, ROWS);
+        lineParser.feed(chunk, 0, length);
+        if (derivedStage != null)
+            derivedStage.flush();
+        return queue.drain((x, values, count) -> {
+            for (int i = 0; i < count; i++)
+                lines[i].addPoint(x, values[i]);
+        });
+    }
+}
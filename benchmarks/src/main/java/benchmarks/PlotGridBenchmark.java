@@ -0,0 +1,25 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import plotting.PlotGrid;
+
+import java.awt.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlotGridBenchmark {
+    private final PlotGrid grid = new PlotGrid(5, 5, Color.lightGray, Color.black);
+    private double offset;
+
+    @Benchmark
+    public void updateTicks() {
+        // A scrolling X range, as in the live view
+        offset += 1;
+        grid.updateTicks(offset, offset + 1999, -1.25, 3.3);
+    }
+}
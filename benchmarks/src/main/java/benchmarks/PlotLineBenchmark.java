@@ -0,0 +1,39 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import plotting.PlotLine;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlotLineBenchmark {
+    @Param({"2000", "100000", "1000000"})
+    public int bufferSize;
+
+    // Compressed history behind the ring; every evicted sample is staged and sealed into blocks
+    @Param({"0", "8"})
+    public int historyMegabytes;
+
+    private PlotLine line;
+    private long sample;
+
+    @Setup
+    public void setup() {
+        line = new PlotLine(0, bufferSize, (long) historyMegabytes << 20);
+        // Start with a full buffer so every addPoint also evicts
+        for (sample = 0; sample < bufferSize; sample++)
+            line.addPoint(sample, Math.sin(sample * 0.01));
+    }
+
+    @Benchmark
+    public double addPoint() {
+        line.addPoint(sample, Math.sin(sample * 0.01));
+        sample++;
+        return line.getMaxY();
+    }
+}
@@ -0,0 +1,69 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import plotting.PlotLine;
+import plotting.PlotPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// One live frame: a few new samples per channel, then a full PlotPanel.paintComponent into an image.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PlotPanelPaintBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int SAMPLES_PER_FRAME = 16;
+
+    @Param({"1", "8"})
+    public int channels;
+
+    @Param({"2000", "100000", "1000000"})
+    public int bufferLength;
+
+    @Param({"false", "true"})
+    public boolean stripChart;
+
+    private PlotPanel panel;
+    private BufferedImage image;
+    private long sample;
+
+    @Setup
+    public void setup() {
+        panel = new PlotPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setPlotMargins(new int[]{50, 20, 20, 50});
+        panel.setStripChart(stripChart);
+        for (int c = 0; c < channels; c++)
+            panel.addLine(bufferLength);
+        for (sample = 0; sample < bufferLength; sample++)
+            addSample();
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        for (int i = 0; i < SAMPLES_PER_FRAME; i++, sample++)
+            addSample();
+
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private void addSample() {
+        for (int c = 0; c < channels; c++) {
+            PlotLine line = panel.getLine(c);
+            line.addPoint(sample, Math.sin(sample * 0.002 + c) + 0.1 * Math.sin(sample * 0.37));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import plotting.PlotLine;
+import plotting.PlotPanel;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+// One frame of a 1M-sample line while zoomed: the running view follows the newest 1% of the buffer,
+// the paused one sits in the middle of it. "fit" draws the whole buffer for comparison.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class PlotViewportBenchmark {
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+    private static final int BUFFER_LENGTH = 1_000_000;
+    private static final int SAMPLES_PER_FRAME = 16;
+
+    @Param({"fit", "follow", "paused"})
+    public String view;
+
+    private PlotPanel panel;
+    private PlotLine line;
+    private BufferedImage image;
+    private long sample;
+
+    @Setup
+    public void setup() {
+        panel = new PlotPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setPlotMargins(new int[]{50, 20, 20, 50});
+        line = panel.addLine(BUFFER_LENGTH);
+        for (sample = 0; sample < BUFFER_LENGTH; sample++)
+            addSample();
+        switch (view) {
+            case "follow" -> panel.setFollowSpan(BUFFER_LENGTH / 100.0);
+            case "paused" -> panel.setView(BUFFER_LENGTH * 0.5, BUFFER_LENGTH * 0.51);
+        }
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    }
+
+    @Benchmark
+    public BufferedImage paintFrame() {
+        for (int i = 0; i < SAMPLES_PER_FRAME; i++, sample++)
+            addSample();
+
+        Graphics2D g = image.createGraphics();
+        try {
+            panel.paintComponent(g);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    private void addSample() {
+        line.addPoint(sample, Math.sin(sample * 0.002) + 0.1 * Math.sin(sample * 0.37));
+    }
+}
@@ -0,0 +1,47 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import spectrum.RealFft;
+import spectrum.WindowFunction;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumBenchmark {
+    @Param({"1024", "4096", "65536"})
+    public int size;
+
+    private RealFft fft;
+    private double[] window;
+    private double[] samples;
+    private double[] frame;
+    private double[] power;
+
+    @Setup
+    public void setup() {
+        fft = new RealFft(size);
+        window = new double[size];
+        WindowFunction.HANN.fill(window);
+        samples = new double[size];
+        Random random = new Random(1);
+        for (int i = 0; i < size; i++)
+            samples[i] = Math.sin(i * 0.05) + 0.1 * random.nextGaussian();
+        frame = new double[size];
+        power = new double[fft.bins()];
+    }
+
+    // One analyzer transform: apply the window, then the real FFT
+    @Benchmark
+    public double[] windowedPower() {
+        for (int i = 0; i < size; i++)
+            frame[i] = samples[i] * window[i];
+        fft.power(frame, power);
+        return power;
+    }
+}
@@ -1,202 +1,958 @@
-import jssc.*;
+import expression.CompiledExpression;
+import expression.ExpressionCompiler;
+import ingest.CobsFrameDecoder;
+import ingest.TimingStage;
+import metrics.MetricsSummary;
+import metrics.PipelineMetrics;
+import plotting.PlotLine;
 import plotting.PlotPanel;
+import plotting.RenderScheduler;
+import recording.CaptureReader;
+import recording.CaptureWriter;
+import recording.XKind;
+import source.DataSources;
+import source.PortDiscoveryService;
+import transmit.TransmitQueue;
+import trigger.TriggerEngine;
+import spectrum.SpectrumAnalyzer;
 
+import javax.management.JMException;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.GridLayout;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
-import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
-public class MainWindow extends JFrame implements SerialPortEventListener {
-    private JToggleButton connectButton;
-    private JComboBox<String> portSelectCBox;
-    private JComboBox<String> portSpeedCBox;
-    private JPanel MainPanel;
-    private JButton sendButton;
-    private JTextField textSendField;
-    private JComboBox<String> lineEndingSelectCBox;
-    private PlotPanel serialPlotPanel;
-    private StatusBar statusBar;
-    private JButton portRefreshButton;
+public class MainWindow extends JFrame {
+    private static final String[] PORT_SPEEDS = {"300", "1200", "2400", "4800", "9600", "19200", "38400", "57600",
+            "74880", "115200", "230400", "250000", "500000", "1000000", "2000000"};
 
-    private SerialPort serialPort;
+    private final JToggleButton connectButton = new JToggleButton("Connect");
+    private final JComboBox<String> portSelectCBox = new JComboBox<>();
+    private final JComboBox<String> portSpeedCBox = new JComboBox<>(PORT_SPEEDS);
+    private final JComboBox<String> formatSelectCBox = new JComboBox<>(new String[]{"Text", "Binary (COBS)"});
+    private final JButton sendButton = new JButton("Send");
+    private final JTextField textSendField = new JTextField();
+    private final JComboBox<String> lineEndingSelectCBox = new JComboBox<>(new String[]{"None", "CR", "LF", "CR&LF"});
+    private final PlotPanel serialPlotPanel = new PlotPanel();
+    private final StatusBar statusBar = new StatusBar();
+    private final JButton portRefreshButton = new JButton();
+    private final JButton addPortButton = new JButton("Add port");
+
+    private final RenderScheduler renderScheduler;
+    private final PipelineMetrics metrics;
+    private final MetricsSummary metricsSummary;
+    private final Timer metricsTimer;
+    private static final byte[][] LINE_ENDINGS = {{}, {'\r'}, {'\n'}, {'\r', '\n'}};
+    private static final String[] TIMESTAMP_UNIT_NAMES = {"s", "ms", "\u00b5s"};
+    private static final double[] TIMESTAMP_UNITS = {1, 1e-3, 1e-6};
+    private SpectrumWindow spectrumWindow;
+    private final PortDiscoveryService portDiscovery;
+    private boolean portListLoaded;
+    private JCheckBoxMenuItem autoReconnectItem;
+    private SpectrumAnalyzer reportedSpectrumAnalyzer;
+    private long reportedSpectrumDrops;
+    // First spectrum channel of the connection being drained
+    private int spectrumChannelBase;
 
     public MainWindow() {
-        setContentPane(MainPanel);
+        setContentPane(createContentPane());
         setTitle("Serial Plotter");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         setSize(800, 600);
         setLocationRelativeTo(null);
         setVisible(true);
 
-        portRefreshButton.setBorder(new EmptyBorder(3, 3, 3, 3));
         serialPlotPanel.setPlotMargins(new int[]{50, 20, 20, 50});
 
+        renderScheduler = new RenderScheduler(serialPlotPanel, this::drainSamples, 60);
+        metrics = new PipelineMetrics(renderScheduler::getRenderedFrames, renderScheduler::getDroppedFrames,
+                renderScheduler.getFrameUpdateTime(), renderScheduler.getPaintTime());
+        try {
+            metrics.register();
+        } catch (JMException e) {
+            System.err.printf("Pipeline metrics are not exported over JMX: %s%n", e.getMessage());
+        }
+        metricsSummary = new MetricsSummary(metrics);
+        metricsTimer = new Timer(1000, e -> statusBar.setMetrics(metricsSummary.update()));
+        serialPlotPanel.setComponentPopupMenu(createPlotMenu());
+
+        // Enumerating ports can take a while, the list fills in once the first poll is done
+        updatePortList(List.of());
+        portDiscovery = new PortDiscoveryService(1000,
+                (ports, added, removed) -> SwingUtilities.invokeLater(() -> portsChanged(ports, removed)));
+
         connectButton.addItemListener(event -> {
-            // If serial port is not opened
+            // If no port is opened
             if (event.getStateChange() == ItemEvent.SELECTED) {
-                serialPort = new SerialPort(Objects.requireNonNull(portSelectCBox.getSelectedItem()).toString());
-                try {
-                    serialPort.openPort();
-                    serialPort.setEventsMask(SerialPort.MASK_RXCHAR + SerialPort.MASK_BREAK);
-                    serialPort.addEventListener(this);
-                    serialPort.setParams(Integer.parseInt(Objects.requireNonNull(portSpeedCBox.getSelectedItem()).toString()),
-                            8, 1, 0);
-
-                    connectButton.setText("Disconnect");
-                    statusBar.setTimedStatus("Serial port opened successfully", 5000);
-
-                    textSendField.setEnabled(true);
-                    lineEndingSelectCBox.setEnabled(true);
-                    sendButton.setEnabled(true);
-                } catch (SerialPortException e) {
-                    statusBar.setTimedStatus(String.format("Connection error: %s", e.getExceptionType()), 5000);
-                    serialPort = null;
-                    connectButton.setText("Connect");
-                    connectButton.setSelected(false);
-                }
+                // A new session starts with an empty plot
+                while (serialPlotPanel.lineCount() > 0)
+                    serialPlotPanel.removeLine(serialPlotPanel.lineCount() - 1);
+
+                session++;
+                connectButton.setText("Disconnect");
+                addPortButton.setEnabled(true);
+                openConnection();
             } else {
-                try {
-                    if (serialPort != null) {
-                        serialPort.closePort();
-                        serialPort = null;
-                        statusBar.setTimedStatus("Serial port closed", 5000);
-                    }
-                    connectButton.setText("Connect");
-                    textSendField.setEnabled(false);
-                    lineEndingSelectCBox.setEnabled(false);
-                    sendButton.setEnabled(false);
-                } catch (SerialPortException e) {
-                    statusBar.setTimedStatus(String.format("Error while disconnecting: %s", e.getExceptionType()), 5000);
-                    serialPort = null;
-                    connectButton.setText("Connect");
-                    connectButton.setSelected(false);
-
-
-                    textSendField.setEnabled(false);
-                    lineEndingSelectCBox.setEnabled(false);
-                    sendButton.setEnabled(false);
-                }
-            }
-        });
-        portRefreshButton.addActionListener(e -> {
-            portSelectCBox.removeAllItems();
-            if (SerialPortList.getPortNames().length > 0) {
-                for (String portName : SerialPortList.getPortNames()) {
-                    portSelectCBox.addItem(portName);
+                session++;
+                pendingConnections = 0;
+                connectButton.setText("Connect");
+                addPortButton.setEnabled(false);
+                setSendEnabled(false);
+                if (!connections.isEmpty()) {
+                    String names = connections.size() == 1 ? connections.getFirst().getName()
+                            : String.format("%d ports", connections.size());
+                    while (!connections.isEmpty())
+                        closeConnection(connections.getLast());
+                    statusBar.setTimedStatus(String.format("Disconnected from %s", names), 5000);
                 }
-                portSelectCBox.setEnabled(true);
-                connectButton.setEnabled(true);
-            } else {
-                portSelectCBox.setEnabled(false);
-                connectButton.setEnabled(false);
             }
         });
+        addPortButton.addActionListener(e -> openConnection());
+        portRefreshButton.addActionListener(e -> portDiscovery.refresh());
 
         // Add event listeners to send button and text field
         ActionListener sendButtonListener = event -> {
-            String lineEnding = switch (lineEndingSelectCBox.getSelectedIndex()) {
-                case 1 -> "\r";
-                case 2 -> "\n";
-                case 3 -> "\r\n";
-                default -> "";
-            };
-
-            try {
-                serialPort.writeString(textSendField.getText() + lineEnding);
-            } catch (SerialPortException e) {
-                statusBar.setTimedStatus(String.format("Serial port error: %s", e.getExceptionType()), 5000);
-                serialPort = null;
-                connectButton.setText("Connect");
-                connectButton.setSelected(false);
-
-                textSendField.setEnabled(false);
-                lineEndingSelectCBox.setEnabled(false);
-                sendButton.setEnabled(false);
-            }
-            textSendField.setText("");
+            PortConnection connection = sendTarget();
+            if (isReconnecting(connection))
+                return;
+            // A full queue keeps the text in the field so it can be sent again
+            if (connection.getTransmitQueue().send(textSendField.getText().getBytes(), selectedLineEnding()))
+                textSendField.setText("");
+            else
+                statusBar.setTimedStatus(String.format("%s: transmit queue is full", connection.getName()), 5000);
         };
         sendButton.addActionListener(sendButtonListener);
         textSendField.addActionListener(sendButtonListener);
+    }
 
-        if (SerialPortList.getPortNames().length > 0) {
-            for (String portName : SerialPortList.getPortNames()) {
-                portSelectCBox.addItem(portName);
-            }
-            portSelectCBox.setEnabled(true);
-            connectButton.setEnabled(true);
-        } else {
-            portSelectCBox.setEnabled(false);
-            connectButton.setEnabled(false);
+    // Port controls above the plot, the send row and the status bar below it
+    private JPanel createContentPane() {
+        portSpeedCBox.setEditable(true);
+        portSpeedCBox.setSelectedItem("115200");
+        portSelectCBox.setEditable(true);
+        portSelectCBox.setEnabled(false);
+        portSelectCBox.setLightWeightPopupEnabled(false);
+        connectButton.setEnabled(false);
+        addPortButton.setEnabled(false);
+        addPortButton.setToolTipText("Open the selected port as well, alongside the ones already connected");
+        portRefreshButton.setIcon(new ImageIcon(Objects.requireNonNull(
+                MainWindow.class.getResource("/resources/arrow_refresh.png"))));
+        portRefreshButton.setBorder(new EmptyBorder(3, 3, 3, 3));
+
+        JPanel portPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        portPanel.setBorder(BorderFactory.createRaisedBevelBorder());
+        portPanel.add(new JLabel("Port speed:"));
+        portPanel.add(portSpeedCBox);
+        portPanel.add(new JLabel("Format:"));
+        portPanel.add(formatSelectCBox);
+        portPanel.add(new JLabel("Port:"));
+        portPanel.add(portSelectCBox);
+        portPanel.add(connectButton);
+        portPanel.add(addPortButton);
+        portPanel.add(portRefreshButton);
+
+        textSendField.setToolTipText("Enter text to send...");
+        setSendEnabled(false);
+        JPanel sendButtons = new JPanel(new BorderLayout());
+        sendButtons.add(lineEndingSelectCBox, BorderLayout.CENTER);
+        sendButtons.add(sendButton, BorderLayout.EAST);
+        JPanel sendPanel = new JPanel(new BorderLayout());
+        sendPanel.setBorder(BorderFactory.createRaisedBevelBorder());
+        sendPanel.add(textSendField, BorderLayout.CENTER);
+        sendPanel.add(sendButtons, BorderLayout.EAST);
+
+        JPanel bottom = new JPanel(new BorderLayout());
+        bottom.add(sendPanel, BorderLayout.NORTH);
+        bottom.add(statusBar, BorderLayout.SOUTH);
+
+        serialPlotPanel.setFocusable(false);
+        JPanel contentPane = new JPanel(new BorderLayout());
+        contentPane.add(portPanel, BorderLayout.NORTH);
+        contentPane.add(serialPlotPanel, BorderLayout.CENTER);
+        contentPane.add(bottom, BorderLayout.SOUTH);
+        return contentPane;
+    }
+
+    // Serial ports plus a synthetic generator; the box is editable for tcp://, udp://, file: and other sources
+    private void updatePortList(List<String> ports) {
+        Object selected = portSelectCBox.getSelectedItem();
+        portSelectCBox.removeAllItems();
+        for (String portName : ports) {
+            portSelectCBox.addItem(portName);
+        }
+        portSelectCBox.addItem(DataSources.SYNTHETIC_DEFAULT);
+        // Keep what the user picked or typed, but let the first real list replace the placeholder
+        if (selected != null && (portListLoaded || !selected.equals(DataSources.SYNTHETIC_DEFAULT)))
+            portSelectCBox.setSelectedItem(selected);
+        portSelectCBox.setEnabled(true);
+        connectButton.setEnabled(true);
+    }
+
+    private void portsChanged(List<String> ports, List<String> removed) {
+        updatePortList(ports);
+        portListLoaded = true;
+        // An unplugged device does not always raise an error on the port itself
+        for (PortConnection connection : List.copyOf(connections)) {
+            if (connection.isSerialPort() && !connection.isSuspended() && removed.contains(connection.getName()))
+                connectionLost(connection, "device removed");
         }
     }
 
-    private final StringBuffer serialBuffer = new StringBuffer(256);
-    private int lineCount = 0;
+    private void setSendEnabled(boolean enabled) {
+        textSendField.setEnabled(enabled);
+        lineEndingSelectCBox.setEnabled(enabled);
+        sendButton.setEnabled(enabled);
+    }
+
+    // Added on the EDT once open; each connection decodes on its own reader thread and is drained here
+    private final List<PortConnection> connections = new ArrayList<>();
+    // Bumped on every connect and disconnect, so a port that finishes opening late knows it is not wanted
+    private int session;
+    private int pendingConnections;
+    private final long epochNanos = System.nanoTime();
+    private Path recordingPath;
+    private int recordedPorts;
+    private List<CompiledExpression> derivedChannels = List.of();
+    private TimingStage.TimestampColumn timestampColumn;
+    private JCheckBoxMenuItem recordItem;
+
+    // Opening can block for seconds (a TCP connect to a dead host, a slow serial driver), so it runs on a thread
+    // of its own; the result is applied on the EDT unless the user disconnected in the meantime
+    private void openConnection() {
+        String spec = Objects.requireNonNull(portSelectCBox.getSelectedItem()).toString();
+        int baudRate;
+        try {
+            baudRate = Integer.parseInt(Objects.requireNonNull(portSpeedCBox.getSelectedItem()).toString());
+        } catch (NumberFormatException e) {
+            openFailed(session, String.format("Invalid baud rate: %s", e.getMessage()));
+            return;
+        }
+        boolean binary = formatSelectCBox.getSelectedIndex() == 1;
+        List<CompiledExpression> derived = derivedChannels;
+        TimingStage.TimestampColumn timestamps = timestampColumn;
+        int openSession = session;
+        pendingConnections++;
+        statusBar.setStatus(String.format("Connecting to %s...", spec.trim()));
+
+        Thread opener = new Thread(() -> {
+            try {
+                PortConnection connection = new PortConnection(spec, baudRate, binary, epochNanos, metrics,
+                        renderScheduler::markDirty, this::connectionFailed);
+                connection.setDerivedChannels(derived);
+                connection.setTimestampColumn(timestamps);
+                connection.open();
+                SwingUtilities.invokeLater(() -> connectionOpened(openSession, connection, derived));
+            } catch (IOException | IllegalArgumentException e) {
+                SwingUtilities.invokeLater(() -> openFailed(openSession, e.getMessage()));
+            }
+        }, "connect-" + spec.trim());
+        opener.setDaemon(true);
+        opener.start();
+    }
 
-    @Override
-    public void serialEvent(SerialPortEvent event) {
-        if (event.isRXCHAR()) {
+    private void connectionOpened(int openSession, PortConnection connection, List<CompiledExpression> derived) {
+        if (openSession != session) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+            }
+            return;
+        }
+        pendingConnections--;
+        connections.add(connection);
+        // Derived channels edited while the port was opening; an unchanged stage is kept so its channels stay put
+        if (derived != derivedChannels)
+            connection.setDerivedChannels(derivedChannels);
+        connection.setTimestampColumn(timestampColumn);
+        setSendEnabled(true);
+        if (recordingPath != null) {
             try {
-                int byteCount = serialPort.getInputBufferBytesCount();
-                if (byteCount == 0)
+                record(connection);
+            } catch (IOException e) {
+                statusBar.setTimedStatus(String.format("Recording error: %s", e.getMessage()), 5000);
+                return;
+            }
+        }
+
+        statusBar.setTimedStatus(connections.size() == 1
+                ? String.format("Connected to %s", connection.getName())
+                : String.format("Connected to %s (%d ports open)", connection.getName(), connections.size()), 5000);
+    }
+
+    private void openFailed(int openSession, String message) {
+        if (openSession != session)
+            return;
+        pendingConnections = Math.max(0, pendingConnections - 1);
+        statusBar.setTimedStatus(String.format("Connection error: %s", message), 5000);
+        if (connections.isEmpty() && pendingConnections == 0)
+            connectButton.setSelected(false);
+    }
+
+    // Closes one port; its lines stay on the plot until the next session
+    private void closeConnection(PortConnection connection) {
+        connections.remove(connection);
+        if (connection.getTrigger() != null)
+            setTrigger(null, null);
+        CaptureWriter writer = connection.getCaptureWriter();
+        connection.setCaptureWriter(null);
+        if (writer != null)
+            closeWriters(List.of(writer));
+        try {
+            connection.close();
+        } catch (IOException e) {
+            statusBar.setTimedStatus(String.format("Error while disconnecting %s: %s", connection.getName(), e.getMessage()), 5000);
+        }
+    }
+
+    // Called from reader threads when a source stops; the other ports keep running
+    private void connectionFailed(PortConnection connection, String message) {
+        SwingUtilities.invokeLater(() -> connectionLost(connection, message));
+    }
+
+    private void connectionLost(PortConnection connection, String message) {
+        if (!connections.contains(connection) || connection.isSuspended())
+            return;
+        if (autoReconnectItem.isSelected() && connection.canReconnect()) {
+            connection.suspend();
+            startReconnect(connection);
+            statusBar.setStatus(String.format("Lost %s (%s), reconnecting...", connection.getName(), message));
+            return;
+        }
+        closeConnection(connection);
+        if (connections.isEmpty())
+            connectButton.setSelected(false);
+        statusBar.setTimedStatus(String.format("Connection error on %s: %s", connection.getName(), message), 5000);
+    }
+
+    // Retries once a second until the port opens again or the user disconnects it. A serial port is only tried
+    // while discovery lists it, so a device that is still unplugged is not probed over and over.
+    private void startReconnect(PortConnection connection) {
+        Thread reconnect = new Thread(() -> {
+            while (true) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
                     return;
+                }
+                if (connection.isClosed())
+                    return;
+                if (connection.isSerialPort() && !portDiscovery.getPorts().contains(connection.getName()))
+                    continue;
+                try {
+                    if (connection.reopen())
+                        SwingUtilities.invokeLater(() -> {
+                            if (connections.contains(connection))
+                                statusBar.setTimedStatus(String.format("Reconnected to %s", connection.getName()), 5000);
+                        });
+                    return;
+                } catch (IOException | IllegalArgumentException ignored) {
+                }
+            }
+        }, "reconnect-" + connection.getName());
+        reconnect.setDaemon(true);
+        reconnect.start();
+    }
 
-                serialBuffer.append(new String(serialPort.readBytes(byteCount)));
-
-                while (true) {
-                    int EOLIndex = serialBuffer.indexOf("\n");
-                    if (EOLIndex == -1)
-                        break;
-                    String line = serialBuffer.substring(0, EOLIndex).trim();
-                    serialBuffer.delete(0, EOLIndex + 1);
-                    if (line.isEmpty())
-                        continue;
-
-                    String[] fields = line.split("[, \t]+");
-                    if (fields.length == 0)
-                        continue;
-
-                    //System.out.printf("Found %d fields\n", fields.length);
-
-                    int validParts = 0;
-                    for (String field : fields) {
-                        Double value = null;
-
-                        try {
-                            value = Double.valueOf(field);
-                        } catch (NumberFormatException ignored) {
-                        }
-
-                        if (value != null) {
-                            if (validParts >= serialPlotPanel.lineCount()) {
-                                System.out.println("Adding new line to graph\n");
-                                serialPlotPanel.addLine(2000);
-                            }
-                            //System.out.printf("Adding new point (%f, %f) to line %d\n", (double) lineCount, value, validParts);
-                            serialPlotPanel.getLine(validParts).addPoint(new Point2D.Double(lineCount, value));
-                            validParts++;
-                        }
-                    }
-                    while (validParts < serialPlotPanel.lineCount())
-                        serialPlotPanel.removeLine(serialPlotPanel.lineCount() - 1);
-
-                    lineCount++;
+    // Sending to a port that is being reopened would only fill a queue nobody drains
+    private boolean isReconnecting(PortConnection connection) {
+        if (!connection.isSuspended())
+            return false;
+        statusBar.setTimedStatus(String.format("%s is reconnecting", connection.getName()), 5000);
+        return true;
+    }
+
+    private byte[] selectedLineEnding() {
+        return LINE_ENDINGS[Math.max(0, lineEndingSelectCBox.getSelectedIndex())];
+    }
+
+    // Text is sent to the port selected in the port box if it is open, otherwise to the first one
+    private PortConnection sendTarget() {
+        Object selected = portSelectCBox.getSelectedItem();
+        for (PortConnection connection : connections) {
+            if (connection.getName().equals(selected))
+                return connection;
+        }
+        return connections.getFirst();
+    }
+
+    private void drainSamples() {
+        long queueDepth = 0;
+        long transmitQueueDepth = 0;
+        for (PortConnection connection : connections) {
+            queueDepth += connection.getSampleQueue().depth();
+            transmitQueueDepth += connection.getTransmitQueue().getQueuedBytes();
+        }
+        metrics.setQueueDepth(queueDepth);
+        metrics.setTransmitQueueDepth(transmitQueueDepth);
+
+        spectrumChannelBase = 0;
+        for (PortConnection connection : connections) {
+            connection.getSampleQueue().drain((x, values, count) -> plotValues(connection, x, values, count));
+            spectrumChannelBase += connection.lines.size();
+
+            CobsFrameDecoder frameDecoder = connection.getFrameDecoder();
+            if (frameDecoder == null)
+                continue;
+            long frameErrors = frameDecoder.getDroppedFrames() + frameDecoder.getCorruptedFrames();
+            if (frameErrors != connection.reportedFrameErrors) {
+                connection.reportedFrameErrors = frameErrors;
+                statusBar.setTimedStatus(String.format("%s binary frames: %d dropped, %d corrupted", connection.getName(),
+                        frameDecoder.getDroppedFrames(), frameDecoder.getCorruptedFrames()), 5000);
+            }
+        }
+
+        for (PortConnection connection : connections) {
+            CaptureWriter writer = connection.getCaptureWriter();
+            if (writer == null)
+                continue;
+            if (writer.getFailure() != null) {
+                stopRecording();
+                break;
+            }
+            long dropped = writer.getDroppedRows();
+            if (dropped != connection.reportedCaptureDrops) {
+                metrics.droppedCaptureRows.add(dropped - connection.reportedCaptureDrops);
+                connection.reportedCaptureDrops = dropped;
+                statusBar.setTimedStatus(String.format("%s recording: %d rows dropped", connection.getName(), dropped), 5000);
+            }
+            Path path = writer.getPath();
+            if (!path.equals(connection.reportedCapturePath)) {
+                connection.reportedCapturePath = path;
+                statusBar.setTimedStatus(String.format("%s sends more channels, recording continues in %s",
+                        connection.getName(), path.getFileName()), 5000);
+            }
+        }
+
+        // The analyzer is replaced each time the spectrum window is shown
+        SpectrumAnalyzer analyzer = spectrumWindow == null ? null : spectrumWindow.getAnalyzer();
+        if (analyzer != reportedSpectrumAnalyzer) {
+            reportedSpectrumAnalyzer = analyzer;
+            reportedSpectrumDrops = 0;
+        }
+        if (analyzer != null && analyzer.getDroppedRows() != reportedSpectrumDrops) {
+            long dropped = analyzer.getDroppedRows();
+            metrics.droppedSpectrumRows.add(dropped - reportedSpectrumDrops);
+            reportedSpectrumDrops = dropped;
+            statusBar.setTimedStatus(String.format("Spectrum: %d rows dropped", dropped), 5000);
+        }
+    }
+
+    private void startRecording() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Record to file");
+        if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            recordItem.setSelected(false);
+            return;
+        }
+
+        // Ports opened while recording get a capture of their own too
+        recordingPath = chooser.getSelectedFile().toPath();
+        recordedPorts = 0;
+        try {
+            for (PortConnection connection : connections)
+                record(connection);
+            statusBar.setTimedStatus(String.format("Recording to %s", chooser.getSelectedFile().getName()), 5000);
+        } catch (IOException e) {
+            statusBar.setTimedStatus(String.format("Recording error: %s", e.getMessage()), 5000);
+            stopRecording();
+        }
+    }
+
+    // The first port records to the chosen file, further ports to "name-2.ext", "name-3.ext", ...
+    private void record(PortConnection connection) throws IOException {
+        Path path = recordingPath;
+        if (recordedPorts > 0) {
+            String name = path.getFileName().toString();
+            int dot = name.lastIndexOf('.');
+            String numbered = dot > 0
+                    ? String.format("%s-%d%s", name.substring(0, dot), recordedPorts + 1, name.substring(dot))
+                    : String.format("%s-%d", name, recordedPorts + 1);
+            path = path.resolveSibling(numbered);
+        }
+        connection.setCaptureWriter(new CaptureWriter(path, XKind.SECONDS));
+        recordedPorts++;
+    }
+
+    private void stopRecording() {
+        recordingPath = null;
+        recordItem.setSelected(false);
+
+        List<CaptureWriter> writers = new ArrayList<>();
+        for (PortConnection connection : connections) {
+            CaptureWriter writer = connection.getCaptureWriter();
+            connection.setCaptureWriter(null);
+            if (writer != null)
+                writers.add(writer);
+        }
+        closeWriters(writers);
+    }
+
+    private void closeWriters(List<CaptureWriter> writers) {
+        if (writers.isEmpty())
+            return;
+
+        // Closing waits for the writer threads to drain and flush, keep that off the EDT
+        Thread closer = new Thread(() -> {
+            String message = null;
+            for (CaptureWriter writer : writers) {
+                try {
+                    writer.close();
+                    message = String.format("Recorded %d samples to %s", writer.getRowCount(), writer.getPath().getFileName());
+                } catch (IOException e) {
+                    message = String.format("Recording error: %s", e.getMessage());
+                    break;
                 }
-                //System.out.printf("Graph bounds are [%f, %f, %f, %f]\n", serialPlotPanel.getMinX(), serialPlotPanel.getMaxX(), serialPlotPanel.getMinY(), serialPlotPanel.getMaxY());
-                SwingUtilities.invokeLater(this::repaint);
-            } catch (SerialPortException e) {
-                statusBar.setTimedStatus(String.format("Serial port error: %s", e.getExceptionType()), 5000);
-                serialPort = null;
-                connectButton.setText("Connect");
-                connectButton.setSelected(false);
+            }
+            String status = message;
+            SwingUtilities.invokeLater(() -> statusBar.setTimedStatus(status, 5000));
+        }, "capture-close");
+        closer.start();
+    }
+
+    private void plotValues(PortConnection connection, double x, double[] values, int count) {
+        List<PlotLine> lines = connection.lines;
+        if (lines.size() < count)
+            addChannels(connection, count);
+        for (int i = 0; i < count; i++)
+            lines.get(i).addPoint(x, values[i]);
+        // Channels a row does not carry show a gap instead of being removed
+        for (int i = count; i < lines.size(); i++)
+            lines.get(i).addPoint(x, Double.NaN);
+
+        SpectrumAnalyzer analyzer = spectrumWindow == null ? null : spectrumWindow.getAnalyzer();
+        if (analyzer != null)
+            analyzer.offer(spectrumChannelBase, x, values, count);
+    }
 
-                textSendField.setEnabled(false);
-                lineEndingSelectCBox.setEnabled(false);
-                sendButton.setEnabled(false);
+    private void addChannels(PortConnection connection, int count) {
+        List<PlotLine> lines = connection.lines;
+        boolean announce = !lines.isEmpty();
+        String[] labels = connection.getChannelLabels();
+        while (lines.size() < count) {
+            int channel = lines.size();
+            PlotLine line = serialPlotPanel.addLine(2000);
+            line.setLabel(channel < labels.length ? labels[channel] : null);
+            lines.add(line);
+        }
+        if (announce) {
+            PlotLine newest = lines.getLast();
+            String name = newest.getLabel() != null ? newest.getLabel() : String.valueOf(count);
+            statusBar.setTimedStatus(String.format("%s: new channel %s", connection.getName(), name), 5000);
+        }
+    }
+
+    private void resetChannels() {
+        for (PortConnection connection : connections) {
+            connection.resetChannels();
+            for (PlotLine line : connection.lines)
+                serialPlotPanel.removeLine(line);
+            connection.lines.clear();
+        }
+        statusBar.setTimedStatus("Channels reset", 5000);
+    }
+
+    // X comes from the host clock unless the device sends its own time in one of the channels
+    private void editTimestamps() {
+        JCheckBox deviceCheckBox = new JCheckBox("Use a channel", timestampColumn != null);
+        JSpinner columnSpinner = new JSpinner(new SpinnerNumberModel(
+                timestampColumn != null ? timestampColumn.column() : 0, 0, 1023, 1));
+        JComboBox<String> unitCBox = new JComboBox<>(TIMESTAMP_UNIT_NAMES);
+        if (timestampColumn != null) {
+            for (int i = 0; i < TIMESTAMP_UNITS.length; i++) {
+                if (TIMESTAMP_UNITS[i] == timestampColumn.secondsPerUnit())
+                    unitCBox.setSelectedIndex(i);
             }
         }
+
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Device timestamps"));
+        panel.add(deviceCheckBox);
+        panel.add(new JLabel("Channel"));
+        panel.add(columnSpinner);
+        panel.add(new JLabel("Unit"));
+        panel.add(unitCBox);
+        if (JOptionPane.showConfirmDialog(this, panel, "Timestamps", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        TimingStage.TimestampColumn next = deviceCheckBox.isSelected() ? new TimingStage.TimestampColumn(
+                (Integer) columnSpinner.getValue(), TIMESTAMP_UNITS[unitCBox.getSelectedIndex()]) : null;
+        if (Objects.equals(next, timestampColumn))
+            return;
+        boolean columnChanged = next == null || timestampColumn == null || next.column() != timestampColumn.column();
+        timestampColumn = next;
+        for (PortConnection connection : connections)
+            connection.setTimestampColumn(next);
+        // The timestamp channel is not plotted, so the channels after it move down by one
+        if (columnChanged)
+            resetChannels();
+        statusBar.setTimedStatus(next == null ? "Timestamps from the host clock"
+                : String.format("Timestamps from channel %d in %s", next.column(),
+                TIMESTAMP_UNIT_NAMES[unitCBox.getSelectedIndex()]), 5000);
+    }
+
+    private void editTrigger() {
+        if (connections.isEmpty()) {
+            statusBar.setTimedStatus("Connect to a port to use the trigger", 5000);
+            return;
+        }
+        TriggerEngine current = serialPlotPanel.getTrigger();
+        TriggerEngine.Settings settings = current != null ? current.getSettings()
+                : new TriggerEngine.Settings(0, TriggerEngine.Condition.RISING, 0, 0, TriggerEngine.Mode.AUTO, 500, 1500);
+
+        JSpinner channelSpinner = new JSpinner(new SpinnerNumberModel(settings.channel(), 0, 1023, 1));
+        JComboBox<TriggerEngine.Condition> conditionCBox = new JComboBox<>(TriggerEngine.Condition.values());
+        conditionCBox.setSelectedItem(settings.condition());
+        JTextField levelField = new JTextField(String.valueOf(settings.level()));
+        JTextField hysteresisField = new JTextField(String.valueOf(settings.hysteresis()));
+        JComboBox<TriggerEngine.Mode> modeCBox = new JComboBox<>(TriggerEngine.Mode.values());
+        modeCBox.setSelectedItem(settings.mode());
+        JSpinner preSpinner = new JSpinner(new SpinnerNumberModel(settings.preRows(), 0, TriggerEngine.Settings.MAX_ROWS, 100));
+        JSpinner postSpinner = new JSpinner(new SpinnerNumberModel(settings.postRows(), 1, TriggerEngine.Settings.MAX_ROWS, 100));
+
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel(String.format("Channel of %s", sendTarget().getName())));
+        panel.add(channelSpinner);
+        panel.add(new JLabel("Condition"));
+        panel.add(conditionCBox);
+        panel.add(new JLabel("Level"));
+        panel.add(levelField);
+        panel.add(new JLabel("Hysteresis"));
+        panel.add(hysteresisField);
+        panel.add(new JLabel("Mode"));
+        panel.add(modeCBox);
+        panel.add(new JLabel("Samples before trigger"));
+        panel.add(preSpinner);
+        panel.add(new JLabel("Samples from trigger on"));
+        panel.add(postSpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, "Trigger", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        try {
+            TriggerEngine.Settings next = new TriggerEngine.Settings((Integer) channelSpinner.getValue(),
+                    (TriggerEngine.Condition) conditionCBox.getSelectedItem(), Double.parseDouble(levelField.getText()),
+                    Double.parseDouble(hysteresisField.getText()), (TriggerEngine.Mode) modeCBox.getSelectedItem(),
+                    (Integer) preSpinner.getValue(), (Integer) postSpinner.getValue());
+            next.requireChannels(Math.max(serialPlotPanel.lineCount(), next.channel() + 1));
+            if (current != null && sendTarget().getTrigger() == current) {
+                current.setSettings(next);
+                current.rearm();
+            } else {
+                setTrigger(sendTarget(), new TriggerEngine(next));
+            }
+        } catch (IllegalArgumentException e) {
+            statusBar.setTimedStatus(String.format("Invalid trigger settings: %s", e.getMessage()), 5000);
+        }
+    }
+
+    // Attaches the trigger to one connection and shows its frames; null turns trigger mode off
+    private void setTrigger(PortConnection connection, TriggerEngine trigger) {
+        for (PortConnection other : connections)
+            other.setTrigger(null);
+        if (connection != null)
+            connection.setTrigger(trigger);
+        serialPlotPanel.setTrigger(trigger);
+    }
+
+    private void schedulePeriodicSend() {
+        if (connections.isEmpty())
+            return;
+        PortConnection connection = sendTarget();
+        if (isReconnecting(connection))
+            return;
+        JTextField commandField = new JTextField(textSendField.getText(), 20);
+        JSpinner periodSpinner = new JSpinner(new SpinnerNumberModel(100, 1, 3_600_000, 10));
+        JPanel panel = new JPanel(new GridLayout(0, 2, 5, 5));
+        panel.add(new JLabel("Command"));
+        panel.add(commandField);
+        panel.add(new JLabel("Period, ms"));
+        panel.add(periodSpinner);
+        if (JOptionPane.showConfirmDialog(this, panel, String.format("Send periodically to %s", connection.getName()),
+                JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        // The line ending is part of the command, so it goes out in the same write
+        byte[] text = commandField.getText().getBytes();
+        byte[] lineEnding = selectedLineEnding();
+        byte[] command = Arrays.copyOf(text, text.length + lineEnding.length);
+        System.arraycopy(lineEnding, 0, command, text.length, lineEnding.length);
+        try {
+            connection.getTransmitQueue().schedule(command, (Integer) periodSpinner.getValue() * 1_000_000L);
+            statusBar.setTimedStatus(String.format("Sending to %s every %d ms", connection.getName(),
+                    (Integer) periodSpinner.getValue()), 5000);
+        } catch (IllegalArgumentException e) {
+            statusBar.setTimedStatus(e.getMessage(), 5000);
+        }
+    }
+
+    private void stopPeriodicSends() {
+        for (PortConnection connection : connections)
+            connection.getTransmitQueue().cancelSchedules();
+        statusBar.setTimedStatus("Periodic sends stopped", 5000);
+    }
+
+    private void sendFile() {
+        if (connections.isEmpty())
+            return;
+        PortConnection connection = sendTarget();
+        if (isReconnecting(connection))
+            return;
+        TransmitQueue queue = connection.getTransmitQueue();
+        if (queue.isStreaming()) {
+            statusBar.setTimedStatus(String.format("%s is already sending a file", connection.getName()), 5000);
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(String.format("Send file to %s", connection.getName()));
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        statusBar.setStatus(String.format("Sending %s to %s...", chooser.getSelectedFile().getName(), connection.getName()));
+        queue.streamFile(chooser.getSelectedFile().toPath(), (file, bytesSent, error) -> {
+            String message = error != null
+                    ? String.format("Sending %s failed after %d bytes: %s", file.getFileName(), bytesSent, error.getMessage())
+                    : String.format("Sent %d bytes of %s", bytesSent, file.getFileName());
+            SwingUtilities.invokeLater(() -> statusBar.setTimedStatus(message, 5000));
+        });
+    }
+
+    private void openCapture() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle("Open capture");
+        if (chooser.showOpenDialog(this) != JFileChooser.APPROVE_OPTION)
+            return;
+
+        try {
+            CaptureReader capture = new CaptureReader(chooser.getSelectedFile().toPath());
+            closeCapture();
+            serialPlotPanel.setCapture(capture);
+            statusBar.setTimedStatus(String.format("Viewing %s: %d samples, %d channels",
+                    chooser.getSelectedFile().getName(), capture.getRowCount(), capture.getChannelCount()), 5000);
+        } catch (IOException | UncheckedIOException e) {
+            statusBar.setTimedStatus(String.format("Cannot open capture: %s", e.getMessage()), 5000);
+        }
+    }
+
+    private void closeCapture() {
+        CaptureReader capture = serialPlotPanel.getCapture();
+        if (capture == null)
+            return;
+
+        serialPlotPanel.setCapture(null);
+        try {
+            capture.close();
+        } catch (IOException e) {
+            statusBar.setTimedStatus(String.format("Error while closing capture: %s", e.getMessage()), 5000);
+        }
+    }
+
+    private void editDerivedChannels() {
+        StringBuilder current = new StringBuilder();
+        for (CompiledExpression expression : derivedChannels)
+            current.append(expression.getText()).append('\n');
+        JTextArea textArea = new JTextArea(current.toString(), 8, 40);
+        JPanel panel = new JPanel(new BorderLayout(0, 5));
+        panel.add(new JLabel("<html>One expression per line, appended after each port's channels.<br>"
+                + "Example: ch0 * 3.3 / 4095, sqrt(ch1*ch1 + ch2*ch2), avg(ch3, 50)</html>"), BorderLayout.NORTH);
+        panel.add(new JScrollPane(textArea), BorderLayout.CENTER);
+        if (JOptionPane.showConfirmDialog(this, panel, "Derived channels", JOptionPane.OK_CANCEL_OPTION,
+                JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION)
+            return;
+
+        List<String> lines = new ArrayList<>();
+        for (String line : textArea.getText().split("\n")) {
+            if (!line.isBlank())
+                lines.add(line);
+        }
+
+        // Compiling through Groovy takes a moment, keep it off the EDT
+        statusBar.setStatus("Compiling derived channels...");
+        Thread compiler = new Thread(() -> {
+            try {
+                List<CompiledExpression> compiled = new ArrayList<>();
+                for (String line : lines)
+                    compiled.add(ExpressionCompiler.compile(line));
+                SwingUtilities.invokeLater(() -> {
+                    derivedChannels = compiled;
+                    for (PortConnection connection : connections)
+                        connection.setDerivedChannels(compiled);
+                    statusBar.setTimedStatus(String.format("%d derived channels active", compiled.size()), 5000);
+                });
+            } catch (IllegalArgumentException e) {
+                SwingUtilities.invokeLater(() -> statusBar.setTimedStatus(e.getMessage(), 10000));
+            }
+        }, "expression-compiler");
+        compiler.start();
+    }
+
+    private JPopupMenu createPlotMenu() {
+        JMenu frameRateMenu = new JMenu("Frame rate");
+        ButtonGroup frameRateGroup = new ButtonGroup();
+        for (int fps : new int[]{30, 60, 120, RenderScheduler.UNLIMITED}) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(
+                    fps == RenderScheduler.UNLIMITED ? "Unlimited" : String.format("%d FPS", fps),
+                    fps == renderScheduler.getTargetFps());
+            item.addActionListener(e -> renderScheduler.setTargetFps(fps));
+            frameRateGroup.add(item);
+            frameRateMenu.add(item);
+        }
+
+        JMenu historyMenu = new JMenu("History per channel");
+        ButtonGroup historyGroup = new ButtonGroup();
+        for (long megabytes : new long[]{0, 8, 32, 128}) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(megabytes == 0 ? "Off" : String.format("%d MB", megabytes),
+                    megabytes << 20 == serialPlotPanel.getHistoryBudget());
+            item.addActionListener(e -> serialPlotPanel.setHistoryBudget(megabytes << 20));
+            historyGroup.add(item);
+            historyMenu.add(item);
+        }
+        JMenu bufferMenu = new JMenu("Buffer per channel");
+        ButtonGroup bufferGroup = new ButtonGroup();
+        for (int seconds : new int[]{0, 10, 30, 60}) {
+            JRadioButtonMenuItem item = new JRadioButtonMenuItem(seconds == 0 ? "2000 samples" : String.format("Last %d s", seconds),
+                    seconds == serialPlotPanel.getTimeWindow());
+            item.addActionListener(e -> serialPlotPanel.setTimeWindow(seconds));
+            bufferGroup.add(item);
+            bufferMenu.add(item);
+        }
+        JMenuItem timestampsItem = new JMenuItem("Timestamps...");
+        timestampsItem.addActionListener(e -> editTimestamps());
+
+        JCheckBoxMenuItem showHistoryItem = new JCheckBoxMenuItem("Show history", serialPlotPanel.isShowHistory());
+        showHistoryItem.addActionListener(e -> serialPlotPanel.setShowHistory(showHistoryItem.isSelected()));
+
+        JMenuItem resetChannelsItem = new JMenuItem("Reset channels");
+        resetChannelsItem.addActionListener(e -> resetChannels());
+
+        JMenuItem derivedItem = new JMenuItem("Derived channels...");
+        derivedItem.addActionListener(e -> editDerivedChannels());
+
+        JMenuItem spectrumItem = new JMenuItem("Spectrum...");
+        spectrumItem.addActionListener(e -> {
+            if (spectrumWindow == null)
+                spectrumWindow = new SpectrumWindow(this);
+            spectrumWindow.setVisible(true);
+        });
+
+        JCheckBoxMenuItem metricsItem = new JCheckBoxMenuItem("Show metrics");
+        metricsItem.addActionListener(e -> {
+            if (metricsItem.isSelected()) {
+                metricsSummary.update();
+                statusBar.setMetrics("Collecting metrics...");
+                metricsTimer.start();
+            } else {
+                metricsTimer.stop();
+                statusBar.setMetrics(null);
+            }
+        });
+
+        JCheckBoxMenuItem pauseItem = new JCheckBoxMenuItem("Pause");
+        pauseItem.addActionListener(e -> serialPlotPanel.setPaused(pauseItem.isSelected()));
+        JMenuItem resetViewItem = new JMenuItem("Reset view");
+        resetViewItem.addActionListener(e -> serialPlotPanel.resetView());
+
+        JMenuItem triggerItem = new JMenuItem("Trigger...");
+        triggerItem.addActionListener(e -> editTrigger());
+        JMenuItem rearmItem = new JMenuItem("Rearm trigger");
+        rearmItem.addActionListener(e -> serialPlotPanel.getTrigger().rearm());
+        JMenuItem triggerOffItem = new JMenuItem("Trigger off");
+        triggerOffItem.addActionListener(e -> setTrigger(null, null));
+
+        JMenu transmitMenu = new JMenu("Transmit");
+        JMenuItem periodicItem = new JMenuItem("Send periodically...");
+        periodicItem.addActionListener(e -> schedulePeriodicSend());
+        JMenuItem stopPeriodicItem = new JMenuItem("Stop periodic sends");
+        stopPeriodicItem.addActionListener(e -> stopPeriodicSends());
+        JMenuItem sendFileItem = new JMenuItem("Send file...");
+        sendFileItem.addActionListener(e -> sendFile());
+        JMenuItem stopFileItem = new JMenuItem("Stop sending file");
+        stopFileItem.addActionListener(e -> {
+            for (PortConnection connection : connections)
+                connection.getTransmitQueue().cancelStream();
+        });
+        transmitMenu.add(periodicItem);
+        transmitMenu.add(stopPeriodicItem);
+        transmitMenu.addSeparator();
+        transmitMenu.add(sendFileItem);
+        transmitMenu.add(stopFileItem);
+
+        autoReconnectItem = new JCheckBoxMenuItem("Auto-reconnect", true);
+
+        JCheckBoxMenuItem stripChartItem = new JCheckBoxMenuItem("Strip chart mode", serialPlotPanel.isStripChart());
+        stripChartItem.addActionListener(e -> serialPlotPanel.setStripChart(stripChartItem.isSelected()));
+
+        recordItem = new JCheckBoxMenuItem("Record to file...");
+        recordItem.addActionListener(e -> {
+            if (recordItem.isSelected())
+                startRecording();
+            else
+                stopRecording();
+        });
+
+        JMenuItem openCaptureItem = new JMenuItem("Open capture...");
+        openCaptureItem.addActionListener(e -> openCapture());
+        JMenuItem closeCaptureItem = new JMenuItem("Back to live view");
+        closeCaptureItem.addActionListener(e -> closeCapture());
+
+        JPopupMenu menu = new JPopupMenu();
+        menu.add(pauseItem);
+        menu.add(resetViewItem);
+        menu.add(triggerItem);
+        menu.add(rearmItem);
+        menu.add(triggerOffItem);
+        menu.addSeparator();
+        menu.add(frameRateMenu);
+        menu.add(stripChartItem);
+        menu.add(bufferMenu);
+        menu.add(historyMenu);
+        menu.add(showHistoryItem);
+        menu.add(spectrumItem);
+        menu.add(metricsItem);
+        menu.add(derivedItem);
+        menu.add(resetChannelsItem);
+        menu.add(timestampsItem);
+        menu.add(transmitMenu);
+        menu.add(autoReconnectItem);
+        menu.addSeparator();
+        menu.add(recordItem);
+        menu.add(openCaptureItem);
+        menu.add(closeCaptureItem);
+        menu.addPopupMenuListener(new PopupMenuListener() {
+            @Override
+            public void popupMenuWillBecomeVisible(PopupMenuEvent e) {
+                closeCaptureItem.setEnabled(serialPlotPanel.getCapture() != null);
+                pauseItem.setSelected(serialPlotPanel.isPaused());
+                TriggerEngine trigger = serialPlotPanel.getTrigger();
+                rearmItem.setEnabled(trigger != null && trigger.getSettings().mode() == TriggerEngine.Mode.SINGLE);
+                triggerOffItem.setEnabled(trigger != null);
+                boolean connected = !connections.isEmpty();
+                transmitMenu.setEnabled(connected);
+                stopPeriodicItem.setEnabled(connected && connections.stream().anyMatch(c -> c.getTransmitQueue().hasSchedules()));
+                stopFileItem.setEnabled(connected && connections.stream().anyMatch(c -> c.getTransmitQueue().isStreaming()));
+            }
+
+            @Override
+            public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {
+            }
+
+            @Override
+            public void popupMenuCanceled(PopupMenuEvent e) {
+            }
+        });
+        return menu;
     }
 
     public static void main(String[] args) {
@@ -205,13 +961,21 @@ public class MainWindow extends JFrame implements SerialPortEventListener {
         } catch (Exception ignored) {
         }
 
-        new MainWindow();
+        MainWindow window = new MainWindow();
+
+        // --source <spec> connects right away, e.g. --source "synthetic?channels=8,rate=100000"
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--source")) {
+                window.portSelectCBox.setSelectedItem(args[i + 1]);
+                window.connectButton.setSelected(true);
+            }
+        }
 
         /*plotting.PlotLine line = new plotting.PlotLine(0, 257);
-        line.addPoint(new Point2D.Double(0, 0));
+        line.addPoint(0, 0);
 
         for(int i = 0; i < 300; i++)
-            line.addPoint(new Point2D.Double(100, 100));
-        line.addPoint(new Point2D.Double(200, 200));*/
+            line.addPoint(100, 100);
+        line.addPoint(200, 200);*/
     }
 }
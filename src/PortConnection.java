@@ -0,0 +1,325 @@
+import expression.CompiledExpression;
+import expression.DerivedStage;
+import ingest.CobsFrameDecoder;
+import ingest.LineParser;
+import ingest.SampleDecoder;
+import ingest.SampleQueue;
+import ingest.TimingStage;
+import metrics.PipelineMetrics;
+import plotting.PlotLine;
+import recording.CaptureWriter;
+import source.DataSource;
+import source.DataSources;
+import source.SerialPortSource;
+import source.TcpSource;
+import transmit.TransmitQueue;
+import trigger.TriggerEngine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// One open source with its own decoder and queue, so a slow or broken port never holds up the others.
+// The source's reader thread decodes and enqueues; the EDT drains the queue into this port's plot lines.
+// Samples are stamped with host time in seconds since the shared epoch, which aligns all ports on one X axis;
+// the TimingStage spreads the rows of a chunk over its arrival time or maps a device timestamp column onto it.
+// A dropped port can be suspended and reopened with the same settings; channels and plot lines carry over.
+public class PortConnection implements DataSource.Listener {
+    public interface ErrorListener {
+        void onError(PortConnection connection, String message);
+    }
+
+    private static final double[] EMPTY_ROW = new double[0];
+
+    private final String spec;
+    private final int baudRate;
+    private volatile DataSource source;
+    private final SampleDecoder decoder;
+    private final LineParser lineParser;
+    private final CobsFrameDecoder frameDecoder;
+    private final long epochNanos;
+    private final Runnable dataListener;
+    private final ErrorListener errorListener;
+    private final PipelineMetrics metrics;
+    private final TimingStage timing;
+    private final SampleQueue.Consumer timedRows = this::timedRow;
+    private final SampleQueue sampleQueue = new SampleQueue(1 << 18);
+    private volatile CaptureWriter captureWriter;
+    // Replaced from the EDT, picked up by the reader at the start of the next chunk
+    private volatile DerivedStage derivedStage;
+    private List<CompiledExpression> derivedExpressions = List.of();
+    // Set from the EDT, applied by the reader before the next chunk
+    private volatile boolean channelResetRequested;
+    // Sees every row of this port, derived channels included, on the reader thread
+    private volatile TriggerEngine trigger;
+    private volatile TransmitQueue transmitQueue;
+    // Changed under the lock in suspend(), reopen() and close()
+    private volatile boolean suspended;
+    private volatile boolean closed;
+    // Set by reopen(), the reader drops the partial line and marks the gap before the first new row
+    private volatile boolean gapPending;
+
+    // Reader thread only
+    private DerivedStage activeStage;
+    private long reportedParseFailures, reportedFrameErrorCount, reportedDroppedLines;
+
+    // EDT only
+    final List<PlotLine> lines = new ArrayList<>();
+    long reportedFrameErrors;
+    long reportedCaptureDrops;
+    Path reportedCapturePath;
+
+    public PortConnection(String spec, int baudRate, boolean binary, long epochNanos, PipelineMetrics metrics,
+                          Runnable dataListener, ErrorListener errorListener) {
+        this.spec = spec;
+        this.baudRate = baudRate;
+        this.source = DataSources.create(spec, baudRate);
+        this.frameDecoder = binary ? new CobsFrameDecoder(this::enqueueValues) : null;
+        this.lineParser = binary ? null : new LineParser(this::enqueueValues);
+        this.decoder = binary ? frameDecoder : lineParser;
+        // 10 bits per byte on an 8N1 line; other sources do not say how fast their bytes come in
+        this.timing = new TimingStage(source instanceof SerialPortSource && baudRate > 0 ? 10.0 / baudRate : 0);
+        this.epochNanos = epochNanos;
+        this.metrics = metrics;
+        this.dataListener = dataListener;
+        this.errorListener = errorListener;
+    }
+
+    public void open() throws IOException {
+        source.open(this);
+        transmitQueue = new TransmitQueue(source, metrics, this::onError);
+    }
+
+    // The lock only guards the state, so closing never waits for a reopen() that is still connecting
+    public void close() throws IOException {
+        DataSource current;
+        TransmitQueue queue;
+        synchronized (this) {
+            closed = true;
+            current = source;
+            queue = transmitQueue;
+        }
+        // Does not wait for the transmit thread; closing the source fails any write it is blocked in
+        if (queue != null)
+            queue.close();
+        current.close();
+    }
+
+    // Serial ports and TCP connections come back after a device reset or a network hiccup; replays and
+    // generators that stopped are done
+    public boolean canReconnect() {
+        DataSource current = source;
+        return current instanceof SerialPortSource || current instanceof TcpSource;
+    }
+
+    public boolean isSerialPort() {
+        return source instanceof SerialPortSource;
+    }
+
+    // Closes the failed source but keeps everything else; errors of the dead source are not reported again
+    public void suspend() {
+        DataSource current;
+        synchronized (this) {
+            if (closed || suspended)
+                return;
+            suspended = true;
+            current = source;
+            if (transmitQueue != null)
+                transmitQueue.close();
+        }
+        try {
+            current.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public boolean isSuspended() {
+        return suspended;
+    }
+
+    // Opens a new source from the same spec and baud rate; returns false if the connection was closed meanwhile.
+    // The source is opened outside the lock, which can take as long as a TCP connect timeout, and only swapped in
+    // once it is open.
+    public boolean reopen() throws IOException {
+        synchronized (this) {
+            if (closed)
+                return false;
+            if (!suspended)
+                return true;
+        }
+        DataSource next = DataSources.create(spec, baudRate);
+        // Set before the first byte of the new source can arrive
+        gapPending = true;
+        next.open(this);
+        synchronized (this) {
+            if (!closed) {
+                source = next;
+                transmitQueue = new TransmitQueue(next, metrics, this::onError);
+                suspended = false;
+                return true;
+            }
+        }
+        next.close();
+        return false;
+    }
+
+    public String getName() {
+        return source.getName();
+    }
+
+    public DataSource getSource() {
+        return source;
+    }
+
+    // Everything sent to the port goes through here; null until open() succeeded, a new one after reopen()
+    public TransmitQueue getTransmitQueue() {
+        return transmitQueue;
+    }
+
+    public SampleQueue getSampleQueue() {
+        return sampleQueue;
+    }
+
+    // Null for text sources
+    public CobsFrameDecoder getFrameDecoder() {
+        return frameDecoder;
+    }
+
+    public CaptureWriter getCaptureWriter() {
+        return captureWriter;
+    }
+
+    // Called from the EDT
+    public void setCaptureWriter(CaptureWriter captureWriter) {
+        this.captureWriter = captureWriter;
+        reportedCaptureDrops = 0;
+        reportedCapturePath = captureWriter == null ? null : captureWriter.getPath();
+    }
+
+    // Derived channels follow the channels this port's first row after the change carries; an empty list removes them
+    public void setDerivedChannels(List<CompiledExpression> expressions) {
+        derivedExpressions = expressions;
+        derivedStage = expressions.isEmpty() ? null : new DerivedStage(expressions, this::offerRow);
+    }
+
+    public TriggerEngine getTrigger() {
+        return trigger;
+    }
+
+    public void setTrigger(TriggerEngine trigger) {
+        this.trigger = trigger;
+    }
+
+    public TimingStage.TimestampColumn getTimestampColumn() {
+        return timing.getTimestampColumn();
+    }
+
+    // Takes X from this channel of every row instead of the host clock; null goes back to host time
+    public void setTimestampColumn(TimingStage.TimestampColumn timestampColumn) {
+        timing.setTimestampColumn(timestampColumn);
+    }
+
+    // Labels of the text channels by index as plotted, null entries for unlabeled and derived ones
+    public String[] getChannelLabels() {
+        String[] labels = lineParser != null ? lineParser.getChannels().getLabels() : new String[0];
+        TimingStage.TimestampColumn timestampColumn = timing.getTimestampColumn();
+        if (timestampColumn != null && timestampColumn.column() < labels.length) {
+            int column = timestampColumn.column();
+            String[] plotted = new String[labels.length - 1];
+            System.arraycopy(labels, 0, plotted, 0, column);
+            System.arraycopy(labels, column + 1, plotted, column, plotted.length - column);
+            labels = plotted;
+        }
+
+        DerivedStage stage = derivedStage;
+        int base = stage != null ? stage.getBase() : -1;
+        if (base < 0 || base >= labels.length)
+            return labels;
+        String[] plotted = new String[labels.length + stage.getDerivedCount()];
+        System.arraycopy(labels, 0, plotted, 0, base);
+        System.arraycopy(labels, base, plotted, base + stage.getDerivedCount(), labels.length - base);
+        return plotted;
+    }
+
+    // Retires every channel of this port; the following lines define them again, derived channels included
+    public void resetChannels() {
+        setDerivedChannels(derivedExpressions);
+        channelResetRequested = true;
+    }
+
+    @Override
+    public void onData(byte[] data, int offset, int length) {
+        if (channelResetRequested) {
+            channelResetRequested = false;
+            if (lineParser != null)
+                lineParser.resetChannels();
+        }
+        timing.beginChunk((System.nanoTime() - epochNanos) / 1e9, offset, length);
+        if (gapPending) {
+            // An empty row breaks every line of this port, history before the outage stays in place
+            gapPending = false;
+            decoder.reset();
+            sampleQueue.offer(timing.gap(), EMPTY_ROW, 0);
+        }
+        metrics.bytesReceived.add(length);
+        activeStage = derivedStage;
+        decoder.feed(data, offset, length);
+        if (activeStage != null)
+            activeStage.flush();
+        updateErrorCounts();
+        dataListener.run();
+    }
+
+    // Forwards the per-port error counters to the shared metrics as deltas, once per chunk
+    private void updateErrorCounts() {
+        long parseFailures = lineParser != null ? lineParser.getParseFailures() : 0;
+        if (parseFailures != reportedParseFailures) {
+            metrics.parseFailures.add(parseFailures - reportedParseFailures);
+            reportedParseFailures = parseFailures;
+        }
+        long frameErrors = frameDecoder != null ? frameDecoder.getCorruptedFrames() + frameDecoder.getDroppedFrames() : 0;
+        if (frameErrors != reportedFrameErrorCount) {
+            metrics.frameErrors.add(frameErrors - reportedFrameErrorCount);
+            reportedFrameErrorCount = frameErrors;
+        }
+        long droppedLines = sampleQueue.droppedLines();
+        if (droppedLines != reportedDroppedLines) {
+            metrics.droppedLines.add(droppedLines - reportedDroppedLines);
+            reportedDroppedLines = droppedLines;
+        }
+    }
+
+    @Override
+    public void onError(String message) {
+        if (!suspended)
+            errorListener.onError(this, message);
+    }
+
+    private void enqueueValues(double[] values, int count) {
+        metrics.linesReceived.increment();
+        metrics.samplesReceived.add(count);
+        timing.accept(decoder.rowEnd(), values, count, timedRows);
+    }
+
+    private void timedRow(double x, double[] values, int count) {
+        if (activeStage != null)
+            activeStage.add(x, values, count);
+        else
+            offerRow(x, values, count);
+    }
+
+    private void offerRow(double x, double[] values, int count) {
+        sampleQueue.offer(x, values, count);
+        CaptureWriter writer = captureWriter;
+        if (writer != null)
+            writer.offer(x, values, count);
+        TriggerEngine engine = trigger;
+        if (engine != null)
+            engine.accept(x, values, count);
+    }
+}
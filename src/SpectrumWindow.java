@@ -0,0 +1,84 @@
+import plotting.SpectrumPanel;
+import spectrum.SpectrumAnalyzer;
+import spectrum.WindowFunction;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Non-modal frequency view shown beside the main window. The analyzer runs only while it is open.
+public class SpectrumWindow extends JDialog {
+    private static final Integer[] FFT_SIZES = {256, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536};
+    private static final String[] OVERLAPS = {"0%", "50%", "75%", "87.5%"};
+    private static final Integer[] AVERAGES = {1, 2, 4, 8, 16, 32, 64};
+
+    private final SpectrumPanel spectrumPanel = new SpectrumPanel();
+    private final JComboBox<Integer> sizeCBox = new JComboBox<>(FFT_SIZES);
+    private final JComboBox<WindowFunction> windowCBox = new JComboBox<>(WindowFunction.values());
+    private final JComboBox<String> overlapCBox = new JComboBox<>(OVERLAPS);
+    private final JComboBox<Integer> averagesCBox = new JComboBox<>(AVERAGES);
+    private final JCheckBox logFrequencyCheckBox = new JCheckBox("Log frequency");
+    private SpectrumAnalyzer analyzer;
+
+    public SpectrumWindow(Frame owner) {
+        super(owner, "Spectrum", false);
+        setDefaultCloseOperation(JDialog.HIDE_ON_CLOSE);
+
+        sizeCBox.setSelectedItem(4096);
+        windowCBox.setSelectedItem(WindowFunction.HANN);
+        overlapCBox.setSelectedIndex(1);
+        averagesCBox.setSelectedItem(4);
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("FFT size"));
+        controls.add(sizeCBox);
+        controls.add(new JLabel("Window"));
+        controls.add(windowCBox);
+        controls.add(new JLabel("Overlap"));
+        controls.add(overlapCBox);
+        controls.add(new JLabel("Averages"));
+        controls.add(averagesCBox);
+        controls.add(logFrequencyCheckBox);
+
+        sizeCBox.addActionListener(e -> applySettings());
+        windowCBox.addActionListener(e -> applySettings());
+        overlapCBox.addActionListener(e -> applySettings());
+        averagesCBox.addActionListener(e -> applySettings());
+        logFrequencyCheckBox.addActionListener(e -> spectrumPanel.setLogFrequency(logFrequencyCheckBox.isSelected()));
+
+        getContentPane().add(controls, BorderLayout.NORTH);
+        getContentPane().add(spectrumPanel, BorderLayout.CENTER);
+        setSize(700, 450);
+        if (owner != null)
+            setLocation(owner.getX() + owner.getWidth(), owner.getY());
+    }
+
+    @Override
+    public void setVisible(boolean visible) {
+        if (visible && analyzer == null) {
+            analyzer = new SpectrumAnalyzer(currentSettings(), spectrumPanel::repaint);
+            spectrumPanel.setAnalyzer(analyzer);
+        } else if (!visible && analyzer != null) {
+            analyzer.close();
+            analyzer = null;
+            spectrumPanel.setAnalyzer(null);
+        }
+        super.setVisible(visible);
+    }
+
+    // Null while the window is hidden
+    public SpectrumAnalyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    private void applySettings() {
+        if (analyzer != null)
+            analyzer.setSettings(currentSettings());
+    }
+
+    private SpectrumAnalyzer.Settings currentSettings() {
+        // 0, 1/2, 3/4, 7/8
+        double overlap = 1 - Math.pow(0.5, overlapCBox.getSelectedIndex());
+        return new SpectrumAnalyzer.Settings((Integer) sizeCBox.getSelectedItem(),
+                (WindowFunction) windowCBox.getSelectedItem(), overlap, (Integer) averagesCBox.getSelectedItem());
+    }
+}
@@ -3,6 +3,7 @@ import java.awt.*;
 
 public class StatusBar extends JPanel {
     private final JLabel statusLabel;
+    private final JLabel metricsLabel;
     private Timer messageTimer;
 
     public StatusBar() {
@@ -10,9 +11,12 @@ public class StatusBar extends JPanel {
 
         statusLabel = new JLabel(" ");
         Component horizontalSpacer = Box.createHorizontalGlue();
+        metricsLabel = new JLabel();
+        metricsLabel.setVisible(false);
 
         add(statusLabel);
         add(horizontalSpacer);
+        add(metricsLabel);
 
         setBorder(BorderFactory.createBevelBorder(1));
         setPreferredSize(new Dimension(-1, 20));
@@ -28,6 +32,12 @@ public class StatusBar extends JPanel {
         startTimer(milliseconds);
     }
 
+    // Right-aligned line of live pipeline figures, hidden when null
+    public void setMetrics(String metrics) {
+        metricsLabel.setText(metrics);
+        metricsLabel.setVisible(metrics != null);
+    }
+
     public void clearStatus() {
         setStatus(" ");
     }
@@ -0,0 +1,33 @@
+package expression;
+
+import java.lang.reflect.InvocationTargetException;
+
+// The class generated for one expression; stateless to share, instantiate once per input stream
+public class CompiledExpression {
+    private final String text;
+    private final int channelCount;
+    private final Class<? extends DerivedChannel> type;
+
+    CompiledExpression(String text, int channelCount, Class<? extends DerivedChannel> type) {
+        this.text = text;
+        this.channelCount = channelCount;
+        this.type = type;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    // Number of input columns the expression reads (highest chN + 1)
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public DerivedChannel newInstance() {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (InstantiationException | IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
+            throw new IllegalStateException("Cannot instantiate compiled expression", e);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package expression;
+
+// A compiled derived-channel expression evaluated over a batch of rows.
+// columns[channel][row] holds the input for rows [0, rows), missing values are NaN; one result per row goes to out.
+// Instances may keep state between batches (moving averages), so every input stream needs its own.
+public interface DerivedChannel {
+    void evaluate(double[][] columns, int rows, double[] out);
+}
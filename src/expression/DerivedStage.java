@@ -0,0 +1,97 @@
+package expression;
+
+import ingest.SampleQueue;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Ingest stage that adds derived channels to every row. Rows are collected column-wise into batches and each
+// compiled expression runs once per batch over the primitive columns; the widened rows then go to the sink.
+// Derived channels keep fixed indices: they start at a base fixed by the first row, short rows are padded with NaN
+// up to it and channels past it in wider rows move behind the derived ones, so a row with a missing value never
+// shifts a derived channel onto another line.
+// Call flush() at the end of every chunk so batching never holds rows back. Single-threaded, one per input stream.
+public class DerivedStage {
+    private static final int BATCH_ROWS = 256;
+
+    private final DerivedChannel[] channels;
+    private final SampleQueue.Consumer sink;
+
+    private double[][] columns;
+    private final double[] xs = new double[BATCH_ROWS];
+    private final int[] counts = new int[BATCH_ROWS];
+    private final double[][] results;
+    private double[] row = new double[16];
+    private int rows;
+    // Index of the first derived channel, -1 until the first row; read from the EDT for the channel labels
+    private volatile int base = -1;
+    private final int inputColumns;
+
+    public DerivedStage(List<CompiledExpression> expressions, SampleQueue.Consumer sink) {
+        this.sink = sink;
+        channels = new DerivedChannel[expressions.size()];
+        results = new double[expressions.size()][BATCH_ROWS];
+        int inputColumns = 0;
+        for (int i = 0; i < channels.length; i++) {
+            channels[i] = expressions.get(i).newInstance();
+            inputColumns = Math.max(inputColumns, expressions.get(i).getChannelCount());
+        }
+        this.inputColumns = inputColumns;
+        columns = new double[inputColumns][BATCH_ROWS];
+    }
+
+    public int getDerivedCount() {
+        return channels.length;
+    }
+
+    public int getBase() {
+        return base;
+    }
+
+    public void add(double x, double[] values, int count) {
+        if (base < 0)
+            base = Math.max(count, inputColumns);
+        if (count > columns.length) {
+            int oldLength = columns.length;
+            columns = Arrays.copyOf(columns, count);
+            for (int c = oldLength; c < count; c++)
+                columns[c] = new double[BATCH_ROWS];
+        }
+        // Channels a row does not have read as NaN
+        for (int c = 0; c < count; c++)
+            columns[c][rows] = values[c];
+        for (int c = count; c < columns.length; c++)
+            columns[c][rows] = Double.NaN;
+
+        xs[rows] = x;
+        counts[rows] = count;
+        if (++rows == BATCH_ROWS)
+            flush();
+    }
+
+    public void flush() {
+        if (rows == 0)
+            return;
+
+        for (int k = 0; k < channels.length; k++)
+            channels[k].evaluate(columns, rows, results[k]);
+
+        int base = this.base;
+        for (int r = 0; r < rows; r++) {
+            int count = counts[r];
+            int width = Math.max(count, base) + channels.length;
+            if (width > row.length)
+                row = new double[Integer.highestOneBit(width) << 1];
+            for (int c = 0; c < Math.min(count, base); c++)
+                row[c] = columns[c][r];
+            for (int c = count; c < base; c++)
+                row[c] = Double.NaN;
+            for (int k = 0; k < channels.length; k++)
+                row[base + k] = results[k][r];
+            for (int c = base; c < count; c++)
+                row[c + channels.length] = columns[c][r];
+            sink.accept(xs[r], row, width);
+        }
+        rows = 0;
+    }
+}
@@ -0,0 +1,257 @@
+package expression;
+
+import groovy.lang.GroovyClassLoader;
+import org.codehaus.groovy.control.CompilationFailedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+// Compiles expressions such as "ch0 * 3.3 / 4095", "sqrt(ch1*ch1 + ch2*ch2)" or "avg(ch3, 50)" into classes.
+// The expression is parsed here and only a whitelisted arithmetic subset is accepted; it is then emitted as a
+// @CompileStatic Groovy class whose evaluate() loops over primitive double columns, so there is no per-sample
+// interpretation, dispatch or boxing. All literals are emitted as doubles to keep Groovy away from BigDecimal.
+//
+//   expression := term (('+' | '-') term)*
+//   term       := unary (('*' | '/' | '%') unary)*
+//   unary      := ('-' | '+') unary | primary
+//   primary    := number | chN | PI | E | function '(' arguments ')' | '(' expression ')'
+//
+// avg(expression, n) is the moving average over the last n rows; NaN inputs are skipped.
+public class ExpressionCompiler {
+    private static final int MAX_AVERAGE_WINDOW = 1 << 20;
+    private static final Map<String, Integer> FUNCTIONS = Map.ofEntries(
+            Map.entry("abs", 1), Map.entry("sqrt", 1), Map.entry("cbrt", 1),
+            Map.entry("sin", 1), Map.entry("cos", 1), Map.entry("tan", 1),
+            Map.entry("asin", 1), Map.entry("acos", 1), Map.entry("atan", 1), Map.entry("atan2", 2),
+            Map.entry("sinh", 1), Map.entry("cosh", 1), Map.entry("tanh", 1),
+            Map.entry("exp", 1), Map.entry("log", 1), Map.entry("log10", 1), Map.entry("pow", 2),
+            Map.entry("min", 2), Map.entry("max", 2), Map.entry("hypot", 2),
+            Map.entry("floor", 1), Map.entry("ceil", 1), Map.entry("signum", 1),
+            Map.entry("toDegrees", 1), Map.entry("toRadians", 1));
+
+    private static int classCounter;
+
+    private ExpressionCompiler() {
+    }
+
+    public static CompiledExpression compile(String text) {
+        Parser parser = new Parser(text);
+        String body = parser.parse();
+
+        String className;
+        synchronized (ExpressionCompiler.class) {
+            className = "DerivedChannel" + ++classCounter;
+        }
+
+        StringBuilder source = new StringBuilder();
+        source.append("@groovy.transform.CompileStatic\n")
+                .append("class ").append(className).append(" implements expression.DerivedChannel {\n");
+        for (int i = 0; i < parser.averageWindows.size(); i++) {
+            source.append("    private final double[] avg").append(i).append("Window = new double[")
+                    .append(parser.averageWindows.get(i)).append("]\n")
+                    .append("    private int avg").append(i).append("Next, avg").append(i).append("Count\n")
+                    .append("    private double avg").append(i).append("Sum\n");
+        }
+        source.append("    void evaluate(double[][] columns, int rows, double[] out) {\n");
+        for (int channel = 0; channel < parser.channelCount; channel++) {
+            if (parser.usedChannels[channel])
+                source.append("        double[] c").append(channel).append(" = columns[").append(channel).append("]\n");
+        }
+        source.append("        for (int i = 0; i < rows; i++) {\n")
+                .append("            out[i] = ").append(body).append('\n')
+                .append("        }\n")
+                .append("    }\n");
+        for (int i = 0; i < parser.averageWindows.size(); i++) {
+            String prefix = "avg" + i;
+            source.append("    private double ").append(prefix).append("(double value) {\n")
+                    .append("        if (value != value)\n")
+                    .append("            return ").append(prefix).append("Count == 0 ? Double.NaN : ")
+                    .append(prefix).append("Sum / ").append(prefix).append("Count\n")
+                    .append("        if (").append(prefix).append("Count == ").append(prefix).append("Window.length)\n")
+                    .append("            ").append(prefix).append("Sum -= ").append(prefix).append("Window[").append(prefix).append("Next]\n")
+                    .append("        else\n")
+                    .append("            ").append(prefix).append("Count++\n")
+                    .append("        ").append(prefix).append("Window[").append(prefix).append("Next] = value\n")
+                    .append("        ").append(prefix).append("Sum += value\n")
+                    .append("        ").append(prefix).append("Next = ").append(prefix).append("Next + 1 == ")
+                    .append(prefix).append("Window.length ? 0 : ").append(prefix).append("Next + 1\n")
+                    .append("        return ").append(prefix).append("Sum / ").append(prefix).append("Count\n")
+                    .append("    }\n");
+        }
+        source.append("}\n");
+
+        // A loader per expression lets replaced expressions be unloaded
+        try (GroovyClassLoader loader = new GroovyClassLoader(ExpressionCompiler.class.getClassLoader())) {
+            Class<?> type = loader.parseClass(source.toString(), className + ".groovy");
+            return new CompiledExpression(text.trim(), parser.channelCount, type.asSubclass(DerivedChannel.class));
+        } catch (CompilationFailedException | java.io.IOException e) {
+            throw new IllegalArgumentException(String.format("Cannot compile \"%s\": %s", text.trim(), e.getMessage()), e);
+        }
+    }
+
+    private static class Parser {
+        private final String text;
+        private int position;
+        private final boolean[] usedChannels = new boolean[256];
+        private int channelCount;
+        // Window length of every avg() call, in call order
+        private final List<Integer> averageWindows = new ArrayList<>();
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        String parse() {
+            String result = expression();
+            skipSpaces();
+            if (position < text.length())
+                throw error("Unexpected '%c'", text.charAt(position));
+            return result;
+        }
+
+        private String expression() {
+            String result = term();
+            while (true) {
+                char operator = peek();
+                if (operator != '+' && operator != '-')
+                    return result;
+                position++;
+                result = "(" + result + " " + operator + " " + term() + ")";
+            }
+        }
+
+        private String term() {
+            String result = unary();
+            while (true) {
+                char operator = peek();
+                if (operator != '*' && operator != '/' && operator != '%')
+                    return result;
+                position++;
+                String right = unary();
+                result = operator == '%' ? "expression.Functions.remainder(" + result + ", " + right + ")"
+                        : "(" + result + " " + operator + " " + right + ")";
+            }
+        }
+
+        private String unary() {
+            char sign = peek();
+            if (sign == '-' || sign == '+') {
+                position++;
+                String operand = unary();
+                return sign == '-' ? "(-" + operand + ")" : operand;
+            }
+            return primary();
+        }
+
+        private String primary() {
+            char c = peek();
+            if (c == '(') {
+                position++;
+                String inner = expression();
+                expect(')');
+                return inner;
+            }
+            if (Character.isDigit(c) || c == '.')
+                return number();
+            if (Character.isLetter(c))
+                return identifier();
+            if (c == 0)
+                throw error("Unexpected end of expression");
+            throw error("Unexpected '%c'", c);
+        }
+
+        private String number() {
+            int start = position;
+            while (position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.'))
+                position++;
+            if (position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+                position++;
+                if (position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-'))
+                    position++;
+                while (position < text.length() && Character.isDigit(text.charAt(position)))
+                    position++;
+            }
+            try {
+                return Double.toString(Double.parseDouble(text.substring(start, position))) + "d";
+            } catch (NumberFormatException e) {
+                throw error("Invalid number \"%s\"", text.substring(start, position));
+            }
+        }
+
+        private String identifier() {
+            int start = position;
+            while (position < text.length() && Character.isLetterOrDigit(text.charAt(position)))
+                position++;
+            String name = text.substring(start, position);
+
+            if (name.startsWith("ch") && name.length() > 2 && name.substring(2).chars().allMatch(Character::isDigit)) {
+                int channel = Integer.parseInt(name.substring(2));
+                if (channel >= usedChannels.length)
+                    throw error("Channel %s is out of range", name);
+                usedChannels[channel] = true;
+                channelCount = Math.max(channelCount, channel + 1);
+                return "c" + channel + "[i]";
+            }
+            if (name.equals("PI") || name.equals("E"))
+                return "Math." + name;
+
+            if (name.equals("avg")) {
+                expect('(');
+                String argument = expression();
+                expect(',');
+                skipSpaces();
+                int windowStart = position;
+                while (position < text.length() && Character.isDigit(text.charAt(position)))
+                    position++;
+                int window;
+                try {
+                    window = Integer.parseInt(text.substring(windowStart, position));
+                } catch (NumberFormatException e) {
+                    throw error("avg() needs a whole number of samples as its second argument");
+                }
+                if (window < 1 || window > MAX_AVERAGE_WINDOW)
+                    throw error("avg() window must be between 1 and %d samples", MAX_AVERAGE_WINDOW);
+                expect(')');
+                averageWindows.add(window);
+                return "avg" + (averageWindows.size() - 1) + "(" + argument + ")";
+            }
+
+            Integer arity = FUNCTIONS.get(name);
+            if (arity == null)
+                throw error("Unknown name \"%s\"", name);
+            expect('(');
+            StringBuilder call = new StringBuilder("Math.").append(name).append('(');
+            for (int i = 0; i < arity; i++) {
+                if (i > 0) {
+                    expect(',');
+                    call.append(", ");
+                }
+                call.append(expression());
+            }
+            expect(')');
+            return call.append(')').toString();
+        }
+
+        private char peek() {
+            skipSpaces();
+            return position < text.length() ? text.charAt(position) : 0;
+        }
+
+        private void expect(char c) {
+            if (peek() != c)
+                throw error("Expected '%c'", c);
+            position++;
+        }
+
+        private void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position)))
+                position++;
+        }
+
+        private IllegalArgumentException error(String format, Object... args) {
+            return new IllegalArgumentException(String.format("%s at position %d in \"%s\"",
+                    String.format(format, args), position + 1, text.trim()));
+        }
+    }
+}
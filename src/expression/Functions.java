@@ -0,0 +1,12 @@
+package expression;
+
+// Helpers called from generated code where Groovy's own operator would box its operands
+public class Functions {
+    private Functions() {
+    }
+
+    // Java's floating point %, Groovy routes % through NumberMath
+    public static double remainder(double dividend, double divisor) {
+        return dividend % divisor;
+    }
+}
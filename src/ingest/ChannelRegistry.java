@@ -0,0 +1,139 @@
+package ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Stable set of channels for one input stream. Every label ("temp:21.5") and every field position of
+// unlabeled values gets its own channel the first time it is seen, numbered in order of appearance. Labels are looked up
+// straight from the parser's token bytes (FNV-1a hash, linear probing), so known labels cost no allocation.
+// Channels only ever grow here; they are retired all at once with reset(). Owned by the decoding thread.
+public class ChannelRegistry {
+    public static final int MAX_CHANNELS = 256;
+
+    private static final int FNV_OFFSET = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    // Channel index + 1 of each hash slot, 0 when free
+    private int[] slots = new int[64];
+    private int[] labelHashes = new int[16];
+    private int[] labelOffsets = new int[16];
+    private int[] labelLengths = new int[16];
+    private byte[] labelBytes = new byte[256];
+    private int labelBytesUsed;
+    private int channelCount;
+    // Channel of each unlabeled field position
+    private int[] positionChannels = new int[16];
+    private int positionCount;
+
+    // Replaced whenever a labeled channel is added, so other threads see a consistent snapshot
+    private volatile String[] labels = new String[0];
+
+    public int size() {
+        return channelCount;
+    }
+
+    // Channel of the label in s[offset, offset + length), added if new; -1 once MAX_CHANNELS are in use
+    public int channelOf(byte[] s, int offset, int length) {
+        int hash = hash(s, offset, length);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0)
+                break;
+            int channel = entry - 1;
+            if (labelHashes[channel] == hash && labelEquals(channel, s, offset, length))
+                return channel;
+        }
+        if (channelCount == MAX_CHANNELS)
+            return -1;
+        return addLabel(s, offset, length, hash);
+    }
+
+    // Channel of the n-th unlabeled field of a line, added if new; -1 once MAX_CHANNELS are in use
+    public int channelAt(int position) {
+        if (position < positionCount)
+            return positionChannels[position];
+        while (positionCount <= position) {
+            if (channelCount == MAX_CHANNELS)
+                return -1;
+            if (positionCount == positionChannels.length)
+                positionChannels = Arrays.copyOf(positionChannels, positionCount * 2);
+            ensureCapacity(channelCount + 1);
+            labelLengths[channelCount] = -1;
+            positionChannels[positionCount++] = channelCount++;
+        }
+        return positionChannels[position];
+    }
+
+    // Label of every channel, null for positional ones. Safe to call from any thread.
+    public String[] getLabels() {
+        return labels;
+    }
+
+    public void reset() {
+        Arrays.fill(slots, 0);
+        labelBytesUsed = 0;
+        channelCount = 0;
+        positionCount = 0;
+        labels = new String[0];
+    }
+
+    private int addLabel(byte[] s, int offset, int length, int hash) {
+        int channel = channelCount;
+        ensureCapacity(channel + 1);
+        if (labelBytesUsed + length > labelBytes.length)
+            labelBytes = Arrays.copyOf(labelBytes, Math.max(labelBytes.length * 2, labelBytesUsed + length));
+        System.arraycopy(s, offset, labelBytes, labelBytesUsed, length);
+        labelHashes[channel] = hash;
+        labelOffsets[channel] = labelBytesUsed;
+        labelLengths[channel] = length;
+        labelBytesUsed += length;
+        channelCount++;
+
+        // Keep the table at most half full
+        if (channelCount * 2 > slots.length) {
+            slots = new int[slots.length * 2];
+            for (int c = 0; c < channelCount; c++) {
+                if (labelLengths[c] >= 0)
+                    insert(c);
+            }
+        } else {
+            insert(channel);
+        }
+
+        String[] names = Arrays.copyOf(labels, channelCount);
+        names[channel] = new String(s, offset, length, StandardCharsets.UTF_8);
+        labels = names;
+        return channel;
+    }
+
+    private void insert(int channel) {
+        int mask = slots.length - 1;
+        int slot = labelHashes[channel] & mask;
+        while (slots[slot] != 0)
+            slot = (slot + 1) & mask;
+        slots[slot] = channel + 1;
+    }
+
+    private void ensureCapacity(int count) {
+        if (count > labelHashes.length) {
+            int capacity = Math.max(count, labelHashes.length * 2);
+            labelHashes = Arrays.copyOf(labelHashes, capacity);
+            labelOffsets = Arrays.copyOf(labelOffsets, capacity);
+            labelLengths = Arrays.copyOf(labelLengths, capacity);
+        }
+    }
+
+    private boolean labelEquals(int channel, byte[] s, int offset, int length) {
+        return labelLengths[channel] == length
+                && Arrays.equals(labelBytes, labelOffsets[channel], labelOffsets[channel] + length, s, offset, offset + length);
+    }
+
+    private static int hash(byte[] s, int offset, int length) {
+        int hash = FNV_OFFSET;
+        for (int i = offset; i < offset + length; i++)
+            hash = (hash ^ (s[i] & 0xff)) * FNV_PRIME;
+        // Spread the high bits into the low ones used as the slot index
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,195 @@
+package ingest;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Decoder for COBS-framed binary packets, each terminated by a 0x00 byte.
+// Decoded packet layout (multi-byte fields little-endian):
+//   flags u8         bits 0-1: sample type (0 = int16, 1 = int32, 2 = float32)
+//                    bit 2: sequence number present, bit 3: CRC present
+//   channels u8      number of samples in the packet
+//   sequence u16     optional, increments by one per packet
+//   samples          channels * sample size bytes
+//   crc u16          optional, CRC-16/CCITT-FALSE over all preceding decoded bytes
+public class CobsFrameDecoder implements SampleDecoder {
+    public static final int TYPE_INT16 = 0;
+    public static final int TYPE_INT32 = 1;
+    public static final int TYPE_FLOAT32 = 2;
+    public static final int FLAG_SEQUENCE = 0x04;
+    public static final int FLAG_CRC = 0x08;
+
+    private static final int MAX_PACKET_LENGTH = 4 + 255 * 4 + 2;
+    // A sequence further ahead than this, or behind the expected one, is a duplicate, a reordered frame or a
+    // restarted device rather than a run of lost frames
+    private static final int MAX_SEQUENCE_GAP = 1024;
+    private static final int[] CRC_TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i << 8;
+            for (int bit = 0; bit < 8; bit++)
+                crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+            CRC_TABLE[i] = crc & 0xFFFF;
+        }
+    }
+
+    private final SampleHandler handler;
+
+    // Encoded bytes of the current frame; the COBS overhead is one byte per 254
+    private final byte[] frame = new byte[MAX_PACKET_LENGTH + MAX_PACKET_LENGTH / 254 + 2];
+    private final byte[] packet = new byte[MAX_PACKET_LENGTH];
+    private final double[] values = new double[255];
+    private int frameLength;
+    private boolean frameOverflow;
+    private int rowEnd;
+
+    private int expectedSequence = -1;
+
+    private final AtomicLong decodedFrames = new AtomicLong();
+    private final AtomicLong corruptedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final AtomicLong sequenceResyncs = new AtomicLong();
+
+    public CobsFrameDecoder(SampleHandler handler) {
+        this.handler = handler;
+    }
+
+    @Override
+    public void feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == 0) {
+                if (frameOverflow)
+                    corruptedFrames.incrementAndGet();
+                else if (frameLength > 0) {
+                    rowEnd = i + 1;
+                    decodeFrame();
+                }
+                frameLength = 0;
+                frameOverflow = false;
+            } else if (frameLength < frame.length) {
+                frame[frameLength++] = b;
+            } else {
+                frameOverflow = true;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        frameLength = 0;
+        frameOverflow = false;
+        expectedSequence = -1;
+    }
+
+    @Override
+    public int rowEnd() {
+        return rowEnd;
+    }
+
+    public long getDecodedFrames() {
+        return decodedFrames.get();
+    }
+
+    public long getCorruptedFrames() {
+        return corruptedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    public long getSequenceResyncs() {
+        return sequenceResyncs.get();
+    }
+
+    private void decodeFrame() {
+        int packetLength = unstuff();
+        if (packetLength < 2) {
+            corruptedFrames.incrementAndGet();
+            return;
+        }
+
+        int flags = packet[0] & 0xFF;
+        int channels = packet[1] & 0xFF;
+        int type = flags & 0x03;
+        int sampleSize = switch (type) {
+            case TYPE_INT16 -> 2;
+            case TYPE_INT32, TYPE_FLOAT32 -> 4;
+            default -> 0;
+        };
+        boolean hasSequence = (flags & FLAG_SEQUENCE) != 0;
+        boolean hasCrc = (flags & FLAG_CRC) != 0;
+        int payloadOffset = hasSequence ? 4 : 2;
+        int expectedLength = payloadOffset + channels * sampleSize + (hasCrc ? 2 : 0);
+
+        if (sampleSize == 0 || (flags & 0xF0) != 0 || packetLength != expectedLength) {
+            corruptedFrames.incrementAndGet();
+            return;
+        }
+        if (hasCrc && crc16(packet, packetLength - 2) != readUInt16(packet, packetLength - 2)) {
+            corruptedFrames.incrementAndGet();
+            return;
+        }
+
+        if (hasSequence) {
+            int sequence = readUInt16(packet, 2);
+            if (expectedSequence >= 0 && sequence != expectedSequence) {
+                int gap = (sequence - expectedSequence) & 0xFFFF;
+                if (gap <= MAX_SEQUENCE_GAP)
+                    droppedFrames.addAndGet(gap);
+                else
+                    sequenceResyncs.incrementAndGet();
+            }
+            expectedSequence = (sequence + 1) & 0xFFFF;
+        }
+
+        int position = payloadOffset;
+        for (int i = 0; i < channels; i++, position += sampleSize) {
+            values[i] = switch (type) {
+                case TYPE_INT16 -> (short) readUInt16(packet, position);
+                case TYPE_INT32 -> readInt32(packet, position);
+                default -> Float.intBitsToFloat(readInt32(packet, position));
+            };
+        }
+
+        decodedFrames.incrementAndGet();
+        handler.onSamples(values, channels);
+    }
+
+    // Reverses the COBS byte stuffing of the current frame into packet, returns -1 on malformed input
+    private int unstuff() {
+        int read = 0;
+        int write = 0;
+        while (read < frameLength) {
+            int code = frame[read++] & 0xFF;
+            int blockEnd = read + code - 1;
+            if (blockEnd > frameLength || write + code - 1 > packet.length)
+                return -1;
+            while (read < blockEnd)
+                packet[write++] = frame[read++];
+            if (code != 0xFF && read < frameLength) {
+                if (write == packet.length)
+                    return -1;
+                packet[write++] = 0;
+            }
+        }
+        return write;
+    }
+
+    private static int crc16(byte[] data, int length) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < length; i++)
+            crc = ((crc << 8) ^ CRC_TABLE[((crc >> 8) ^ data[i]) & 0xFF]) & 0xFFFF;
+        return crc;
+    }
+
+    private static int readUInt16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static int readInt32(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (data[offset + 3] & 0xFF) << 24;
+    }
+}
@@ -0,0 +1,265 @@
+package ingest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streaming parser for separator-delimited ASCII lines ("1.5, -2\t3e2\n" or "temp:21.5 hum: 40\n").
+// Raw bytes are fed as they arrive; lines may be split across any number of reads.
+// Every completed line with at least one number is handed to the SampleHandler in a reused array that spans all
+// channels of the registry; channels the line does not mention are NaN.
+public class LineParser implements SampleDecoder {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_MANTISSA_DIGITS = 18;
+
+    private static final int NO_CHANNEL = -1;
+    // Longer fields are not numbers or labels; binary noise on a text port must not grow the buffer forever
+    private static final int MAX_TOKEN_LENGTH = 256;
+
+    private final SampleHandler handler;
+
+    private final ChannelRegistry channels = new ChannelRegistry();
+    private double[] values = new double[16];
+    private int position;
+    private boolean lineHasValues;
+
+    private byte[] token = new byte[32];
+    private int tokenLength;
+    private boolean tokenOverflow;
+    private int rowEnd;
+
+    // Result of the last parseToken() call
+    private double parsedValue;
+
+    // Fields that are not numbers are skipped, this counts them
+    private final AtomicLong parseFailures = new AtomicLong();
+
+    public LineParser(SampleHandler handler) {
+        this.handler = handler;
+        Arrays.fill(values, Double.NaN);
+    }
+
+    @Override
+    public void feed(byte[] data, int offset, int length) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                rowEnd = i + 1;
+                endToken();
+                endLine();
+            } else if (b == ',' || (b >= 0 && b <= ' ')) {
+                endToken();
+            } else if (tokenLength < MAX_TOKEN_LENGTH) {
+                if (tokenLength == token.length)
+                    token = Arrays.copyOf(token, token.length * 2);
+                token[tokenLength++] = b;
+            } else {
+                tokenOverflow = true;
+            }
+        }
+    }
+
+    @Override
+    public void reset() {
+        tokenLength = 0;
+        tokenOverflow = false;
+        Arrays.fill(values, Double.NaN);
+        position = 0;
+        lineHasValues = false;
+    }
+
+    @Override
+    public int rowEnd() {
+        return rowEnd;
+    }
+
+    // Forgets every channel; the next lines build the schema again from scratch
+    public void resetChannels() {
+        reset();
+        channels.reset();
+    }
+
+    public ChannelRegistry getChannels() {
+        return channels;
+    }
+
+    public long getParseFailures() {
+        return parseFailures.get();
+    }
+
+    private void endLine() {
+        // A label that never got its value
+        if (tokenLength > 0) {
+            parseFailures.incrementAndGet();
+            tokenLength = 0;
+        }
+        if (lineHasValues) {
+            int width = channels.size();
+            ensureValues(width);
+            handler.onSamples(values, width);
+            Arrays.fill(values, 0, width, Double.NaN);
+        }
+        position = 0;
+        lineHasValues = false;
+    }
+
+    private void endToken() {
+        if (tokenOverflow) {
+            tokenOverflow = false;
+            tokenLength = 0;
+            parseFailures.incrementAndGet();
+            return;
+        }
+        if (tokenLength == 0)
+            return;
+
+        int colon = indexOf(token, tokenLength, (byte) ':');
+        // "label: value": the label stays in the token and the value continues it after the separator
+        if (colon > 0 && colon == tokenLength - 1)
+            return;
+
+        int channel = NO_CHANNEL;
+        if (parseToken(token, colon > 0 ? colon + 1 : 0, tokenLength))
+            channel = colon > 0 ? channels.channelOf(token, 0, colon) : channels.channelAt(position++);
+        tokenLength = 0;
+
+        if (channel == NO_CHANNEL) {
+            parseFailures.incrementAndGet();
+            return;
+        }
+        ensureValues(channel + 1);
+        values[channel] = parsedValue;
+        lineHasValues = true;
+    }
+
+    private void ensureValues(int count) {
+        if (count > values.length) {
+            int oldLength = values.length;
+            values = Arrays.copyOf(values, Integer.highestOneBit(count) << 1);
+            Arrays.fill(values, oldLength, values.length, Double.NaN);
+        }
+    }
+
+    private static int indexOf(byte[] s, int length, byte b) {
+        for (int i = 0; i < length; i++) {
+            if (s[i] == b)
+                return i;
+        }
+        return -1;
+    }
+
+    // Parses s[start, end). Accepts the decimal subset of Double.valueOf: [+-]digits[.digits][(e|E)[+-]digits][dDfF], NaN and Infinity.
+    private boolean parseToken(byte[] s, int start, int end) {
+        if (start == end)
+            return false;
+        int i = start;
+        boolean negative = false;
+        if (s[start] == '-' || s[start] == '+') {
+            negative = s[start] == '-';
+            i++;
+        }
+        if (i == end)
+            return false;
+
+        if (s[i] == 'N' || s[i] == 'I') {
+            if (matches(s, i, end, "NaN")) {
+                parsedValue = Double.NaN;
+                return true;
+            }
+            if (matches(s, i, end, "Infinity")) {
+                parsedValue = negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+                return true;
+            }
+            return false;
+        }
+
+        long mantissa = 0;
+        int mantissaDigits = 0;
+        int exponent = 0;
+        boolean anyDigits = false;
+        boolean exact = true;
+
+        for (; i < end && s[i] >= '0' && s[i] <= '9'; i++) {
+            anyDigits = true;
+            if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                mantissa = mantissa * 10 + (s[i] - '0');
+                if (mantissa != 0)
+                    mantissaDigits++;
+            } else {
+                exponent++;
+                if (s[i] != '0')
+                    exact = false;
+            }
+        }
+        if (i < end && s[i] == '.') {
+            for (i++; i < end && s[i] >= '0' && s[i] <= '9'; i++) {
+                anyDigits = true;
+                if (mantissaDigits < MAX_MANTISSA_DIGITS) {
+                    mantissa = mantissa * 10 + (s[i] - '0');
+                    if (mantissa != 0)
+                        mantissaDigits++;
+                    exponent--;
+                } else if (s[i] != '0') {
+                    exact = false;
+                }
+            }
+        }
+        if (!anyDigits)
+            return false;
+
+        if (i < end && (s[i] == 'e' || s[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (s[i] == '-' || s[i] == '+')) {
+                negativeExponent = s[i] == '-';
+                i++;
+            }
+            if (i == end || s[i] < '0' || s[i] > '9')
+                return false;
+            int explicitExponent = 0;
+            for (; i < end && s[i] >= '0' && s[i] <= '9'; i++) {
+                if (explicitExponent < 100000)
+                    explicitExponent = explicitExponent * 10 + (s[i] - '0');
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i < end && (s[i] == 'd' || s[i] == 'D' || s[i] == 'f' || s[i] == 'F'))
+            i++;
+        if (i != end)
+            return false;
+
+        if (mantissa == 0) {
+            parsedValue = negative ? -0.0 : 0.0;
+            return true;
+        }
+
+        if (exact && mantissa <= MAX_EXACT_MANTISSA && exponent >= -22 && exponent <= 22) {
+            // Both operands are exact doubles, so a single multiplication or division rounds correctly
+            double value = exponent < 0
+                    ? mantissa / POWERS_OF_TEN[-exponent]
+                    : mantissa * POWERS_OF_TEN[exponent];
+            parsedValue = negative ? -value : value;
+            return true;
+        }
+
+        // Rare slow path for values the fast path cannot round correctly
+        parsedValue = Double.parseDouble(new String(s, start, end - start, StandardCharsets.US_ASCII));
+        return true;
+    }
+
+    private static boolean matches(byte[] s, int offset, int length, String word) {
+        if (length - offset != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            if (s[offset + i] != word.charAt(i))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package ingest;
+
+// Turns a raw byte stream into sample rows; bytes may be fed in arbitrarily sized chunks
+public interface SampleDecoder {
+    void feed(byte[] data, int offset, int length);
+
+    // Discards any partially received line or frame
+    void reset();
+
+    // Offset just past the byte that completed the row being handed to the handler, valid during that call
+    int rowEnd();
+}
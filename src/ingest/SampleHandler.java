@@ -0,0 +1,6 @@
+package ingest;
+
+// Receives the values of one decoded line or frame; the array is reused after the call returns
+public interface SampleHandler {
+    void onSamples(double[] values, int count);
+}
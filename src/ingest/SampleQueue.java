@@ -0,0 +1,90 @@
+package ingest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Lock-free single-producer/single-consumer queue of parsed lines.
+// Each line is stored inline in a primitive ring as [count, x, value0 .. valueN-1].
+// The producer never blocks: lines that do not fit are dropped and counted.
+public class SampleQueue {
+    public interface Consumer {
+        void accept(double x, double[] values, int count);
+    }
+
+    private final double[] ring;
+    private final int mask;
+
+    private final AtomicLong writePosition = new AtomicLong();
+    private final AtomicLong readPosition = new AtomicLong();
+    private final AtomicLong droppedLines = new AtomicLong();
+
+    // Producer-local copy of readPosition, refreshed only when the ring looks full
+    private long cachedReadPosition;
+    // Consumer-local scratch array handed to the Consumer
+    private double[] drainValues = new double[16];
+
+    public SampleQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        this.ring = new double[size];
+        this.mask = size - 1;
+    }
+
+    public boolean offer(double x, double[] values, int count) {
+        int recordLength = count + 2;
+        long write = writePosition.getPlain();
+        if (write + recordLength - cachedReadPosition > ring.length) {
+            cachedReadPosition = readPosition.getAcquire();
+            if (write + recordLength - cachedReadPosition > ring.length) {
+                droppedLines.incrementAndGet();
+                return false;
+            }
+        }
+
+        ring[(int) write & mask] = count;
+        ring[(int) (write + 1) & mask] = x;
+        for (int i = 0; i < count; i++)
+            ring[(int) (write + 2 + i) & mask] = values[i];
+
+        writePosition.setRelease(write + recordLength);
+        return true;
+    }
+
+    // Hands every line published so far to the consumer, returns the number of lines drained
+    public int drain(Consumer consumer) {
+        long read = readPosition.getPlain();
+        long end = writePosition.getAcquire();
+        int lines = 0;
+
+        while (read < end) {
+            int count = (int) ring[(int) read & mask];
+            double x = ring[(int) (read + 1) & mask];
+            if (count > drainValues.length)
+                drainValues = Arrays.copyOf(drainValues, Integer.highestOneBit(count) << 1);
+            for (int i = 0; i < count; i++)
+                drainValues[i] = ring[(int) (read + 2 + i) & mask];
+
+            read += count + 2;
+            readPosition.setRelease(read);
+            consumer.accept(x, drainValues, count);
+            lines++;
+        }
+        return lines;
+    }
+
+    public boolean isEmpty() {
+        return readPosition.get() == writePosition.get();
+    }
+
+    // Approximate number of buffered doubles, safe to call from any thread
+    public int depth() {
+        return (int) (writePosition.get() - readPosition.get());
+    }
+
+    public int capacity() {
+        return ring.length;
+    }
+
+    public long droppedLines() {
+        return droppedLines.get();
+    }
+}
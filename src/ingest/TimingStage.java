@@ -0,0 +1,110 @@
+package ingest;
+
+// Puts an X on every decoded row. Host time is read once per chunk, when the chunk arrives; the rows of the chunk
+// are spread over the time it took to arrive, by the byte offset at which each row ended, instead of all sharing
+// the read time. A device timestamp column replaces the host time: it is mapped onto the host clock, keeping the
+// smallest transport delay seen so far, and removed from every row that reaches it; a row without a usable
+// value there keeps the host time. X never decreases.
+// Single-threaded, one per input stream.
+public class TimingStage {
+    // Channel carrying the device's own time, in secondsPerUnit
+    public record TimestampColumn(int column, double secondsPerUnit) {
+        public TimestampColumn {
+            if (column < 0)
+                throw new IllegalArgumentException("Timestamp column must not be negative");
+            if (!(secondsPerUnit > 0))
+                throw new IllegalArgumentException("Timestamp unit must be positive");
+        }
+    }
+
+    // Without a known byte rate a chunk is assumed to have taken at most this long to arrive
+    private static final double MAX_CHUNK_SECONDS = 0.1;
+    // A device clock that falls this far behind, or runs backwards, is anchored to the host clock again
+    private static final double RESYNC_SECONDS = 1;
+
+    // 0 when the byte rate of the source is unknown
+    private final double secondsPerByte;
+    // Replaced from the EDT, picked up at the start of the next chunk
+    private volatile TimestampColumn timestampColumn;
+
+    private TimestampColumn activeColumn;
+    private double chunkStart, chunkEnd = Double.NEGATIVE_INFINITY;
+    private int chunkOffset, chunkLength;
+    private double lastX = Double.NEGATIVE_INFINITY;
+    private boolean anchored;
+    private double deviceOffset, lastDeviceTime;
+    private double[] row = new double[16];
+
+    public TimingStage(double secondsPerByte) {
+        this.secondsPerByte = secondsPerByte;
+    }
+
+    public TimestampColumn getTimestampColumn() {
+        return timestampColumn;
+    }
+
+    // Null goes back to host time
+    public void setTimestampColumn(TimestampColumn timestampColumn) {
+        this.timestampColumn = timestampColumn;
+    }
+
+    // hostTime is when data[offset, offset + length) was read
+    public void beginChunk(double hostTime, int offset, int length) {
+        TimestampColumn column = timestampColumn;
+        if (column != activeColumn) {
+            activeColumn = column;
+            anchored = false;
+        }
+        double span = secondsPerByte > 0 ? length * secondsPerByte : MAX_CHUNK_SECONDS;
+        chunkStart = Math.max(hostTime - span, Math.min(chunkEnd, hostTime));
+        chunkEnd = hostTime;
+        chunkOffset = offset;
+        chunkLength = Math.max(length, 1);
+    }
+
+    // X of a break in the data before the current chunk; the device clock is anchored again after it
+    public double gap() {
+        anchored = false;
+        lastX = Math.max(lastX, chunkStart);
+        return lastX;
+    }
+
+    public void accept(int rowEnd, double[] values, int count, SampleQueue.Consumer sink) {
+        double x = chunkStart + (chunkEnd - chunkStart) * (rowEnd - chunkOffset) / chunkLength;
+        TimestampColumn column = activeColumn;
+        if (column == null || column.column() >= count) {
+            sink.accept(advance(x), values, count);
+            return;
+        }
+
+        // The column leaves the row even without a usable value, so the channels after it keep their lines
+        int c = column.column();
+        double value = values[c];
+        if (count > row.length)
+            row = new double[Integer.highestOneBit(count) << 1];
+        System.arraycopy(values, 0, row, 0, c);
+        System.arraycopy(values, c + 1, row, c, count - c - 1);
+        if (value != value) {
+            sink.accept(advance(x), row, count - 1);
+            return;
+        }
+
+        double deviceTime = value * column.secondsPerUnit();
+        double offset = x - deviceTime;
+        // The lowest host minus device difference is the one with the least delay in between
+        if (!anchored || deviceTime < lastDeviceTime || offset - deviceOffset > RESYNC_SECONDS) {
+            deviceOffset = offset;
+            anchored = true;
+        } else if (offset < deviceOffset) {
+            deviceOffset = offset;
+        }
+        lastDeviceTime = deviceTime;
+        sink.accept(advance(deviceTime + deviceOffset), row, count - 1);
+    }
+
+    private double advance(double x) {
+        if (x > lastX)
+            lastX = x;
+        return lastX;
+    }
+}
@@ -0,0 +1,91 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Log-linear histogram of nanosecond durations, in the spirit of HdrHistogram:
+// values below 8 ns are counted exactly, every power of two above is split into 8 buckets (12.5% resolution).
+// Recording is a few atomic increments and allocation free, so it can sit on the paint and ingest paths.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.getAndIncrement(bucketOf(nanos));
+        if (nanos > max.getPlain())
+            max.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++)
+            copy[i] = counts.get(i);
+        return new Snapshot(copy);
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    // Middle of the range of values counted in the bucket
+    static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS)
+            return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + (1L << (exponent - SUB_BUCKET_BITS)) / 2;
+    }
+
+    // Bucket counts at one point in time; subtracting an earlier snapshot gives the distribution of an interval
+    public static class Snapshot {
+        private final long[] counts;
+        private final long total;
+
+        private Snapshot(long[] counts) {
+            this.counts = counts;
+            long sum = 0;
+            for (long count : counts)
+                sum += count;
+            this.total = sum;
+        }
+
+        public Snapshot since(Snapshot earlier) {
+            long[] difference = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++)
+                difference[i] = counts[i] - earlier.counts[i];
+            return new Snapshot(difference);
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        // Value at the given quantile (0..1) in nanoseconds, 0 when nothing was recorded
+        public long getValueAtQuantile(double quantile) {
+            if (total == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return valueOf(i);
+            }
+            return valueOf(BUCKETS - 1);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package metrics;
+
+// Turns the cumulative counters into per-second rates and interval percentiles for a one-line display.
+// Call update() periodically from one thread; each call covers the time since the previous one.
+public class MetricsSummary {
+    private final PipelineMetrics metrics;
+
+    private long lastNanos;
+    private long lastBytes, lastBytesSent, lastLines, lastSamples, lastRenderedFrames, lastDroppedFrames;
+    private LatencyHistogram.Snapshot lastPaintTime;
+
+    public MetricsSummary(PipelineMetrics metrics) {
+        this.metrics = metrics;
+        lastNanos = System.nanoTime();
+        lastPaintTime = metrics.paintTime().snapshot();
+    }
+
+    public String update() {
+        long now = System.nanoTime();
+        double seconds = Math.max(1e-9, (now - lastNanos) / 1e9);
+        lastNanos = now;
+
+        long bytes = metrics.getBytesReceived();
+        long bytesSent = metrics.getBytesSent();
+        long lines = metrics.getLinesReceived();
+        long samples = metrics.getSamplesReceived();
+        long renderedFrames = metrics.getRenderedFrames();
+        long droppedFrames = metrics.getDroppedFrames();
+        LatencyHistogram.Snapshot paintTime = metrics.paintTime().snapshot();
+        LatencyHistogram.Snapshot interval = paintTime.since(lastPaintTime);
+
+        String summary = String.format("%s B/s  %s lines/s  %s samples/s  %d parse errors  queue %d  "
+                        + "TX %s B/s (%d queued)  %.0f fps (%.0f dropped)  paint p50 %.1f ms p99 %.1f ms",
+                scaled((bytes - lastBytes) / seconds), scaled((lines - lastLines) / seconds),
+                scaled((samples - lastSamples) / seconds), metrics.getParseFailures() + metrics.getFrameErrors(),
+                metrics.getQueueDepth(), scaled((bytesSent - lastBytesSent) / seconds),
+                metrics.getTransmitQueueDepth(), (renderedFrames - lastRenderedFrames) / seconds,
+                (droppedFrames - lastDroppedFrames) / seconds,
+                interval.getValueAtQuantile(0.5) / 1e6, interval.getValueAtQuantile(0.99) / 1e6);
+
+        lastBytes = bytes;
+        lastBytesSent = bytesSent;
+        lastLines = lines;
+        lastSamples = samples;
+        lastRenderedFrames = renderedFrames;
+        lastDroppedFrames = droppedFrames;
+        lastPaintTime = paintTime;
+        return summary;
+    }
+
+    private static String scaled(double value) {
+        if (value >= 1e6)
+            return String.format("%.1fM", value / 1e6);
+        if (value >= 1e3)
+            return String.format("%.1fk", value / 1e3);
+        return String.format("%.0f", value);
+    }
+}
@@ -0,0 +1,158 @@
+package metrics;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// Counters for the whole acquisition pipeline, written from every reader thread and the EDT.
+// LongAdder keeps concurrent increments from several ports off a single contended cache line.
+public class PipelineMetrics implements PipelineMetricsMBean {
+    public static final String OBJECT_NAME = "serialplotter:type=Pipeline";
+
+    public final LongAdder bytesReceived = new LongAdder();
+    public final LongAdder linesReceived = new LongAdder();
+    public final LongAdder samplesReceived = new LongAdder();
+    public final LongAdder parseFailures = new LongAdder();
+    public final LongAdder frameErrors = new LongAdder();
+    public final LongAdder droppedLines = new LongAdder();
+    // Rows the capture writers and the spectrum analyzer could not keep up with
+    public final LongAdder droppedCaptureRows = new LongAdder();
+    public final LongAdder droppedSpectrumRows = new LongAdder();
+    public final LongAdder bytesSent = new LongAdder();
+
+    // Values (plus two header slots per line) waiting in the sample queues before the last frame, set by the EDT
+    private volatile long queueDepth;
+    // Bytes waiting in the transmit queues, set by the EDT
+    private volatile long transmitQueueDepth;
+
+    private final LongSupplier renderedFrames;
+    private final LongSupplier droppedFrames;
+    private final LatencyHistogram frameUpdateTime;
+    private final LatencyHistogram paintTime;
+
+    public PipelineMetrics(LongSupplier renderedFrames, LongSupplier droppedFrames,
+                           LatencyHistogram frameUpdateTime, LatencyHistogram paintTime) {
+        this.renderedFrames = renderedFrames;
+        this.droppedFrames = droppedFrames;
+        this.frameUpdateTime = frameUpdateTime;
+        this.paintTime = paintTime;
+    }
+
+    // Registers with the platform MBean server so soak tests can scrape it over JMX
+    public void register() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+    }
+
+    public void setQueueDepth(long queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public void setTransmitQueueDepth(long transmitQueueDepth) {
+        this.transmitQueueDepth = transmitQueueDepth;
+    }
+
+    public LatencyHistogram frameUpdateTime() {
+        return frameUpdateTime;
+    }
+
+    public LatencyHistogram paintTime() {
+        return paintTime;
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public long getLinesReceived() {
+        return linesReceived.sum();
+    }
+
+    @Override
+    public long getSamplesReceived() {
+        return samplesReceived.sum();
+    }
+
+    @Override
+    public long getParseFailures() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getFrameErrors() {
+        return frameErrors.sum();
+    }
+
+    @Override
+    public long getDroppedLines() {
+        return droppedLines.sum();
+    }
+
+    @Override
+    public long getDroppedCaptureRows() {
+        return droppedCaptureRows.sum();
+    }
+
+    @Override
+    public long getDroppedSpectrumRows() {
+        return droppedSpectrumRows.sum();
+    }
+
+    @Override
+    public long getQueueDepth() {
+        return queueDepth;
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getTransmitQueueDepth() {
+        return transmitQueueDepth;
+    }
+
+    @Override
+    public long getRenderedFrames() {
+        return renderedFrames.getAsLong();
+    }
+
+    @Override
+    public long getDroppedFrames() {
+        return droppedFrames.getAsLong();
+    }
+
+    @Override
+    public long getFrameUpdateTimeP50Micros() {
+        return frameUpdateTime.snapshot().getValueAtQuantile(0.5) / 1000;
+    }
+
+    @Override
+    public long getFrameUpdateTimeP99Micros() {
+        return frameUpdateTime.snapshot().getValueAtQuantile(0.99) / 1000;
+    }
+
+    @Override
+    public long getPaintTimeP50Micros() {
+        return paintTime.snapshot().getValueAtQuantile(0.5) / 1000;
+    }
+
+    @Override
+    public long getPaintTimeP99Micros() {
+        return paintTime.snapshot().getValueAtQuantile(0.99) / 1000;
+    }
+
+    @Override
+    public long getPaintTimeP999Micros() {
+        return paintTime.snapshot().getValueAtQuantile(0.999) / 1000;
+    }
+
+    @Override
+    public long getPaintTimeMaxMicros() {
+        return paintTime.getMax() / 1000;
+    }
+}
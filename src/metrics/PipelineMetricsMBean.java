@@ -0,0 +1,42 @@
+package metrics;
+
+// Exported as serialplotter:type=Pipeline; counters are totals since startup, times in microseconds
+public interface PipelineMetricsMBean {
+    long getBytesReceived();
+
+    long getLinesReceived();
+
+    long getSamplesReceived();
+
+    long getParseFailures();
+
+    long getFrameErrors();
+
+    long getDroppedLines();
+
+    long getDroppedCaptureRows();
+
+    long getDroppedSpectrumRows();
+
+    long getQueueDepth();
+
+    long getBytesSent();
+
+    long getTransmitQueueDepth();
+
+    long getRenderedFrames();
+
+    long getDroppedFrames();
+
+    long getFrameUpdateTimeP50Micros();
+
+    long getFrameUpdateTimeP99Micros();
+
+    long getPaintTimeP50Micros();
+
+    long getPaintTimeP99Micros();
+
+    long getPaintTimeP999Micros();
+
+    long getPaintTimeMaxMicros();
+}
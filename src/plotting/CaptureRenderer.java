@@ -0,0 +1,199 @@
+package plotting;
+
+import recording.CaptureReader;
+
+import java.awt.*;
+
+// Draws a recorded capture for the current X viewport.
+// Each pixel column is reduced to a min/max envelope answered from the capture's summary tiles,
+// so the cost of a frame depends on the plot width, not on how many samples are in view.
+public class CaptureRenderer {
+    private final CaptureReader capture;
+    private final Stroke stroke = new BasicStroke(1.0f);
+
+    private double viewMinX, viewMaxX;
+    private double minY, maxY;
+
+    // Per-frame query results, reused between frames
+    private long[] columnRows = new long[0];
+    private double[][] columnMin = new double[0][];
+    private double[][] columnMax = new double[0][];
+    private final double[] minMax = new double[2];
+    private boolean rawMode;
+    private long rawFrom, rawTo;
+    private int[] xPoints = new int[0];
+    private int[] yPoints = new int[0];
+
+    public CaptureRenderer(CaptureReader capture) {
+        this.capture = capture;
+        resetView();
+    }
+
+    public CaptureReader getCapture() {
+        return capture;
+    }
+
+    public void resetView() {
+        if (capture.getRowCount() == 0) {
+            viewMinX = 0;
+            viewMaxX = 1;
+            return;
+        }
+        viewMinX = capture.getX(0);
+        viewMaxX = capture.getX(capture.getRowCount() - 1);
+        if (viewMaxX <= viewMinX)
+            viewMaxX = viewMinX + 1;
+    }
+
+    public void zoom(double factor, double anchorX) {
+        double span = (viewMaxX - viewMinX) * factor;
+        if (span <= 0 || Double.isInfinite(span))
+            return;
+        double ratio = (anchorX - viewMinX) / (viewMaxX - viewMinX);
+        viewMinX = anchorX - span * ratio;
+        viewMaxX = viewMinX + span;
+    }
+
+    public void pan(double deltaX) {
+        viewMinX += deltaX;
+        viewMaxX += deltaX;
+    }
+
+    public double getViewMinX() {
+        return viewMinX;
+    }
+
+    public double getViewMaxX() {
+        return viewMaxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    // Queries the envelopes for the current viewport and updates the Y range
+    public void update(int width) {
+        int channels = capture.getChannelCount();
+        width = Math.max(width, 1);
+        minY = Double.POSITIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+
+        long fromRow = capture.findRow(viewMinX);
+        long toRow = capture.findRow(Math.nextUp(viewMaxX));
+
+        rawMode = toRow - fromRow <= 2L * width;
+        if (rawMode) {
+            // Few enough samples to draw them as they are, plus one neighbour on each side
+            rawFrom = Math.max(0, fromRow - 1);
+            rawTo = Math.min(capture.getRowCount(), toRow + 1);
+            for (int c = 0; c < channels; c++) {
+                for (long row = fromRow; row < toRow; row++)
+                    includeY(capture.getValue(c, row));
+            }
+            finishYRange();
+            return;
+        }
+
+        if (columnRows.length != width + 1 || columnMin.length != channels) {
+            columnRows = new long[width + 1];
+            columnMin = new double[channels][width];
+            columnMax = new double[channels][width];
+        }
+
+        double span = viewMaxX - viewMinX;
+        columnRows[0] = fromRow;
+        columnRows[width] = toRow;
+        for (int column = 1; column < width; column++)
+            columnRows[column] = capture.findRow(viewMinX + span * column / width);
+
+        for (int c = 0; c < channels; c++) {
+            for (int column = 0; column < width; column++) {
+                capture.envelope(c, columnRows[column], columnRows[column + 1], minMax);
+                columnMin[c][column] = minMax[0];
+                columnMax[c][column] = minMax[1];
+                // A column without rows, or with only NaN in them, has an empty envelope
+                if (minMax[0] > minMax[1])
+                    continue;
+                includeY(minMax[0]);
+                includeY(minMax[1]);
+            }
+        }
+        finishYRange();
+    }
+
+    public void paint(Graphics2D g, int xPos, int yPos, int width, int height) {
+        g.setStroke(stroke);
+        // Envelopes are mostly vertical runs one pixel apart, antialiasing only blurs them
+        if (!rawMode)
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+        for (int c = 0; c < capture.getChannelCount(); c++) {
+            g.setColor(PlotLine.colorFor(c));
+            int pointCount = rawMode
+                    ? rawPoints(c, xPos, yPos, width, height)
+                    : envelopePoints(c, xPos, yPos, width, height);
+            g.drawPolyline(xPoints, yPoints, pointCount);
+        }
+    }
+
+    private int rawPoints(int channel, int xPos, int yPos, int width, int height) {
+        ensurePoints((int) (rawTo - rawFrom));
+        int count = 0;
+        for (long row = rawFrom; row < rawTo; row++) {
+            double value = capture.getValue(channel, row);
+            if (Double.isNaN(value))
+                continue;
+            xPoints[count] = (int) mapValue(capture.getX(row), viewMinX, viewMaxX, xPos, xPos + width);
+            yPoints[count] = (int) mapValue(value, minY, maxY, yPos + height, yPos);
+            count++;
+        }
+        return count;
+    }
+
+    private int envelopePoints(int channel, int xPos, int yPos, int width, int height) {
+        int columns = columnMin[channel].length;
+        ensurePoints(columns * 2);
+        int count = 0;
+        for (int column = 0; column < columns; column++) {
+            double min = columnMin[channel][column];
+            double max = columnMax[channel][column];
+            if (min > max)
+                continue;
+            int x = xPos + (int) ((long) column * width / columns);
+            xPoints[count] = x;
+            yPoints[count++] = (int) mapValue(max, minY, maxY, yPos + height, yPos);
+            xPoints[count] = x;
+            yPoints[count++] = (int) mapValue(min, minY, maxY, yPos + height, yPos);
+        }
+        return count;
+    }
+
+    private void includeY(double value) {
+        if (value < minY) minY = value;
+        if (value > maxY) maxY = value;
+    }
+
+    private void finishYRange() {
+        if (minY > maxY) {
+            minY = 0;
+            maxY = 1;
+        } else if (minY == maxY) {
+            minY -= 0.5;
+            maxY += 0.5;
+        }
+    }
+
+    private void ensurePoints(int count) {
+        if (xPoints.length < count) {
+            xPoints = new int[count];
+            yPoints = new int[count];
+        }
+    }
+
+    private double mapValue(double in, double inMin, double inMax, double outMin, double outMax) {
+        return (in - inMin) * (outMax - outMin) / (inMax - inMin) + outMin;
+    }
+}
@@ -0,0 +1,48 @@
+package plotting;
+
+// A sealed run of history samples, Gorilla encoded. The summary (ends and Y extremes with their X) is kept
+// uncompressed so blocks narrower than a pixel column can be drawn without decoding them.
+final class CompressedBlock {
+    // Object headers, summary fields and the array header
+    private static final int OVERHEAD_BYTES = 128;
+
+    final int count;
+    final double firstX, firstY, lastX, lastY;
+    final double minX, minY, maxX, maxY;
+    final boolean minFirst;
+    private final long[] bits;
+
+    CompressedBlock(double[] xs, double[] ys, int count, GorillaCodec.BitWriter writer) {
+        this.count = count;
+        this.bits = GorillaCodec.encode(xs, ys, count, writer);
+
+        firstX = xs[0];
+        firstY = ys[0];
+        lastX = xs[count - 1];
+        lastY = ys[count - 1];
+
+        // NaN gaps never become extremes; an all-NaN block keeps NaN extremes
+        int minIndex = -1, maxIndex = -1;
+        for (int i = 0; i < count; i++) {
+            if (ys[i] != ys[i])
+                continue;
+            if (minIndex < 0 || ys[i] < ys[minIndex])
+                minIndex = i;
+            if (maxIndex < 0 || ys[i] > ys[maxIndex])
+                maxIndex = i;
+        }
+        minX = minIndex < 0 ? firstX : xs[minIndex];
+        minY = minIndex < 0 ? Double.NaN : ys[minIndex];
+        maxX = maxIndex < 0 ? firstX : xs[maxIndex];
+        maxY = maxIndex < 0 ? Double.NaN : ys[maxIndex];
+        minFirst = minIndex <= maxIndex;
+    }
+
+    void decode(double[] xs, double[] ys) {
+        GorillaCodec.decode(bits, count, xs, ys);
+    }
+
+    long sizeInBytes() {
+        return OVERHEAD_BYTES + bits.length * 8L;
+    }
+}
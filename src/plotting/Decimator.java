@@ -0,0 +1,223 @@
+package plotting;
+
+import java.util.Arrays;
+
+// Reduces a stream of samples with monotonic X to what can actually be seen at a given plot width.
+// M4 keeps the first, minimum, maximum and last sample of every pixel column, which preserves the
+// rasterized shape of the line exactly. LTTB keeps one visually significant sample per column.
+public class Decimator {
+    public enum Mode {
+        NONE, M4, LTTB
+    }
+
+    private Mode mode = Mode.M4;
+
+    private double[] outX = new double[256];
+    private double[] outY = new double[256];
+    private int outSize;
+
+    private double originX;
+    private double columnScale;
+    private int column;
+    private int bucketSize;
+    // True until the first sample after begin() or after a gap
+    private boolean runStart;
+
+    // M4 column state
+    private double firstX, firstY, minX, minY, maxX, maxY, lastX, lastY;
+    private int minIndex, maxIndex;
+
+    // LTTB state: the pending bucket waits for the average of the bucket after it
+    private double[] pendingX = new double[16];
+    private double[] pendingY = new double[16];
+    private int pendingSize;
+    private double[] bucketX = new double[16];
+    private double[] bucketY = new double[16];
+    private double anchorX, anchorY;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public void begin(double minX, double maxX, int width) {
+        originX = minX;
+        columnScale = maxX > minX ? Math.max(width, 1) / (maxX - minX) : 0;
+        column = Integer.MIN_VALUE;
+        bucketSize = 0;
+        pendingSize = 0;
+        outSize = 0;
+        runStart = true;
+    }
+
+    public void add(double x, double y) {
+        if (y != y) {
+            gap(x);
+            return;
+        }
+        if (mode == Mode.NONE) {
+            emit(x, y);
+            return;
+        }
+
+        int sampleColumn = (int) Math.floor((x - originX) * columnScale);
+        if (sampleColumn != column) {
+            if (mode == Mode.M4)
+                flushM4();
+            else
+                flushLttb();
+            column = sampleColumn;
+            bucketSize = 0;
+        }
+
+        if (mode == Mode.M4)
+            addM4(x, y);
+        else
+            addLttb(x, y);
+    }
+
+    public void finish() {
+        if (mode == Mode.M4) {
+            flushM4();
+        } else if (mode == Mode.LTTB && bucketSize > 0) {
+            if (pendingSize > 0)
+                selectPending(bucketX[bucketSize - 1], bucketY[bucketSize - 1]);
+            emit(bucketX[bucketSize - 1], bucketY[bucketSize - 1]);
+        }
+        bucketSize = 0;
+        pendingSize = 0;
+    }
+
+    private void gap(double x) {
+        finish();
+        column = Integer.MIN_VALUE;
+        runStart = true;
+        // Consecutive missing samples collapse into one marker
+        if (outSize > 0 && outY[outSize - 1] == outY[outSize - 1])
+            emit(x, Double.NaN);
+    }
+
+    public int size() {
+        return outSize;
+    }
+
+    public double[] getX() {
+        return outX;
+    }
+
+    public double[] getY() {
+        return outY;
+    }
+
+    private void addM4(double x, double y) {
+        if (bucketSize == 0) {
+            firstX = minX = maxX = lastX = x;
+            firstY = minY = maxY = lastY = y;
+            minIndex = maxIndex = 0;
+        } else {
+            if (y < minY) {
+                minX = x;
+                minY = y;
+                minIndex = bucketSize;
+            }
+            if (y > maxY) {
+                maxX = x;
+                maxY = y;
+                maxIndex = bucketSize;
+            }
+            lastX = x;
+            lastY = y;
+        }
+        bucketSize++;
+    }
+
+    private void flushM4() {
+        if (bucketSize == 0)
+            return;
+
+        int lastIndex = bucketSize - 1;
+        emit(firstX, firstY);
+        if (minIndex < maxIndex) {
+            emitBetween(minIndex, minX, minY, lastIndex);
+            emitBetween(maxIndex, maxX, maxY, lastIndex);
+        } else {
+            emitBetween(maxIndex, maxX, maxY, lastIndex);
+            emitBetween(minIndex, minX, minY, lastIndex);
+        }
+        if (lastIndex > 0)
+            emit(lastX, lastY);
+    }
+
+    private void emitBetween(int index, double x, double y, int lastIndex) {
+        if (index > 0 && index < lastIndex && (x != outX[outSize - 1] || y != outY[outSize - 1]))
+            emit(x, y);
+    }
+
+    private void addLttb(double x, double y) {
+        if (runStart) {
+            // The first sample of a run is always kept and anchors the first triangle
+            runStart = false;
+            emit(x, y);
+            anchorX = x;
+            anchorY = y;
+            return;
+        }
+        if (bucketSize == bucketX.length) {
+            bucketX = Arrays.copyOf(bucketX, bucketSize * 2);
+            bucketY = Arrays.copyOf(bucketY, bucketSize * 2);
+        }
+        bucketX[bucketSize] = x;
+        bucketY[bucketSize] = y;
+        bucketSize++;
+    }
+
+    private void flushLttb() {
+        if (bucketSize == 0)
+            return;
+
+        double sumX = 0, sumY = 0;
+        for (int i = 0; i < bucketSize; i++) {
+            sumX += bucketX[i];
+            sumY += bucketY[i];
+        }
+        if (pendingSize > 0)
+            selectPending(sumX / bucketSize, sumY / bucketSize);
+
+        double[] swapX = pendingX, swapY = pendingY;
+        pendingX = bucketX;
+        pendingY = bucketY;
+        pendingSize = bucketSize;
+        bucketX = swapX;
+        bucketY = swapY;
+    }
+
+    private void selectPending(double averageX, double averageY) {
+        int best = 0;
+        double bestArea = -1;
+        for (int i = 0; i < pendingSize; i++) {
+            double area = Math.abs((anchorX - averageX) * (pendingY[i] - anchorY)
+                    - (anchorX - pendingX[i]) * (averageY - anchorY));
+            if (area > bestArea) {
+                bestArea = area;
+                best = i;
+            }
+        }
+        anchorX = pendingX[best];
+        anchorY = pendingY[best];
+        emit(anchorX, anchorY);
+        pendingSize = 0;
+    }
+
+    private void emit(double x, double y) {
+        if (outSize == outX.length) {
+            outX = Arrays.copyOf(outX, outSize * 2);
+            outY = Arrays.copyOf(outY, outSize * 2);
+        }
+        outX[outSize] = x;
+        outY[outSize] = y;
+        outSize++;
+    }
+}
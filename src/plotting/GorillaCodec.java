@@ -0,0 +1,220 @@
+package plotting;
+
+import java.util.Arrays;
+
+// Bit-level encoding of (x, y) runs after Facebook's Gorilla time series store.
+// X is delta-of-delta encoded on its IEEE bit pattern: for monotonic, evenly spaced timestamps in one binade
+// the pattern grows linearly, so most samples cost a single bit. Y is XORed with the previous value and only
+// the meaningful bits between the leading and trailing zeros are stored, reusing the previous window if it fits.
+// Values parsed from text with a few decimals have noisy mantissas that XOR poorly, so a block whose values all
+// equal m / 10^k exactly (k <= 6) stores the integers m delta-of-delta encoded instead; a 3-bit header picks the mode.
+final class GorillaCodec {
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6};
+    private static final long MAX_EXACT = 1L << 53;
+
+    private GorillaCodec() {
+    }
+
+    static long[] encode(double[] xs, double[] ys, int count, BitWriter out) {
+        out.reset();
+        int decimals = decimalScale(ys, count);
+        out.write(decimals + 1, 3);
+
+        long previousX = 0, previousDelta = 0, previousY = 0, previousYDelta = 0;
+        int previousLeading = -1, previousTrailing = 0;
+
+        for (int i = 0; i < count; i++) {
+            long x = Double.doubleToRawLongBits(xs[i]);
+            long y = decimals >= 0 ? Math.round(ys[i] * POWERS_OF_TEN[decimals]) : Double.doubleToRawLongBits(ys[i]);
+            if (i == 0) {
+                out.write(x, 64);
+                out.write(y, 64);
+            } else {
+                long delta = x - previousX;
+                writeDeltaOfDelta(out, delta - previousDelta);
+                previousDelta = delta;
+
+                if (decimals >= 0) {
+                    long yDelta = y - previousY;
+                    writeDeltaOfDelta(out, yDelta - previousYDelta);
+                    previousYDelta = yDelta;
+                } else {
+                    long xor = y ^ previousY;
+                    if (xor == 0) {
+                        out.write(0, 1);
+                    } else {
+                        int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+                        int trailing = Long.numberOfTrailingZeros(xor);
+                        if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                            out.write(0b10, 2);
+                            out.write(xor >>> previousTrailing, 64 - previousLeading - previousTrailing);
+                        } else {
+                            int meaningful = 64 - leading - trailing;
+                            out.write(0b11, 2);
+                            out.write(leading, 5);
+                            out.write(meaningful - 1, 6);
+                            out.write(xor >>> trailing, meaningful);
+                            previousLeading = leading;
+                            previousTrailing = trailing;
+                        }
+                    }
+                }
+            }
+            previousX = x;
+            previousY = y;
+        }
+        return out.toArray();
+    }
+
+    static void decode(long[] bits, int count, double[] xs, double[] ys) {
+        BitReader in = new BitReader(bits);
+        int decimals = (int) in.read(3) - 1;
+        long x = 0, delta = 0, y = 0, yDelta = 0;
+        int leading = 0, trailing = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                x = in.read(64);
+                y = in.read(64);
+            } else {
+                delta += readDeltaOfDelta(in);
+                x += delta;
+
+                if (decimals >= 0) {
+                    yDelta += readDeltaOfDelta(in);
+                    y += yDelta;
+                } else if (in.read(1) == 1) {
+                    if (in.read(1) == 1) {
+                        leading = (int) in.read(5);
+                        trailing = 64 - leading - ((int) in.read(6) + 1);
+                    }
+                    y ^= in.read(64 - leading - trailing) << trailing;
+                }
+            }
+            xs[i] = Double.longBitsToDouble(x);
+            ys[i] = decimals >= 0 ? y / POWERS_OF_TEN[decimals] : Double.longBitsToDouble(y);
+        }
+    }
+
+    // Smallest k for which every value is exactly round(v * 10^k) / 10^k, or -1 (NaN, infinities, -0.0, too precise)
+    private static int decimalScale(double[] ys, int count) {
+        int decimals = 0;
+        for (int i = 0; i < count; i++) {
+            double y = ys[i];
+            while (true) {
+                double scaled = y * POWERS_OF_TEN[decimals];
+                if (Math.abs(scaled) < MAX_EXACT) {
+                    long mantissa = Math.round(scaled);
+                    if (Double.doubleToRawLongBits(mantissa / POWERS_OF_TEN[decimals]) == Double.doubleToRawLongBits(y))
+                        break;
+                }
+                if (++decimals == POWERS_OF_TEN.length || !(Math.abs(y) < MAX_EXACT))
+                    return -1;
+            }
+        }
+        // A later sample may have raised the scale; check the earlier ones still round-trip at it
+        for (int i = 0; i < count; i++) {
+            if (Double.doubleToRawLongBits(Math.round(ys[i] * POWERS_OF_TEN[decimals]) / POWERS_OF_TEN[decimals])
+                    != Double.doubleToRawLongBits(ys[i]))
+                return -1;
+        }
+        return decimals;
+    }
+
+    private static void writeDeltaOfDelta(BitWriter out, long dod) {
+        if (dod == 0) {
+            out.write(0, 1);
+        } else if (dod >= -63 && dod <= 64) {
+            out.write(0b10, 2);
+            out.write(dod + 63, 7);
+        } else if (dod >= -255 && dod <= 256) {
+            out.write(0b110, 3);
+            out.write(dod + 255, 9);
+        } else if (dod >= -2047 && dod <= 2048) {
+            out.write(0b1110, 4);
+            out.write(dod + 2047, 12);
+        } else if (dod >= -Integer.MAX_VALUE && dod <= 1L << 31) {
+            out.write(0b11110, 5);
+            out.write(dod + Integer.MAX_VALUE, 32);
+        } else {
+            out.write(0b11111, 5);
+            out.write(dod, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        if (in.read(1) == 0)
+            return 0;
+        if (in.read(1) == 0)
+            return in.read(7) - 63;
+        if (in.read(1) == 0)
+            return in.read(9) - 255;
+        if (in.read(1) == 0)
+            return in.read(12) - 2047;
+        if (in.read(1) == 0)
+            return in.read(32) - Integer.MAX_VALUE;
+        return in.read(64);
+    }
+
+    // Appends big-endian bit fields to a growable word array; reused between blocks
+    static final class BitWriter {
+        private long[] words = new long[256];
+        private long bitCount;
+
+        void reset() {
+            Arrays.fill(words, 0, (int) ((bitCount + 63) >>> 6), 0);
+            bitCount = 0;
+        }
+
+        // Writes the low `bits` bits of value, 0 <= bits <= 64
+        void write(long value, int bits) {
+            if (bits == 0)
+                return;
+            int word = (int) (bitCount >>> 6);
+            int free = 64 - (int) (bitCount & 63);
+            if (word + 1 >= words.length)
+                words = Arrays.copyOf(words, words.length * 2);
+            if (bits < 64)
+                value &= (1L << bits) - 1;
+
+            if (bits <= free) {
+                words[word] |= value << (free - bits);
+            } else {
+                int rest = bits - free;
+                words[word] |= value >>> rest;
+                words[word + 1] |= value << (64 - rest);
+            }
+            bitCount += bits;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(words, (int) ((bitCount + 63) >>> 6));
+        }
+    }
+
+    static final class BitReader {
+        private final long[] words;
+        private long position;
+
+        BitReader(long[] words) {
+            this.words = words;
+        }
+
+        long read(int bits) {
+            if (bits == 0)
+                return 0;
+            int word = (int) (position >>> 6);
+            int free = 64 - (int) (position & 63);
+            position += bits;
+
+            long result;
+            if (bits <= free) {
+                result = words[word] >>> (free - bits);
+            } else {
+                int rest = bits - free;
+                result = (words[word] << rest) | (words[word + 1] >>> (64 - rest));
+            }
+            return bits == 64 ? result : result & ((1L << bits) - 1);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package plotting;
+
+// Sliding-window min/max tracker. Entries are keyed by absolute sample sequence numbers,
+// so evicting old samples never requires re-indexing the remaining ones.
+class MonotonicDeque {
+    private final long[] sequences;
+    private final double[] values;
+    private final boolean trackMax;
+    private int head;
+    private int size;
+
+    MonotonicDeque(int capacity, boolean trackMax) {
+        this.sequences = new long[capacity];
+        this.values = new double[capacity];
+        this.trackMax = trackMax;
+    }
+
+    void push(long sequence, double value) {
+        while (size > 0) {
+            double last = values[lastIndex()];
+            if (trackMax ? last > value : last < value)
+                break;
+            size--;
+        }
+
+        int index = head + size;
+        if (index >= sequences.length)
+            index -= sequences.length;
+        sequences[index] = sequence;
+        values[index] = value;
+        size++;
+    }
+
+    void evictBefore(long sequence) {
+        while (size > 0 && sequences[head] < sequence) {
+            head++;
+            if (head == sequences.length)
+                head = 0;
+            size--;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    double peek() {
+        return values[head];
+    }
+
+    void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int lastIndex() {
+        int index = head + size - 1;
+        return index >= sequences.length ? index - sequences.length : index;
+    }
+}
@@ -2,6 +2,7 @@ package plotting;
 
 import java.awt.*;
 import java.awt.geom.Rectangle2D;
+import java.math.BigDecimal;
 
 public class PlotGrid {
     private final int nTicksX;
@@ -10,6 +11,8 @@ public class PlotGrid {
     private double minX, maxX, minY, maxY;
     private double minTickX;
     private double minTickY;
+    // In logarithmic mode X values are log10 of the axis quantity and ticks fall on 1-2-5 steps of each decade
+    private boolean logX;
 
     private final Color gridColor;
     private final Color axisColor;
@@ -23,6 +26,14 @@ public class PlotGrid {
         this.axisColor = axisColor;
     }
 
+    public boolean isLogX() {
+        return logX;
+    }
+
+    public void setLogX(boolean logX) {
+        this.logX = logX;
+    }
+
     public void updateTicks(double minX, double maxX, double minY, double maxY) {
         this.minX = minX;
         this.maxX = maxX;
@@ -59,20 +70,39 @@ public class PlotGrid {
         minTickY = stepY * Math.floor(minY / stepY);
     }
 
-    @SuppressWarnings("SuspiciousNameCombination")
     public void paint(Graphics2D g, int xPos, int yPos, int width, int height) {
-        g.setColor(gridColor);
-        g.setStroke(gridStroke);
-        g.drawRect(xPos, yPos, width, height);
+        layout(g, xPos, yPos, width, height);
+    }
 
+    // Identifies what paint() draws into this area for the current ticks: equal keys give identical pixels,
+    // so a cached layer survives ranges that only moved by less than a pixel
+    public long layoutKey(int xPos, int yPos, int width, int height) {
+        return layout(null, xPos, yPos, width, height);
+    }
+
+    // Draws the grid, or only hashes its pixel positions and labels when g is null
+    @SuppressWarnings("SuspiciousNameCombination")
+    private long layout(Graphics2D g, int xPos, int yPos, int width, int height) {
         int xAxisPos = (int) Math.clamp(mapValue(0, minY, maxY, yPos + height, yPos), yPos, yPos + height);
-        int yAxisPos = (int) Math.clamp(mapValue(0, minX, maxX, xPos, xPos + width), xPos, xPos + width);
+        int yAxisPos = logX ? xPos : (int) Math.clamp(mapValue(0, minX, maxX, xPos, xPos + width), xPos, xPos + width);
+        long key = mix(mix(mix(mix(mix(logX ? 1 : 0, xPos), yPos), width), height), (long) xAxisPos << 32 | yAxisPos);
+
+        if (g != null) {
+            g.setColor(gridColor);
+            g.setStroke(gridStroke);
+            g.drawRect(xPos, yPos, width, height);
+        }
 
-        for (int i = 0; i < nTicksX; i++) {
+        if (logX)
+            key = layoutLogTicksX(g, key, xPos, yPos, width, height, xAxisPos);
+
+        for (int i = 0; i < nTicksX && !logX; i++) {
             double x = minTickX + i * stepX;
             if (x < minX || x > maxX) continue;
 
             int lineXPos = (int) mapValue(x, minX, maxX, xPos, xPos + width);
+            key = mix(mix(key, lineXPos), Double.doubleToLongBits(x));
+            if (g == null) continue;
 
             String tickLabel = String.valueOf(x);
             Rectangle2D fRect = g.getFontMetrics().getStringBounds(tickLabel, g);
@@ -94,6 +124,8 @@ public class PlotGrid {
             if (y < minY || y > maxY) continue;
 
             int lineYPos = (int) mapValue(y, minY, maxY, yPos + height, yPos);
+            key = mix(mix(key, lineYPos), Double.doubleToLongBits(y));
+            if (g == null) continue;
 
             String tickLabel = String.valueOf(y);
             //String tickLabel = String.format("%.1E", y);
@@ -111,11 +143,58 @@ public class PlotGrid {
             g.drawString(tickLabel, xPos - xOffset, lineYPos + yOffset);
         }
 
-        g.setColor(axisColor);
-        g.setStroke(axisStroke);
+        if (g != null) {
+            g.setColor(axisColor);
+            g.setStroke(axisStroke);
+
+            g.drawLine(xPos, xAxisPos, xPos + width, xAxisPos);
+            g.drawLine(yAxisPos, yPos, yAxisPos, yPos + height);
+        }
+        return key;
+    }
+
+    private long layoutLogTicksX(Graphics2D g, long key, int xPos, int yPos, int width, int height, int xAxisPos) {
+        final int[] mantissas = {1, 2, 5};
+        // Label every decade, and the 2 and 5 steps only while the decades are wide enough
+        boolean labelSteps = width / (maxX - minX) > 150;
+        key = mix(key, labelSteps ? 1 : 0);
+        for (int decade = (int) Math.floor(minX); decade <= (int) Math.ceil(maxX); decade++) {
+            for (int mantissa : mantissas) {
+                double x = decade + Math.log10(mantissa);
+                if (x < minX || x > maxX) continue;
+
+                int lineXPos = (int) mapValue(x, minX, maxX, xPos, xPos + width);
+                key = mix(mix(key, lineXPos), decade * 10L + mantissa);
+                if (g == null) continue;
+
+                g.setColor(gridColor);
+                g.setStroke(gridStroke);
+                g.drawLine(lineXPos, yPos, lineXPos, yPos + height);
+
+                g.setColor(axisColor);
+                g.setStroke(axisStroke);
+                g.drawLine(lineXPos, xAxisPos-5, lineXPos, xAxisPos+5);
+                if (mantissa == 1 || labelSteps) {
+                    String tickLabel = logTickLabel(mantissa, decade);
+                    Rectangle2D fRect = g.getFontMetrics().getStringBounds(tickLabel, g);
+                    g.drawString(tickLabel, lineXPos - (int) fRect.getWidth() / 2, yPos + height + (int) (5 + fRect.getHeight()));
+                }
+            }
+        }
+        return key;
+    }
+
+    private static long mix(long key, long value) {
+        return (key ^ value) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+    }
 
-        g.drawLine(xPos, xAxisPos, xPos + width, xAxisPos);
-        g.drawLine(yAxisPos, yPos, yAxisPos, yPos + height);
+    private static String logTickLabel(int mantissa, int decade) {
+        final String[] prefixes = {"", "k", "M", "G"};
+        if (decade < 0)
+            return BigDecimal.valueOf(mantissa).scaleByPowerOfTen(decade).toPlainString();
+        int group = Math.min(decade / 3, prefixes.length - 1);
+        long value = mantissa * (long) Math.pow(10, decade - group * 3);
+        return value + prefixes[group];
     }
 
     private double mapValue(double in, double inMin, double inMax, double outMin, double outMax) {
@@ -1,112 +1,241 @@
 package plotting;
 
 import java.awt.*;
-import java.awt.geom.Point2D;
-import java.util.ArrayList;
 
 public class PlotLine {
+    private static final Color[] GRAPH_COLORS = {
+            Color.decode("#0000FF"),
+            Color.decode("#FF0000"),
+            Color.decode("#009900"),
+            Color.decode("#FF9900"),
+            Color.decode("#CC00CC"),
+            Color.decode("#666666"),
+            Color.decode("#00CCFF"),
+            Color.decode("#000000"),
+    };
+
+    // Ring sizes of the time-window mode; the upper one caps the memory of a single line
+    private static final int MIN_WINDOW_CAPACITY = 256;
+    private static final int MAX_WINDOW_CAPACITY = 1 << 20;
+
+    // Name of the labeled input field this line shows, null for unlabeled ones
     private String label;
     private final Color color;
     private final Stroke stroke = new BasicStroke(1.0f);
-    private final int bufferSize;
 
-    private final ArrayList<Point2D.Double> points = new ArrayList<>();
+    private final int bufferLength;
+    private SampleBuffer samples;
+    // Seconds of samples kept in the ring, 0 keeps bufferLength samples instead
+    private double timeWindow;
+    // Compressed samples evicted from the ring, null while history is off
+    private SampleHistory history;
+    private final Decimator decimator = new Decimator();
+    private int[] xPoints = new int[256];
+    private int[] yPoints = new int[256];
 
-    // Fast min-max calculation variables
-    private final ArrayList<Integer> minXDeque = new ArrayList<>();
-    private final ArrayList<Integer> maxXDeque = new ArrayList<>();
-    private final ArrayList<Integer> minYDeque = new ArrayList<>();
-    private final ArrayList<Integer> maxYDeque = new ArrayList<>();
+    public PlotLine(int id, int bufferLength) {
+        this(id, bufferLength, 0);
+    }
+
+    public PlotLine(int id, int bufferLength, long historyBytes) {
+        this.bufferLength = bufferLength;
+        this.samples = new SampleBuffer(bufferLength);
+        this.color = colorFor(id);
+        setHistoryBudget(historyBytes);
+    }
 
-    private double minX, maxX, minY, maxY;
+    public String getLabel() {
+        return label;
+    }
 
-    public PlotLine(int id, int bufferLength) {
-        this.bufferSize = bufferLength;
-
-        Color[] graphColors = {
-                Color.decode("#0000FF"),
-                Color.decode("#FF0000"),
-                Color.decode("#009900"),
-                Color.decode("#FF9900"),
-                Color.decode("#CC00CC"),
-                Color.decode("#666666"),
-                Color.decode("#00CCFF"),
-                Color.decode("#000000"),
-        };
-        this.color = graphColors[id % graphColors.length];
-    }
-
-    public void addPoint(Point2D.Double point) {
-        points.add(point);
-
-        if (points.size() > bufferSize) {
-            points.removeFirst();
-            minXDeque.replaceAll(integer -> integer - 1);
-            maxXDeque.replaceAll(integer -> integer - 1);
-            minYDeque.replaceAll(integer -> integer - 1);
-            maxYDeque.replaceAll(integer -> integer - 1);
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public static Color colorFor(int id) {
+        return GRAPH_COLORS[id % GRAPH_COLORS.length];
+    }
+
+    public void addPoint(double x, double y) {
+        if (samples.size() == samples.capacity()) {
+            // A full ring that does not cover the window yet means the rate went up
+            if (timeWindow > 0 && samples.capacity() < MAX_WINDOW_CAPACITY && x - samples.getMinX() < timeWindow)
+                resize(Math.min(samples.capacity() * 2, MAX_WINDOW_CAPACITY));
+            else
+                evictOldest();
+        }
+        samples.add(x, y);
+
+        if (timeWindow > 0) {
+            while (samples.getX(samples.firstSequence()) < x - timeWindow)
+                evictOldest();
+            // The rate went down; halving at a quarter full leaves room to grow back without resizing again
+            if (samples.size() < samples.capacity() / 4 && samples.capacity() > MIN_WINDOW_CAPACITY)
+                resize(Math.max(samples.capacity() / 2, MIN_WINDOW_CAPACITY));
         }
+    }
 
-        if (!minXDeque.isEmpty() && minXDeque.getFirst() < 0)
-            minXDeque.removeFirst();
-        if (!maxXDeque.isEmpty() && maxXDeque.getFirst() < 0)
-            maxXDeque.removeFirst();
-        if (!minYDeque.isEmpty() && minYDeque.getFirst() < 0)
-            minYDeque.removeFirst();
-        if (!maxYDeque.isEmpty() && maxYDeque.getFirst() < 0)
-            maxYDeque.removeFirst();
-
-        while (!minXDeque.isEmpty() && points.get(minXDeque.getLast()).x >= point.x)
-            minXDeque.removeLast();
-        while (!maxXDeque.isEmpty() && points.get(maxXDeque.getLast()).x <= point.x)
-            maxXDeque.removeLast();
-        while (!minYDeque.isEmpty() && points.get(minYDeque.getLast()).y >= point.y)
-            minYDeque.removeLast();
-        while (!maxYDeque.isEmpty() && points.get(maxYDeque.getLast()).y <= point.y)
-            maxYDeque.removeLast();
-
-        minXDeque.addLast(points.size() - 1);
-        maxXDeque.addLast(points.size() - 1);
-        minYDeque.addLast(points.size() - 1);
-        maxYDeque.addLast(points.size() - 1);
-
-        minX = points.get(minXDeque.getFirst()).x;
-        maxX = points.get(maxXDeque.getFirst()).x;
-        minY = points.get(minYDeque.getFirst()).y;
-        maxY = points.get(maxYDeque.getFirst()).y;
+    // The oldest sample leaves the ring, into the history if there is one
+    private void evictOldest() {
+        long oldest = samples.firstSequence();
+        if (history != null)
+            history.add(samples.getX(oldest), samples.getY(oldest));
+        samples.dropBefore(oldest + 1);
+    }
+
+    private void resize(int capacity) {
+        while (samples.size() > capacity)
+            evictOldest();
+        samples = new SampleBuffer(capacity, samples);
+    }
+
+    public double getTimeWindow() {
+        return timeWindow;
+    }
+
+    // Keeps the samples of the last seconds in a ring sized to the measured rate; 0 goes back to a fixed number
+    // of samples
+    public void setTimeWindow(double seconds) {
+        if (seconds < 0)
+            throw new IllegalArgumentException("Time window must not be negative");
+        timeWindow = seconds;
+        if (seconds == 0 && samples.capacity() != bufferLength)
+            resize(bufferLength);
+    }
+
+    public int getBufferCapacity() {
+        return samples.capacity();
+    }
+
+    // Bytes of compressed history kept behind the ring, 0 turns history off
+    public void setHistoryBudget(long bytes) {
+        if (bytes <= 0)
+            history = null;
+        else if (history == null)
+            history = new SampleHistory(bytes);
+        else
+            history.setBudgetBytes(bytes);
+    }
+
+    public SampleHistory getHistory() {
+        return history;
+    }
+
+    // Range including the compressed history
+    public double getHistoryMinX() {
+        return history == null || history.isEmpty() ? getMinX() : history.getMinX();
+    }
+
+    public double getHistoryMinY() {
+        double historyMinY = history == null ? Double.NaN : history.getMinY();
+        return historyMinY == historyMinY ? Math.min(historyMinY, getMinY()) : getMinY();
+    }
+
+    public double getHistoryMaxY() {
+        double historyMaxY = history == null ? Double.NaN : history.getMaxY();
+        return historyMaxY == historyMaxY ? Math.max(historyMaxY, getMaxY()) : getMaxY();
     }
 
     public double getMinX() {
-        return minX;
+        return samples.getMinX();
     }
 
     public double getMaxX() {
-        return maxX;
+        return samples.getMaxX();
     }
 
     public double getMinY() {
-        return minY;
+        return samples.getMinY();
     }
 
     public double getMaxY() {
-        return maxY;
+        return samples.getMaxY();
+    }
+
+    // Y range of the samples with minX <= x <= maxX, infinities when there are none
+    public void rangeY(double minX, double maxX, double[] range) {
+        samples.rangeY(samples.lowerBound(minX), samples.upperBound(maxX), range);
+        if (history != null && !history.isEmpty() && minX < samples.getMinX())
+            history.rangeY(minX, maxX, range);
     }
 
     public void paint(Graphics2D g, double minX, double maxX, double minY, double maxY, int xPos, int yPos, int width, int height) {
-        if (points.isEmpty())
+        paintFrom(g, samples.firstSequence(), minX, maxX, minY, maxY, xPos, yPos, width, height);
+    }
+
+    // Draws the samples from fromSequence (inclusive) up to the newest one
+    public void paintFrom(Graphics2D g, long fromSequence, double minX, double maxX, double minY, double maxY,
+                          int xPos, int yPos, int width, int height) {
+        // Only the visible samples plus one neighbour on each side, so the line runs to the plot edges
+        long first = Math.max(fromSequence, Math.max(samples.lowerBound(minX) - 1, samples.firstSequence()));
+        long end = Math.min(samples.upperBound(maxX) + 1, samples.nextSequence());
+        // History is drawn only when the view reaches back past the ring and nothing of it is drawn yet
+        boolean withHistory = history != null && !history.isEmpty()
+                && fromSequence <= samples.firstSequence() && minX < samples.getMinX();
+        if (end - first < 2 && !withHistory)
             return;
 
         g.setColor(color);
         g.setStroke(stroke);
 
-        for (int i = 0; i < points.size() - 1; i++) {
-            g.drawLine(
-                    (int) mapValue(points.get(i).getX(), minX, maxX, xPos, xPos + width),
-                    (int) mapValue(points.get(i).getY(), minY, maxY, yPos + height, yPos),
-                    (int) mapValue(points.get(i + 1).getX(), minX, maxX, xPos, xPos + width),
-                    (int) mapValue(points.get(i + 1).getY(), minY, maxY, yPos + height, yPos)
-            );
+        decimate(first, end, withHistory, minX, maxX, width);
+        double[] xs = decimator.getX();
+        double[] ys = decimator.getY();
+
+        int pointCount = decimator.size();
+        if (pointCount > xPoints.length) {
+            xPoints = new int[Integer.highestOneBit(pointCount) << 1];
+            yPoints = new int[xPoints.length];
+        }
+        // Dense lines are mostly vertical min/max runs; antialiasing them is slow and only blurs the envelope
+        Object antialiasing = g.getRenderingHint(RenderingHints.KEY_ANTIALIASING);
+        if (pointCount > 2 * width)
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+
+        // NaN markers split the line into separately drawn runs
+        int runLength = 0;
+        for (int i = 0; i <= pointCount; i++) {
+            if (i == pointCount || ys[i] != ys[i]) {
+                if (runLength == 1)
+                    g.drawLine(xPoints[0], yPoints[0], xPoints[0], yPoints[0]);
+                else
+                    g.drawPolyline(xPoints, yPoints, runLength);
+                runLength = 0;
+                continue;
+            }
+            xPoints[runLength] = (int) mapValue(xs[i], minX, maxX, xPos, xPos + width);
+            yPoints[runLength] = (int) mapValue(ys[i], minY, maxY, yPos + height, yPos);
+            runLength++;
+        }
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, antialiasing);
+    }
+
+    public Decimator.Mode getDecimationMode() {
+        return decimator.getMode();
+    }
+
+    public void setDecimationMode(Decimator.Mode mode) {
+        decimator.setMode(mode);
+    }
+
+    public long getNewestSequence() {
+        return samples.nextSequence() - 1;
+    }
+
+    private void decimate(long first, long end, boolean withHistory, double minX, double maxX, int width) {
+        double[] xData = samples.xData();
+        double[] yData = samples.yData();
+        int index = samples.indexOf(first);
+
+        decimator.begin(minX, maxX, width);
+        if (withHistory)
+            history.feed(decimator, minX, maxX, width);
+        for (long n = end - first; n > 0; n--) {
+            decimator.add(xData[index], yData[index]);
+            if (++index == xData.length)
+                index = 0;
         }
+        decimator.finish();
     }
 
     private double mapValue(double in, double inMin, double inMax, double outMin, double outMax) {
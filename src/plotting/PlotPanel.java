@@ -1,26 +1,145 @@
 package plotting;
 
+import recording.CaptureReader;
+import trigger.TriggerEngine;
+
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 public class PlotPanel extends JPanel {
     private final ArrayList<PlotLine> plotLines = new ArrayList<>();
     private final PlotGrid grid = new PlotGrid(5, 5, Color.lightGray, Color.black);
     private int[] plotMargins = {50, 50, 50, 50};
+    private Decimator.Mode decimationMode = Decimator.Mode.M4;
+
+    private static final Font PLOT_FONT = new Font("Arial", Font.PLAIN, 12);
+
+    // Background, grid, ticks and labels only change with the axis range or panel size
+    private BufferedImage gridLayer;
+    private double layerScaleX, layerScaleY;
+    // PlotGrid.layoutKey() of the cached layer; live scrolling moves the range every frame but the grid
+    // only when a tick crosses a pixel
+    private long layerKey;
+
+    // Strip-chart mode keeps the rendered lines and scrolls them instead of redrawing every sample
+    // The layer reaches past the right edge by the tolerated growth of the X range plus a few pixels, so samples
+    // beyond the last full redraw's range are still rasterized instead of clipped
+    private static final int STRIP_OVERSCAN = 4;
+    private static final double STRIP_RANGE_TOLERANCE = 0.02;
+    private boolean stripChart;
+    private BufferedImage lineLayer;
+    private long[] drawnSequences = new long[0];
+    private int lineSetVersion, stripLineSetVersion;
+    private double stripOriginX, stripRangeX, stripMinY, stripMaxY, stripScaleX, stripScaleY;
+
+    // Compressed history kept behind every line's ring, and whether the view spans it. History is opt-in: every
+    // evicted sample is encoded on the EDT, which adds up across many channels at high rates
+    public static final long DEFAULT_HISTORY_BYTES = 0;
+    private long historyBytes = DEFAULT_HISTORY_BYTES;
+    private double timeWindow;
+    private boolean showHistory;
+
+    // Capture viewing mode replaces the live lines with a recorded file
+    private CaptureRenderer captureRenderer;
+    private int dragStartX;
+
+    // Trigger mode shows only the latest completed trigger frame instead of the scrolling lines
+    private TriggerRenderer triggerRenderer;
+
+    // Live viewport: a zoomed X span that follows the newest sample (0 fits everything), or a fixed
+    // window while paused. Acquisition goes on either way; pausing only stops the view from moving.
+    private boolean paused;
+    private double followSpan;
+    private double viewMinX, viewMaxX;
+    // X range of the last painted frame, used to map mouse positions
+    private double shownMinX, shownMaxX = 1;
+    private final double[] lineRangeY = new double[2];
+
+    public PlotPanel() {
+        setBackground(Color.white);
+        setFont(PLOT_FONT);
+
+        MouseAdapter viewportListener = new MouseAdapter() {
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (triggerRenderer != null)
+                    return;
+                double factor = Math.pow(1.2, e.getPreciseWheelRotation());
+                if (captureRenderer != null)
+                    captureRenderer.zoom(factor, toPlotX(e.getX()));
+                else if (paused)
+                    zoomView(factor, toPlotX(e.getX()));
+                else
+                    followSpan = (shownMaxX - shownMinX) * factor;
+                repaint();
+            }
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                dragStartX = e.getX();
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                if (triggerRenderer != null || !SwingUtilities.isLeftMouseButton(e))
+                    return;
+                double deltaX = toPlotX(dragStartX) - toPlotX(e.getX());
+                dragStartX = e.getX();
+                if (captureRenderer != null) {
+                    captureRenderer.pan(deltaX);
+                } else {
+                    // Dragging a live view freezes it where it is
+                    setPaused(true);
+                    viewMinX += deltaX;
+                    viewMaxX += deltaX;
+                }
+                repaint();
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (triggerRenderer != null || e.getClickCount() != 2)
+                    return;
+                if (captureRenderer != null)
+                    captureRenderer.resetView();
+                else
+                    resetView();
+                repaint();
+            }
+        };
+        addMouseListener(viewportListener);
+        addMouseMotionListener(viewportListener);
+        addMouseWheelListener(viewportListener);
+    }
 
     public int lineCount() {
         return plotLines.size();
     }
 
     public PlotLine addLine(int bufferLength) {
-        PlotLine newLine = new PlotLine(plotLines.size(), bufferLength);
+        PlotLine newLine = new PlotLine(plotLines.size(), bufferLength, historyBytes);
+        newLine.setTimeWindow(timeWindow);
+        newLine.setDecimationMode(decimationMode);
         plotLines.add(newLine);
+        lineSetVersion++;
         return newLine;
     }
 
     public void removeLine(int id) {
         plotLines.remove(id);
+        lineSetVersion++;
+    }
+
+    public void removeLine(PlotLine line) {
+        if (plotLines.remove(line))
+            lineSetVersion++;
     }
 
     public PlotLine getLine(int id) {
@@ -31,12 +150,20 @@ public class PlotPanel extends JPanel {
     public void paintComponent(Graphics g1) {
         Graphics2D g = (Graphics2D) g1;
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        g.setFont(new Font("Arial", Font.PLAIN, 12));
-        super.paintComponent(g);
-        setBackground(Color.white);
 
-        if (plotLines.isEmpty())
+        if (captureRenderer != null) {
+            paintCapture(g);
             return;
+        }
+        if (triggerRenderer != null) {
+            paintTrigger(g);
+            return;
+        }
+
+        if (plotLines.isEmpty()) {
+            super.paintComponent(g);
+            return;
+        }
 
         //TODO: allocate space for tick labels, legend and stuff, draw ticks and legend
 
@@ -45,24 +172,356 @@ public class PlotPanel extends JPanel {
         double minY = Double.POSITIVE_INFINITY;
         double maxY = Double.NEGATIVE_INFINITY;
         for (PlotLine plotLine : plotLines) {
-            if (plotLine.getMinX() < minX) minX = plotLine.getMinX();
+            double lineMinX = showHistory ? plotLine.getHistoryMinX() : plotLine.getMinX();
+            double lineMinY = showHistory ? plotLine.getHistoryMinY() : plotLine.getMinY();
+            double lineMaxY = showHistory ? plotLine.getHistoryMaxY() : plotLine.getMaxY();
+            if (lineMinX < minX) minX = lineMinX;
             if (plotLine.getMaxX() > maxX) maxX = plotLine.getMaxX();
-            if (plotLine.getMinY() < minY) minY = plotLine.getMinY();
-            if (plotLine.getMaxY() > maxY) maxY = plotLine.getMaxY();
+            if (lineMinY < minY) minY = lineMinY;
+            if (lineMaxY > maxY) maxY = lineMaxY;
         }
 
-        Rectangle bounds = g.getClipBounds();
+        if (paused || followSpan > 0) {
+            if (paused) {
+                minX = viewMinX;
+                maxX = viewMaxX;
+            } else {
+                minX = maxX - followSpan;
+            }
+            // Scale Y to what is in view; each line answers from its block summaries
+            minY = Double.POSITIVE_INFINITY;
+            maxY = Double.NEGATIVE_INFINITY;
+            for (PlotLine plotLine : plotLines) {
+                lineRangeY[0] = Double.POSITIVE_INFINITY;
+                lineRangeY[1] = Double.NEGATIVE_INFINITY;
+                plotLine.rangeY(minX, maxX, lineRangeY);
+                if (lineRangeY[0] < minY) minY = lineRangeY[0];
+                if (lineRangeY[1] > maxY) maxY = lineRangeY[1];
+            }
+            if (minY > maxY) {
+                minY = -1;
+                maxY = 1;
+            } else if (minY == maxY) {
+                minY -= 0.5;
+                maxY += 0.5;
+            }
+        }
+        shownMinX = minX;
+        shownMaxX = maxX;
 
-        grid.updateTicks(minX, maxX, minY, maxY);
-        grid.paint(g, plotMargins[0], plotMargins[2],
-                bounds.width - plotMargins[1] - plotMargins[3],
-                bounds.height - plotMargins[0] - plotMargins[2]);
+        int plotWidth = getWidth() - plotMargins[1] - plotMargins[3];
+        int plotHeight = getHeight() - plotMargins[0] - plotMargins[2];
+
+        if (stripChart && !paused && maxX > minX && plotWidth > 0 && plotHeight > 0) {
+            paintStripChart(g, minX, maxX, minY, maxY, plotWidth, plotHeight);
+            return;
+        }
+        lineLayer = null;
 
+        g.drawImage(getGridLayer(g.getTransform(), minX, maxX, minY, maxY, plotWidth, plotHeight),
+                0, 0, getWidth(), getHeight(), null);
+
+        Shape clip = g.getClip();
+        g.clipRect(plotMargins[0], plotMargins[2], plotWidth + 1, plotHeight + 1);
         for (PlotLine line : plotLines) {
-            line.paint(g, minX, maxX, minY, maxY, plotMargins[0], plotMargins[2],
-                    bounds.width - plotMargins[1] - plotMargins[3],
-                    bounds.height - plotMargins[0] - plotMargins[2]);
+            line.paint(g, minX, maxX, minY, maxY, plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+        }
+        g.setClip(clip);
+    }
+
+    private void paintCapture(Graphics2D g) {
+        int plotWidth = getWidth() - plotMargins[1] - plotMargins[3];
+        int plotHeight = getHeight() - plotMargins[0] - plotMargins[2];
+        if (plotWidth <= 0 || plotHeight <= 0)
+            return;
+
+        captureRenderer.update(plotWidth);
+        shownMinX = captureRenderer.getViewMinX();
+        shownMaxX = captureRenderer.getViewMaxX();
+        g.drawImage(getGridLayer(g.getTransform(), captureRenderer.getViewMinX(), captureRenderer.getViewMaxX(),
+                        captureRenderer.getMinY(), captureRenderer.getMaxY(), plotWidth, plotHeight),
+                0, 0, getWidth(), getHeight(), null);
+
+        Shape clip = g.getClip();
+        g.clipRect(plotMargins[0], plotMargins[2], plotWidth + 1, plotHeight + 1);
+        captureRenderer.paint(g, plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+        g.setClip(clip);
+    }
+
+    private void paintTrigger(Graphics2D g) {
+        int plotWidth = getWidth() - plotMargins[1] - plotMargins[3];
+        int plotHeight = getHeight() - plotMargins[0] - plotMargins[2];
+        if (plotWidth <= 0 || plotHeight <= 0)
+            return;
+
+        if (!triggerRenderer.update()) {
+            super.paintComponent(g);
+            g.setColor(Color.darkGray);
+            g.drawString("Waiting for trigger...", plotMargins[0], plotMargins[2] + g.getFontMetrics().getAscent());
+            return;
         }
+        g.drawImage(getGridLayer(g.getTransform(), triggerRenderer.getMinX(), triggerRenderer.getMaxX(),
+                        triggerRenderer.getMinY(), triggerRenderer.getMaxY(), plotWidth, plotHeight),
+                0, 0, getWidth(), getHeight(), null);
+
+        Shape clip = g.getClip();
+        g.clipRect(plotMargins[0], plotMargins[2], plotWidth + 1, plotHeight + 1);
+        triggerRenderer.paint(g, plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+        g.setClip(clip);
+    }
+
+    private double toPlotX(int mouseX) {
+        int plotWidth = Math.max(1, getWidth() - plotMargins[1] - plotMargins[3]);
+        return shownMinX + (mouseX - plotMargins[0]) * (shownMaxX - shownMinX) / plotWidth;
+    }
+
+    private void zoomView(double factor, double anchorX) {
+        double span = (viewMaxX - viewMinX) * factor;
+        if (span <= 0 || Double.isInfinite(span))
+            return;
+        double ratio = (anchorX - viewMinX) / (viewMaxX - viewMinX);
+        viewMinX = anchorX - span * ratio;
+        viewMaxX = viewMinX + span;
+    }
+
+    private void paintStripChart(Graphics2D g, double minX, double maxX, double minY, double maxY,
+                                 int plotWidth, int plotHeight) {
+        AffineTransform transform = g.getTransform();
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        int deviceWidth = (int) Math.ceil(plotWidth * scaleX);
+        int deviceHeight = (int) Math.ceil(plotHeight * scaleY);
+        int layerWidth = deviceWidth + (int) Math.ceil(deviceWidth * STRIP_RANGE_TOLERANCE) + STRIP_OVERSCAN;
+        // Lines are drawn over the whole layer at the scale of the visible part
+        int drawWidth = plotWidth + (int) ((layerWidth - deviceWidth) / scaleX);
+        double rangeX = maxX - minX;
+
+        boolean fullRedraw = lineLayer == null || lineLayer.getWidth() != layerWidth
+                || lineLayer.getHeight() != deviceHeight || stripScaleX != scaleX || stripScaleY != scaleY
+                || stripLineSetVersion != lineSetVersion || stripMinY != minY || stripMaxY != maxY
+                || Math.abs(rangeX - stripRangeX) > stripRangeX * STRIP_RANGE_TOLERANCE || minX < stripOriginX;
+
+        if (!fullRedraw) {
+            // Scroll by whole device pixels; the origin keeps the sub-pixel remainder
+            double pixelsPerUnit = deviceWidth / stripRangeX;
+            int shift = (int) ((minX - stripOriginX) * pixelsPerUnit);
+            if (shift >= deviceWidth) {
+                fullRedraw = true;
+            } else if (shift > 0) {
+                Graphics2D lg = lineLayer.createGraphics();
+                try {
+                    // Src, otherwise transparent pixels would leave the old content in place
+                    lg.setComposite(AlphaComposite.Src);
+                    lg.copyArea(shift, 0, layerWidth - shift, deviceHeight, -shift, 0);
+                    lg.setComposite(AlphaComposite.Clear);
+                    lg.fillRect(layerWidth - shift, 0, shift, deviceHeight);
+                } finally {
+                    lg.dispose();
+                }
+                stripOriginX += shift / pixelsPerUnit;
+            }
+            // Drawn sequences are never rasterized again, so nothing may land outside the layer
+            if (maxX > stripOriginX + stripRangeX * drawWidth / plotWidth)
+                fullRedraw = true;
+        }
+
+        if (fullRedraw) {
+            if (lineLayer == null || lineLayer.getWidth() != layerWidth || lineLayer.getHeight() != deviceHeight) {
+                lineLayer = new BufferedImage(layerWidth, deviceHeight, BufferedImage.TYPE_INT_ARGB);
+            } else {
+                Graphics2D lg = lineLayer.createGraphics();
+                lg.setComposite(AlphaComposite.Clear);
+                lg.fillRect(0, 0, layerWidth, deviceHeight);
+                lg.dispose();
+            }
+            if (drawnSequences.length != plotLines.size())
+                drawnSequences = new long[plotLines.size()];
+            Arrays.fill(drawnSequences, Long.MIN_VALUE);
+
+            stripLineSetVersion = lineSetVersion;
+            stripOriginX = minX;
+            stripRangeX = rangeX;
+            stripMinY = minY;
+            stripMaxY = maxY;
+            stripScaleX = scaleX;
+            stripScaleY = scaleY;
+        }
+
+        // Only the samples that arrived since the previous frame are rasterized
+        Graphics2D lg = lineLayer.createGraphics();
+        try {
+            lg.scale(scaleX, scaleY);
+            lg.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            for (int i = 0; i < plotLines.size(); i++) {
+                PlotLine line = plotLines.get(i);
+                line.paintFrom(lg, drawnSequences[i], stripOriginX, stripOriginX + stripRangeX * drawWidth / plotWidth,
+                        minY, maxY, 0, 0, drawWidth, plotHeight);
+                drawnSequences[i] = line.getNewestSequence();
+            }
+        } finally {
+            lg.dispose();
+        }
+
+        g.drawImage(getGridLayer(transform, stripOriginX, stripOriginX + stripRangeX, minY, maxY, plotWidth, plotHeight),
+                0, 0, getWidth(), getHeight(), null);
+        g.drawImage(lineLayer, plotMargins[0], plotMargins[2], plotMargins[0] + plotWidth, plotMargins[2] + plotHeight,
+                0, 0, deviceWidth, deviceHeight, null);
+    }
+
+    private BufferedImage getGridLayer(AffineTransform transform, double minX, double maxX, double minY, double maxY,
+                                       int plotWidth, int plotHeight) {
+        // Render at device resolution so the cached layer stays sharp on HiDPI screens
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        int layerWidth = Math.max(1, (int) Math.ceil(getWidth() * scaleX));
+        int layerHeight = Math.max(1, (int) Math.ceil(getHeight() * scaleY));
+
+        grid.updateTicks(minX, maxX, minY, maxY);
+        long key = grid.layoutKey(plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+        if (gridLayer != null && gridLayer.getWidth() == layerWidth && gridLayer.getHeight() == layerHeight
+                && layerScaleX == scaleX && layerScaleY == scaleY && layerKey == key)
+            return gridLayer;
+
+        if (gridLayer == null || gridLayer.getWidth() != layerWidth || gridLayer.getHeight() != layerHeight) {
+            GraphicsConfiguration configuration = getGraphicsConfiguration();
+            gridLayer = configuration != null
+                    ? configuration.createCompatibleImage(layerWidth, layerHeight)
+                    : new BufferedImage(layerWidth, layerHeight, BufferedImage.TYPE_INT_RGB);
+        }
+
+        Graphics2D g = gridLayer.createGraphics();
+        try {
+            g.scale(scaleX, scaleY);
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setFont(PLOT_FONT);
+            g.setColor(getBackground());
+            g.fillRect(0, 0, getWidth(), getHeight());
+
+            grid.paint(g, plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+        } finally {
+            g.dispose();
+        }
+
+        layerKey = key;
+        layerScaleX = scaleX;
+        layerScaleY = scaleY;
+        return gridLayer;
+    }
+
+    public Decimator.Mode getDecimationMode() {
+        return decimationMode;
+    }
+
+    public void setDecimationMode(Decimator.Mode decimationMode) {
+        this.decimationMode = decimationMode;
+        for (PlotLine line : plotLines)
+            line.setDecimationMode(decimationMode);
+    }
+
+    public CaptureReader getCapture() {
+        return captureRenderer != null ? captureRenderer.getCapture() : null;
+    }
+
+    // Shows a recorded capture instead of the live lines, null returns to live view
+    public void setCapture(CaptureReader capture) {
+        captureRenderer = capture != null ? new CaptureRenderer(capture) : null;
+        // Parts of the file drawn from previews sharpen as their summary tiles are built
+        if (capture != null)
+            capture.startIndexing(this::repaint);
+        lineLayer = null;
+        repaint();
+    }
+
+    public TriggerEngine getTrigger() {
+        return triggerRenderer != null ? triggerRenderer.getEngine() : null;
+    }
+
+    // Shows the trigger's completed frames instead of the live lines, null returns to the scrolling view
+    public void setTrigger(TriggerEngine trigger) {
+        triggerRenderer = trigger != null ? new TriggerRenderer(trigger) : null;
+        lineLayer = null;
+        repaint();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    // Freezes the live view on the range shown last; new samples keep arriving behind it
+    public void setPaused(boolean paused) {
+        if (paused && !this.paused) {
+            viewMinX = shownMinX;
+            viewMaxX = shownMaxX > shownMinX ? shownMaxX : shownMinX + 1;
+        }
+        this.paused = paused;
+        lineLayer = null;
+        repaint();
+    }
+
+    // Fixed X window; pauses the view
+    public void setView(double minX, double maxX) {
+        if (!(maxX > minX))
+            throw new IllegalArgumentException("View must have a positive width");
+        setPaused(true);
+        viewMinX = minX;
+        viewMaxX = maxX;
+    }
+
+    // Running view of the last span X units, 0 fits every sample
+    public void setFollowSpan(double span) {
+        if (span < 0)
+            throw new IllegalArgumentException("Span must not be negative");
+        followSpan = span;
+        repaint();
+    }
+
+    // Back to a running view that fits every sample
+    public void resetView() {
+        followSpan = 0;
+        setPaused(false);
+    }
+
+    public boolean isStripChart() {
+        return stripChart;
+    }
+
+    public void setStripChart(boolean stripChart) {
+        this.stripChart = stripChart;
+        lineLayer = null;
+        repaint();
+    }
+
+    public long getHistoryBudget() {
+        return historyBytes;
+    }
+
+    // Per-line byte budget for compressed history, applied to existing lines too; 0 turns history off
+    public void setHistoryBudget(long bytes) {
+        historyBytes = bytes;
+        for (PlotLine line : plotLines)
+            line.setHistoryBudget(bytes);
+    }
+
+    public double getTimeWindow() {
+        return timeWindow;
+    }
+
+    // Seconds each line keeps in its ring, applied to existing lines too; 0 keeps a fixed number of samples
+    public void setTimeWindow(double seconds) {
+        timeWindow = seconds;
+        for (PlotLine line : plotLines)
+            line.setTimeWindow(seconds);
+    }
+
+    public boolean isShowHistory() {
+        return showHistory;
+    }
+
+    // Scales the X axis to the whole history instead of just the recent samples
+    public void setShowHistory(boolean showHistory) {
+        this.showHistory = showHistory;
+        lineLayer = null;
+        repaint();
     }
 
     public int[] getPlotMargins() {
@@ -71,5 +530,7 @@ public class PlotPanel extends JPanel {
 
     public void setPlotMargins(int[] plotMargins) {
         this.plotMargins = plotMargins;
+        gridLayer = null;
+        lineLayer = null;
     }
 }
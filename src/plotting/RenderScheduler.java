@@ -0,0 +1,121 @@
+package plotting;
+
+import metrics.LatencyHistogram;
+
+import javax.swing.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Coalesces "new data" notifications from any thread into at most targetFps repaints of a single component.
+// At most one frame is queued on the EDT at a time; ticks that arrive while it is still pending are dropped.
+public class RenderScheduler {
+    public static final int UNLIMITED = 0;
+
+    private final JComponent target;
+    private final Runnable frameUpdate;
+
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean framePending = new AtomicBoolean();
+    private final AtomicLong renderedFrames = new AtomicLong();
+    private final AtomicLong droppedFrames = new AtomicLong();
+    private final LatencyHistogram frameUpdateTime = new LatencyHistogram();
+    private final LatencyHistogram paintTime = new LatencyHistogram();
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "render-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledFuture<?> tickTask;
+    private volatile int targetFps;
+
+    // frameUpdate runs on the EDT right before every scheduled repaint
+    public RenderScheduler(JComponent target, Runnable frameUpdate, int targetFps) {
+        this.target = target;
+        this.frameUpdate = frameUpdate;
+        setTargetFps(targetFps);
+    }
+
+    public void markDirty() {
+        dirty.set(true);
+        if (targetFps == UNLIMITED)
+            requestFrame();
+    }
+
+    public synchronized void setTargetFps(int targetFps) {
+        if (targetFps < 0)
+            throw new IllegalArgumentException("Target frame rate must not be negative");
+
+        if (tickTask != null)
+            tickTask.cancel(false);
+        tickTask = null;
+        this.targetFps = targetFps;
+
+        if (targetFps == UNLIMITED) {
+            if (dirty.get())
+                requestFrame();
+        } else {
+            long period = TimeUnit.SECONDS.toNanos(1) / targetFps;
+            tickTask = ticker.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public int getTargetFps() {
+        return targetFps;
+    }
+
+    public long getRenderedFrames() {
+        return renderedFrames.get();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    // Time spent in frameUpdate per frame
+    public LatencyHistogram getFrameUpdateTime() {
+        return frameUpdateTime;
+    }
+
+    // Time spent painting the target per frame
+    public LatencyHistogram getPaintTime() {
+        return paintTime;
+    }
+
+    public void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        if (!dirty.get())
+            return;
+        if (framePending.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::renderFrame);
+        else
+            droppedFrames.incrementAndGet();
+    }
+
+    private void requestFrame() {
+        if (framePending.compareAndSet(false, true))
+            SwingUtilities.invokeLater(this::renderFrame);
+    }
+
+    private void renderFrame() {
+        dirty.set(false);
+        long start = System.nanoTime();
+        frameUpdate.run();
+        long updated = System.nanoTime();
+        target.paintImmediately(0, 0, target.getWidth(), target.getHeight());
+        paintTime.record(System.nanoTime() - updated);
+        frameUpdateTime.record(updated - start);
+        renderedFrames.incrementAndGet();
+        framePending.set(false);
+
+        if (targetFps == UNLIMITED && dirty.get())
+            requestFrame();
+    }
+}
@@ -0,0 +1,222 @@
+package plotting;
+
+// Fixed-capacity circular store of (x, y) samples.
+// Samples are addressed by absolute sequence numbers; the oldest retained sample is firstSequence(). Old samples
+// leave when the ring is full or through dropBefore(), and a copy with another capacity keeps the numbering.
+// A NaN y marks a gap: it is stored like any sample but ignored by the Y range.
+// X must not decrease, which lets a viewport find its samples by binary search; the Y range of any
+// sequence range is answered from per-block min/max summaries plus the partial blocks at either end.
+public class SampleBuffer {
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    private final int capacity;
+    private final double[] xData;
+    private final double[] yData;
+    private long firstSequence;
+    private long nextSequence;
+
+    // Fast min-max calculation variables
+    private final MonotonicDeque minXDeque;
+    private final MonotonicDeque maxXDeque;
+    private final MonotonicDeque minYDeque;
+    private final MonotonicDeque maxYDeque;
+
+    // Y range of every block of BLOCK_SIZE consecutive sequences, slot = (sequence >> BLOCK_SHIFT) % blocks
+    private final double[] blockMinY;
+    private final double[] blockMaxY;
+
+    public SampleBuffer(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Buffer capacity must be positive");
+
+        this.capacity = capacity;
+        this.xData = new double[capacity];
+        this.yData = new double[capacity];
+
+        minXDeque = new MonotonicDeque(capacity, false);
+        maxXDeque = new MonotonicDeque(capacity, true);
+        minYDeque = new MonotonicDeque(capacity, false);
+        maxYDeque = new MonotonicDeque(capacity, true);
+
+        int blocks = (capacity + BLOCK_SIZE - 1) / BLOCK_SIZE + 1;
+        blockMinY = new double[blocks];
+        blockMaxY = new double[blocks];
+    }
+
+    // The newest samples of source, as many as fit, under their original sequence numbers
+    public SampleBuffer(int capacity, SampleBuffer source) {
+        this(capacity);
+        long from = Math.max(source.firstSequence, source.nextSequence - capacity);
+        firstSequence = from;
+        nextSequence = from;
+        // add() only starts a block summary on a block boundary
+        blockMinY[blockOf(from)] = Double.POSITIVE_INFINITY;
+        blockMaxY[blockOf(from)] = Double.NEGATIVE_INFINITY;
+        for (long n = from; n < source.nextSequence; n++)
+            add(source.getX(n), source.getY(n));
+    }
+
+    public void add(double x, double y) {
+        long sequence = nextSequence++;
+        int index = indexOf(sequence);
+        xData[index] = x;
+        yData[index] = y;
+
+        if (sequence - firstSequence >= capacity)
+            dropBefore(sequence - capacity + 1);
+
+        minXDeque.push(sequence, x);
+        maxXDeque.push(sequence, x);
+        int block = blockOf(sequence);
+        if ((sequence & (BLOCK_SIZE - 1)) == 0) {
+            blockMinY[block] = Double.POSITIVE_INFINITY;
+            blockMaxY[block] = Double.NEGATIVE_INFINITY;
+        }
+        if (y == y) {
+            minYDeque.push(sequence, y);
+            maxYDeque.push(sequence, y);
+            if (y < blockMinY[block]) blockMinY[block] = y;
+            if (y > blockMaxY[block]) blockMaxY[block] = y;
+        }
+    }
+
+    // Forgets the samples before sequence
+    public void dropBefore(long sequence) {
+        firstSequence = Math.max(firstSequence, Math.min(sequence, nextSequence));
+        minXDeque.evictBefore(firstSequence);
+        maxXDeque.evictBefore(firstSequence);
+        minYDeque.evictBefore(firstSequence);
+        maxYDeque.evictBefore(firstSequence);
+    }
+
+    // First retained sequence whose X is at least x, nextSequence() if there is none
+    public long lowerBound(double x) {
+        long low = firstSequence();
+        long high = nextSequence;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (xData[indexOf(middle)] < x)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // First retained sequence whose X is greater than x, nextSequence() if there is none
+    public long upperBound(double x) {
+        long low = firstSequence();
+        long high = nextSequence;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (xData[indexOf(middle)] <= x)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // Stores the Y range of sequences [from, to) in range[0] and range[1]; infinities when all are gaps
+    public void rangeY(long from, long to, double[] range) {
+        from = Math.max(from, firstSequence());
+        to = Math.min(to, nextSequence);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        // Whole blocks inside the range come from their summaries, the partial ones at the ends are scanned
+        long firstWhole = (from + BLOCK_SIZE - 1) & -BLOCK_SIZE;
+        long lastWhole = to & -BLOCK_SIZE;
+        if (firstWhole >= lastWhole) {
+            firstWhole = to;
+            lastWhole = to;
+        }
+        for (long n = from; n < firstWhole; n++) {
+            double y = yData[indexOf(n)];
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        for (long n = firstWhole; n < lastWhole; n += BLOCK_SIZE) {
+            int block = blockOf(n);
+            if (blockMinY[block] < min) min = blockMinY[block];
+            if (blockMaxY[block] > max) max = blockMaxY[block];
+        }
+        for (long n = lastWhole; n < to; n++) {
+            double y = yData[indexOf(n)];
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        range[0] = min;
+        range[1] = max;
+    }
+
+    public void clear() {
+        firstSequence = 0;
+        nextSequence = 0;
+        minXDeque.clear();
+        maxXDeque.clear();
+        minYDeque.clear();
+        maxYDeque.clear();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) (nextSequence - firstSequence);
+    }
+
+    public boolean isEmpty() {
+        return nextSequence == firstSequence;
+    }
+
+    public long firstSequence() {
+        return firstSequence;
+    }
+
+    public long nextSequence() {
+        return nextSequence;
+    }
+
+    public double getX(long sequence) {
+        return xData[indexOf(sequence)];
+    }
+
+    public double getY(long sequence) {
+        return yData[indexOf(sequence)];
+    }
+
+    public double getMinX() {
+        return minXDeque.isEmpty() ? 0 : minXDeque.peek();
+    }
+
+    public double getMaxX() {
+        return maxXDeque.isEmpty() ? 0 : maxXDeque.peek();
+    }
+
+    public double getMinY() {
+        return minYDeque.isEmpty() ? 0 : minYDeque.peek();
+    }
+
+    public double getMaxY() {
+        return maxYDeque.isEmpty() ? 0 : maxYDeque.peek();
+    }
+
+    private int blockOf(long sequence) {
+        return (int) ((sequence >>> BLOCK_SHIFT) % blockMinY.length);
+    }
+
+    int indexOf(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    double[] xData() {
+        return xData;
+    }
+
+    double[] yData() {
+        return yData;
+    }
+}
@@ -0,0 +1,193 @@
+package plotting;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+// Cold tier behind a line's SampleBuffer: samples evicted from the hot ring are collected into blocks of
+// BLOCK_SAMPLES and sealed as CompressedBlocks. The oldest blocks are dropped once the byte budget is exceeded.
+// Blocks are only decoded while painting, and only when they span more than one pixel column.
+public class SampleHistory {
+    static final int BLOCK_SAMPLES = 1024;
+
+    private long budgetBytes;
+    private final ArrayDeque<CompressedBlock> blocks = new ArrayDeque<>();
+    private long blockBytes;
+    private long blockSamples;
+    private double blockMinY = Double.NaN, blockMaxY = Double.NaN;
+
+    // The open block, still uncompressed
+    private final double[] stagingX = new double[BLOCK_SAMPLES];
+    private final double[] stagingY = new double[BLOCK_SAMPLES];
+    private int stagingSize;
+    private double stagingMinY = Double.NaN, stagingMaxY = Double.NaN;
+
+    private final GorillaCodec.BitWriter writer = new GorillaCodec.BitWriter();
+    private final double[] decodedX = new double[BLOCK_SAMPLES];
+    private final double[] decodedY = new double[BLOCK_SAMPLES];
+
+    public SampleHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    public void add(double x, double y) {
+        stagingX[stagingSize] = x;
+        stagingY[stagingSize] = y;
+        stagingSize++;
+        stagingMinY = min(stagingMinY, y);
+        stagingMaxY = max(stagingMaxY, y);
+
+        if (stagingSize == BLOCK_SAMPLES)
+            seal();
+    }
+
+    private void seal() {
+        CompressedBlock block = new CompressedBlock(stagingX, stagingY, stagingSize, writer);
+        blocks.addLast(block);
+        blockBytes += block.sizeInBytes();
+        blockSamples += block.count;
+        blockMinY = min(blockMinY, block.minY);
+        blockMaxY = max(blockMaxY, block.maxY);
+
+        stagingSize = 0;
+        stagingMinY = Double.NaN;
+        stagingMaxY = Double.NaN;
+        trim();
+    }
+
+    private void trim() {
+        boolean evicted = false;
+        while (blockBytes > budgetBytes && !blocks.isEmpty()) {
+            CompressedBlock block = blocks.removeFirst();
+            blockBytes -= block.sizeInBytes();
+            blockSamples -= block.count;
+            evicted = true;
+        }
+        if (evicted) {
+            blockMinY = Double.NaN;
+            blockMaxY = Double.NaN;
+            for (CompressedBlock block : blocks) {
+                blockMinY = min(blockMinY, block.minY);
+                blockMaxY = max(blockMaxY, block.maxY);
+            }
+        }
+    }
+
+    public void clear() {
+        blocks.clear();
+        blockBytes = 0;
+        blockSamples = 0;
+        blockMinY = Double.NaN;
+        blockMaxY = Double.NaN;
+        stagingSize = 0;
+        stagingMinY = Double.NaN;
+        stagingMaxY = Double.NaN;
+    }
+
+    public long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        trim();
+    }
+
+    public boolean isEmpty() {
+        return blocks.isEmpty() && stagingSize == 0;
+    }
+
+    public long size() {
+        return blockSamples + stagingSize;
+    }
+
+    // Compressed bytes held, excluding the fixed staging arrays
+    public long sizeInBytes() {
+        return blockBytes;
+    }
+
+    public double getMinX() {
+        return !blocks.isEmpty() ? blocks.getFirst().firstX : stagingSize > 0 ? stagingX[0] : 0;
+    }
+
+    public double getMaxX() {
+        return stagingSize > 0 ? stagingX[stagingSize - 1] : !blocks.isEmpty() ? blocks.getLast().lastX : 0;
+    }
+
+    // NaN when the history holds no numeric samples
+    public double getMinY() {
+        return min(blockMinY, stagingMinY);
+    }
+
+    public double getMaxY() {
+        return max(blockMaxY, stagingMaxY);
+    }
+
+    // Widens range[0] and range[1] by the Y range of the blocks that overlap [minX, maxX]
+    void rangeY(double minX, double maxX, double[] range) {
+        for (Iterator<CompressedBlock> it = blocks.descendingIterator(); it.hasNext(); ) {
+            CompressedBlock block = it.next();
+            if (block.lastX < minX)
+                break;
+            if (block.firstX > maxX)
+                continue;
+            range[0] = min(range[0], block.minY);
+            range[1] = max(range[1], block.maxY);
+        }
+        for (int i = 0; i < stagingSize; i++) {
+            if (stagingX[i] >= minX && stagingX[i] <= maxX) {
+                range[0] = min(range[0], stagingY[i]);
+                range[1] = max(range[1], stagingY[i]);
+            }
+        }
+    }
+
+    // Streams the samples that fall into [minX, maxX] into the decimator, oldest first.
+    // Blocks inside a single pixel column contribute their first, extreme and last samples, which is all
+    // M4 keeps of a column anyway; everything else is decoded. Whole blocks are fed so the line stays connected.
+    void feed(Decimator decimator, double minX, double maxX, int width) {
+        double columnScale = maxX > minX ? Math.max(width, 1) / (maxX - minX) : 0;
+        boolean summarize = decimator.getMode() == Decimator.Mode.M4;
+
+        // Skip to the first block that reaches into the view, searching from the newest end
+        int skip = blocks.size();
+        for (Iterator<CompressedBlock> it = blocks.descendingIterator(); it.hasNext(); ) {
+            if (it.next().lastX < minX)
+                break;
+            skip--;
+        }
+
+        for (CompressedBlock block : blocks) {
+            if (skip-- > 0)
+                continue;
+            if (block.firstX > maxX)
+                return;
+
+            if (summarize && Math.floor((block.firstX - minX) * columnScale) == Math.floor((block.lastX - minX) * columnScale)) {
+                decimator.add(block.firstX, block.firstY);
+                if (block.minFirst) {
+                    decimator.add(block.minX, block.minY);
+                    decimator.add(block.maxX, block.maxY);
+                } else {
+                    decimator.add(block.maxX, block.maxY);
+                    decimator.add(block.minX, block.minY);
+                }
+                decimator.add(block.lastX, block.lastY);
+            } else {
+                block.decode(decodedX, decodedY);
+                for (int i = 0; i < block.count; i++)
+                    decimator.add(decodedX[i], decodedY[i]);
+            }
+        }
+
+        for (int i = 0; i < stagingSize; i++)
+            decimator.add(stagingX[i], stagingY[i]);
+    }
+
+    private static double min(double a, double b) {
+        return a != a ? b : b != b ? a : Math.min(a, b);
+    }
+
+    private static double max(double a, double b) {
+        return a != a ? b : b != b ? a : Math.max(a, b);
+    }
+}
@@ -0,0 +1,120 @@
+package plotting;
+
+import spectrum.SpectrumAnalyzer;
+
+import javax.swing.*;
+import java.awt.*;
+
+// Frequency-domain view of the analyzer's latest spectra. Painting only reads the published buffer;
+// all transforms happen on the analyzer's own thread.
+public class SpectrumPanel extends JPanel {
+    private static final Font PLOT_FONT = new Font("Arial", Font.PLAIN, 12);
+    private static final double DYNAMIC_RANGE_DB = 120;
+
+    private final PlotGrid grid = new PlotGrid(5, 5, Color.lightGray, Color.black);
+    private final int[] plotMargins = {50, 20, 20, 50};
+    private SpectrumAnalyzer analyzer;
+
+    // Per-column peak of every channel, reused between frames
+    private int[] xPoints = new int[0];
+    private int[] yPoints = new int[0];
+    private double[] columnPeaks = new double[0];
+
+    public SpectrumPanel() {
+        setBackground(Color.white);
+        setFont(PLOT_FONT);
+    }
+
+    public void setAnalyzer(SpectrumAnalyzer analyzer) {
+        this.analyzer = analyzer;
+        repaint();
+    }
+
+    public boolean isLogFrequency() {
+        return grid.isLogX();
+    }
+
+    public void setLogFrequency(boolean logFrequency) {
+        grid.setLogX(logFrequency);
+        repaint();
+    }
+
+    @Override
+    public void paintComponent(Graphics g1) {
+        super.paintComponent(g1);
+        Graphics2D g = (Graphics2D) g1;
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int plotWidth = getWidth() - plotMargins[1] - plotMargins[3];
+        int plotHeight = getHeight() - plotMargins[0] - plotMargins[2];
+        if (analyzer == null || plotWidth <= 0 || plotHeight <= 0)
+            return;
+
+        SpectrumAnalyzer.Spectrum spectrum = analyzer.getLatest();
+        int bins = spectrum.getBins();
+        double minBinWidth = Double.POSITIVE_INFINITY;
+        double maxFrequency = 0;
+        double peak = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < spectrum.getChannelCount(); c++) {
+            double binWidth = spectrum.getBinWidth(c);
+            if (binWidth == 0) continue;
+            minBinWidth = Math.min(minBinWidth, binWidth);
+            maxFrequency = Math.max(maxFrequency, binWidth * (bins - 1));
+            double[] magnitudes = spectrum.getMagnitudes(c);
+            for (int k = 1; k < bins; k++)
+                peak = Math.max(peak, magnitudes[k]);
+        }
+        if (maxFrequency == 0) {
+            g.drawString("Waiting for samples...", plotMargins[0], plotMargins[2] + 15);
+            return;
+        }
+
+        boolean logFrequency = grid.isLogX();
+        double minX = logFrequency ? Math.log10(minBinWidth) : 0;
+        double maxX = logFrequency ? Math.log10(maxFrequency) : maxFrequency;
+        // Whole 10 dB steps keep the axis from twitching with every update
+        double maxY = Math.ceil(peak / 10) * 10 + 10;
+        double minY = maxY - DYNAMIC_RANGE_DB;
+
+        grid.updateTicks(minX, maxX, minY, maxY);
+        grid.paint(g, plotMargins[0], plotMargins[2], plotWidth, plotHeight);
+
+        if (xPoints.length < plotWidth + 1) {
+            xPoints = new int[plotWidth + 1];
+            yPoints = new int[plotWidth + 1];
+            columnPeaks = new double[plotWidth + 1];
+        }
+
+        Shape clip = g.getClip();
+        g.clipRect(plotMargins[0], plotMargins[2], plotWidth + 1, plotHeight + 1);
+        for (int c = 0; c < spectrum.getChannelCount(); c++) {
+            double binWidth = spectrum.getBinWidth(c);
+            if (binWidth == 0) continue;
+            double[] magnitudes = spectrum.getMagnitudes(c);
+
+            // Several bins per pixel column collapse to their peak so narrow lines stay visible
+            int points = 0;
+            int column = -1;
+            for (int k = logFrequency ? 1 : 0; k < bins; k++) {
+                double frequency = k * binWidth;
+                double x = logFrequency ? Math.log10(frequency) : frequency;
+                int binColumn = (int) ((x - minX) * plotWidth / (maxX - minX));
+                if (binColumn < 0 || binColumn > plotWidth) continue;
+                if (binColumn != column) {
+                    column = binColumn;
+                    xPoints[points] = plotMargins[0] + column;
+                    columnPeaks[points] = magnitudes[k];
+                    points++;
+                } else if (magnitudes[k] > columnPeaks[points - 1]) {
+                    columnPeaks[points - 1] = magnitudes[k];
+                }
+            }
+            for (int i = 0; i < points; i++)
+                yPoints[i] = plotMargins[2] + (int) ((maxY - columnPeaks[i]) * plotHeight / (maxY - minY));
+
+            g.setColor(PlotLine.colorFor(c));
+            g.drawPolyline(xPoints, yPoints, points);
+        }
+        g.setClip(clip);
+    }
+}
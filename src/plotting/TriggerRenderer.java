@@ -0,0 +1,129 @@
+package plotting;
+
+import trigger.TriggerEngine;
+import trigger.TriggerFrame;
+
+import java.awt.*;
+
+// Draws the latest completed trigger frame. X is the sample offset from the trigger sample, so the trigger
+// sits on the Y axis; the trigger level is marked on the trigger channel with a dashed line.
+public class TriggerRenderer {
+    private static final Stroke LEVEL_STROKE = new BasicStroke(1.0f, BasicStroke.CAP_BUTT, BasicStroke.JOIN_MITER,
+            10.0f, new float[]{4.0f, 4.0f}, 0.0f);
+
+    private final TriggerEngine engine;
+    private final Stroke stroke = new BasicStroke(1.0f);
+    private final Decimator decimator = new Decimator();
+    private TriggerFrame frame;
+    private long rangeSequence = -1;
+    private double minX, maxX, minY, maxY;
+    private int[] xPoints = new int[256];
+    private int[] yPoints = new int[256];
+
+    public TriggerRenderer(TriggerEngine engine) {
+        this.engine = engine;
+    }
+
+    public TriggerEngine getEngine() {
+        return engine;
+    }
+
+    // Picks up the newest completed frame; false until the first one exists
+    public boolean update() {
+        frame = engine.getLatest();
+        if (frame == null)
+            return false;
+        if (frame.getSequence() == rangeSequence)
+            return true;
+
+        rangeSequence = frame.getSequence();
+        minX = -frame.getTriggerRow();
+        maxX = Math.max(frame.getRows() - 1 - frame.getTriggerRow(), minX + 1);
+        minY = Double.POSITIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+        for (int c = 0; c < frame.getChannelCount(); c++) {
+            double[] values = frame.getValues(c);
+            for (int row = 0; row < frame.getRows(); row++) {
+                double value = values[row];
+                if (value < minY) minY = value;
+                if (value > maxY) maxY = value;
+            }
+        }
+        double level = engine.getSettings().level();
+        if (level < minY) minY = level;
+        if (level > maxY) maxY = level;
+        if (minY > maxY) {
+            minY = -1;
+            maxY = 1;
+        } else if (minY == maxY) {
+            minY -= 0.5;
+            maxY += 0.5;
+        }
+        return true;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public void paint(Graphics2D g, int xPos, int yPos, int width, int height) {
+        TriggerEngine.Settings settings = engine.getSettings();
+        if (settings.channel() < frame.getChannelCount()) {
+            int levelY = (int) mapValue(settings.level(), minY, maxY, yPos + height, yPos);
+            g.setColor(PlotLine.colorFor(settings.channel()));
+            g.setStroke(LEVEL_STROKE);
+            g.drawLine(xPos, levelY, xPos + width, levelY);
+        }
+
+        g.setStroke(stroke);
+        int offset = frame.getTriggerRow();
+        for (int c = 0; c < frame.getChannelCount(); c++) {
+            double[] values = frame.getValues(c);
+            decimator.begin(minX, maxX, width);
+            for (int row = 0; row < frame.getRows(); row++)
+                decimator.add(row - offset, values[row]);
+            decimator.finish();
+
+            g.setColor(PlotLine.colorFor(c));
+            drawRuns(g, xPos, yPos, width, height);
+        }
+    }
+
+    // Draws the decimated points, breaking the line at NaN gap markers
+    private void drawRuns(Graphics2D g, int xPos, int yPos, int width, int height) {
+        double[] xs = decimator.getX();
+        double[] ys = decimator.getY();
+        int pointCount = decimator.size();
+        if (pointCount > xPoints.length) {
+            xPoints = new int[Integer.highestOneBit(pointCount) << 1];
+            yPoints = new int[xPoints.length];
+        }
+        int runLength = 0;
+        for (int i = 0; i <= pointCount; i++) {
+            if (i == pointCount || ys[i] != ys[i]) {
+                g.drawPolyline(xPoints, yPoints, runLength);
+                runLength = 0;
+                continue;
+            }
+            xPoints[runLength] = (int) mapValue(xs[i], minX, maxX, xPos, xPos + width);
+            yPoints[runLength] = (int) mapValue(ys[i], minY, maxY, yPos + height, yPos);
+            runLength++;
+        }
+    }
+
+    private double mapValue(double in, double inMin, double inMax, double outMin, double outMax) {
+        return (in - inMin) * (outMax - outMin) / (inMax - inMin) + outMin;
+    }
+}
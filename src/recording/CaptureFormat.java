@@ -0,0 +1,39 @@
+package recording;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// On-disk layout of capture files, all values little-endian.
+// A fixed-size header is followed by segments of SEGMENT_ROWS rows. Inside a segment the data is
+// columnar: SEGMENT_ROWS X values, then SEGMENT_ROWS values of channel 0, and so on.
+// The last segment is preallocated in full; the header row count tells how much of it is valid.
+class CaptureFormat {
+    static final long MAGIC = 0x504143544F4C5053L; // "SPLOTCAP"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4096;
+    static final int OFFSET_MAGIC = 0;
+    static final int OFFSET_VERSION = 8;
+    static final int OFFSET_CHANNEL_COUNT = 12;
+    static final int OFFSET_X_KIND = 16;
+    static final int OFFSET_SEGMENT_ROWS = 20;
+    static final int OFFSET_ROW_COUNT = 24;
+    static final int OFFSET_CREATED_MILLIS = 32;
+
+    static final int SEGMENT_ROWS = 1 << 16;
+
+    private CaptureFormat() {
+    }
+
+    static long segmentBytes(int channelCount, int segmentRows) {
+        return (long) (channelCount + 1) * segmentRows * Double.BYTES;
+    }
+
+    static long segmentOffset(int channelCount, int segmentRows, long segment) {
+        return HEADER_SIZE + segment * segmentBytes(channelCount, segmentRows);
+    }
+
+    static ByteBuffer newHeader() {
+        return ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,282 @@
+package recording;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Random access to a capture file written by CaptureWriter.
+// Opening only reads the header and segments are memory-mapped when a query touches them, so even multi-gigabyte
+// files open instantly. Segments the MinMaxIndex does not cover yet are summarized on an indexing thread; until
+// then envelope() answers them from a bounded number of raw samples.
+public class CaptureReader implements AutoCloseable {
+    private final Path path;
+    private final FileChannel channel;
+    private final int channelCount;
+    private final int segmentRows;
+    private final long rowCount;
+    private final XKind xKind;
+    private final MinMaxIndex index;
+    private final SegmentPyramid pyramid;
+
+    // Only a few raw samples per envelope are read from a segment that is not indexed yet
+    private static final int PREVIEW_SAMPLES = 16;
+
+    // Mapped by whichever thread touches a segment first
+    private final AtomicReferenceArray<MappedByteBuffer> segments;
+    // 1 once the index covers the segment; set by the indexing thread, read by queries
+    private final AtomicIntegerArray segmentIndexed;
+    private volatile boolean closed;
+    private Thread indexer;
+
+    public CaptureReader(Path path) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        ByteBuffer header = CaptureFormat.newHeader();
+        channel.read(header, 0);
+        if (header.getLong(CaptureFormat.OFFSET_MAGIC) != CaptureFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not a capture file");
+        }
+        if (header.getInt(CaptureFormat.OFFSET_VERSION) != CaptureFormat.VERSION
+                || header.getInt(CaptureFormat.OFFSET_SEGMENT_ROWS) != CaptureFormat.SEGMENT_ROWS) {
+            channel.close();
+            throw new IOException("Unsupported capture file version");
+        }
+
+        channelCount = header.getInt(CaptureFormat.OFFSET_CHANNEL_COUNT);
+        segmentRows = header.getInt(CaptureFormat.OFFSET_SEGMENT_ROWS);
+        rowCount = header.getLong(CaptureFormat.OFFSET_ROW_COUNT);
+        XKind[] kinds = XKind.values();
+        int kind = header.getInt(CaptureFormat.OFFSET_X_KIND);
+        xKind = kind >= 0 && kind < kinds.length ? kinds[kind] : XKind.SAMPLE_INDEX;
+
+        int segmentCount = (int) ((rowCount + segmentRows - 1) / segmentRows);
+        segments = new AtomicReferenceArray<>(segmentCount);
+        segmentIndexed = new AtomicIntegerArray(segmentCount);
+        index = new MinMaxIndex(MinMaxIndex.pathFor(path), channelCount, false);
+        pyramid = new SegmentPyramid(segmentCount, channelCount);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public XKind getXKind() {
+        return xKind;
+    }
+
+    public double getX(long row) {
+        return segment(row / segmentRows).getDouble((int) (row % segmentRows) * Double.BYTES);
+    }
+
+    public double getValue(int channelIndex, long row) {
+        int offset = ((channelIndex + 1) * segmentRows + (int) (row % segmentRows)) * Double.BYTES;
+        return segment(row / segmentRows).getDouble(offset);
+    }
+
+    // Index of the first row whose X is not less than x, X values are expected to be non-decreasing
+    public long findRow(double x) {
+        long low = 0;
+        long high = rowCount;
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            if (getX(middle) < x)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    // Summarizes the segments the index does not cover on a thread of its own; onProgress is called on that thread
+    // each time another segment can be answered from the index, so views drawn from previews can be redrawn
+    public synchronized void startIndexing(Runnable onProgress) {
+        if (indexer != null || closed)
+            return;
+        indexer = new Thread(() -> {
+            try {
+                for (long segment = 0; segment < segments.length() && !closed; segment++) {
+                    if (ensureIndexed(segment))
+                        onProgress.run();
+                }
+            } catch (IOException | UncheckedIOException e) {
+                // Left to the previews; a file that cannot be read fails the queries as well
+            }
+        }, "capture-index");
+        indexer.setDaemon(true);
+        indexer.start();
+    }
+
+    // Writes the minimum and maximum of a channel over rows [fromRow, toRow) into minMax[0] and minMax[1].
+    // Whole segments and runs of them are taken from the SegmentPyramid, whole tiles from the coarsest index level
+    // that fits, and only the ragged edges read raw samples, so the cost grows with the log of the row count.
+    // Rows of a segment that is not indexed yet are sampled evenly, so the result may miss short peaks there.
+    public void envelope(int channelIndex, long fromRow, long toRow, double[] minMax) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        try {
+            long row = Math.max(fromRow, 0);
+            long end = Math.min(toRow, rowCount);
+            while (row < end) {
+                long segment = row / segmentRows;
+                int segmentRow = (int) (row % segmentRows);
+
+                if (segmentIndexed.get((int) segment) == 0) {
+                    long segmentEnd = Math.min(end, (segment + 1) * segmentRows);
+                    long stride = Math.max(1, (segmentEnd - row) / PREVIEW_SAMPLES);
+                    for (; row < segmentEnd; row += stride) {
+                        double value = getValue(channelIndex, row);
+                        if (value < min) min = value;
+                        if (value > max) max = value;
+                    }
+                    row = segmentEnd;
+                } else if (segmentRow == 0 && Math.min(rowCount, row + segmentRows) <= end) {
+                    // Climbs while the next level's node starts here, ends inside the range and is complete
+                    int level = 0;
+                    while (level + 1 < pyramid.levels()) {
+                        long span = SegmentPyramid.span(level + 1);
+                        if (segment % span != 0 || Math.min(rowCount, (segment + span) * segmentRows) > end
+                                || !pyramid.isComplete(level + 1, segment / span))
+                            break;
+                        level++;
+                    }
+                    long span = SegmentPyramid.span(level);
+                    min = Math.min(min, pyramid.min(level, segment / span, channelIndex));
+                    max = Math.max(max, pyramid.max(level, segment / span, channelIndex));
+                    row = Math.min(rowCount, (segment + span) * segmentRows);
+                } else if (segmentRow % MinMaxIndex.LEVEL2_ROWS == 0 && row + MinMaxIndex.LEVEL2_ROWS <= end) {
+                    int tile = segmentRow / MinMaxIndex.LEVEL2_ROWS;
+                    min = Math.min(min, index.getLevel2Min(segment, channelIndex, tile));
+                    max = Math.max(max, index.getLevel2Max(segment, channelIndex, tile));
+                    row += MinMaxIndex.LEVEL2_ROWS;
+                } else if (segmentRow % MinMaxIndex.LEVEL1_ROWS == 0 && row + MinMaxIndex.LEVEL1_ROWS <= end) {
+                    int tile = segmentRow / MinMaxIndex.LEVEL1_ROWS;
+                    min = Math.min(min, index.getLevel1Min(segment, channelIndex, tile));
+                    max = Math.max(max, index.getLevel1Max(segment, channelIndex, tile));
+                    row += MinMaxIndex.LEVEL1_ROWS;
+                } else {
+                    double value = getValue(channelIndex, row);
+                    if (value < min) min = value;
+                    if (value > max) max = value;
+                    row++;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        minMax[0] = min;
+        minMax[1] = max;
+    }
+
+    // The indexing thread stops at the next channel it summarizes, so the wait here stays short
+    @Override
+    public void close() throws IOException {
+        Thread running;
+        synchronized (this) {
+            closed = true;
+            running = indexer;
+        }
+        if (running != null) {
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        index.close();
+        channel.close();
+    }
+
+    private MappedByteBuffer segment(long segmentIndex) {
+        MappedByteBuffer segment = segments.get((int) segmentIndex);
+        if (segment == null) {
+            try {
+                long offset = CaptureFormat.segmentOffset(channelCount, segmentRows, segmentIndex);
+                long size = Math.min(CaptureFormat.segmentBytes(channelCount, segmentRows), channel.size() - offset);
+                segment = channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+                segment.order(ByteOrder.LITTLE_ENDIAN);
+                if (!segments.compareAndSet((int) segmentIndex, null, segment))
+                    segment = segments.get((int) segmentIndex);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return segment;
+    }
+
+    // False if the reader was closed before the segment was summarized
+    private boolean ensureIndexed(long segment) throws IOException {
+        long rows = Math.min(segmentRows, rowCount - segment * segmentRows);
+        if (index.getIndexedRows(segment) < rows && !buildIndex(segment, (int) rows))
+            return false;
+
+        // The pyramid starts from the level 2 tiles; tiles past the last row were never written
+        double[] mins = new double[channelCount];
+        double[] maxs = new double[channelCount];
+        int tiles = (int) ((rows + MinMaxIndex.LEVEL2_ROWS - 1) / MinMaxIndex.LEVEL2_ROWS);
+        for (int c = 0; c < channelCount; c++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int tile = 0; tile < tiles; tile++) {
+                min = Math.min(min, index.getLevel2Min(segment, c, tile));
+                max = Math.max(max, index.getLevel2Max(segment, c, tile));
+            }
+            mins[c] = min;
+            maxs[c] = max;
+        }
+        pyramid.add(segment, mins, maxs);
+        segmentIndexed.set((int) segment, 1);
+        return true;
+    }
+
+    // Summarizes a segment that was recorded before the index existed or whose index was cut short;
+    // false if the reader was closed before it finished
+    private boolean buildIndex(long segment, int rows) throws IOException {
+        long firstRow = segment * segmentRows;
+        for (int c = 0; c < channelCount; c++) {
+            if (closed)
+                return false;
+            double level2Min = Double.POSITIVE_INFINITY;
+            double level2Max = Double.NEGATIVE_INFINITY;
+            for (int tile = 0; tile * MinMaxIndex.LEVEL1_ROWS < rows; tile++) {
+                double min = Double.POSITIVE_INFINITY;
+                double max = Double.NEGATIVE_INFINITY;
+                int tileEnd = Math.min(rows, (tile + 1) * MinMaxIndex.LEVEL1_ROWS);
+                for (int row = tile * MinMaxIndex.LEVEL1_ROWS; row < tileEnd; row++) {
+                    double value = getValue(c, firstRow + row);
+                    if (value < min) min = value;
+                    if (value > max) max = value;
+                }
+                index.putLevel1(segment, c, tile, min, max);
+
+                level2Min = Math.min(level2Min, min);
+                level2Max = Math.max(level2Max, max);
+                if (tileEnd % MinMaxIndex.LEVEL2_ROWS == 0 || tileEnd == rows) {
+                    index.putLevel2(segment, c, (tileEnd - 1) / MinMaxIndex.LEVEL2_ROWS, level2Min, level2Max);
+                    level2Min = Double.POSITIVE_INFINITY;
+                    level2Max = Double.NEGATIVE_INFINITY;
+                }
+            }
+        }
+        index.setIndexedRows(segment, rows);
+        return true;
+    }
+}
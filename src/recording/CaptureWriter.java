@@ -0,0 +1,272 @@
+package recording;
+
+import ingest.SampleQueue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Streams sample rows into an append-only capture file (see CaptureFormat).
+// offer() may be called from one producer thread and only copies the row into a lock-free queue;
+// a dedicated writer thread moves rows into memory-mapped segments and flushes them in batches.
+// The channel count is fixed by the first row and shorter rows are padded with NaN. Segments have a fixed number of
+// columns, so a wider row ends the file and the recording continues in "name-part2.ext", "name-part3.ext", ...
+// The MinMaxIndex next to the file is kept up to date while recording.
+public class CaptureWriter implements AutoCloseable {
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Path firstPath;
+    private final XKind xKind;
+    private final long createdMillis = System.currentTimeMillis();
+    // Replaced by the writer thread when a wider row starts a new part
+    private volatile Path path;
+    private FileChannel channel;
+    private int part = 1;
+    private final SampleQueue queue = new SampleQueue(1 << 20);
+    private final Thread writerThread;
+    private volatile boolean running = true;
+    private volatile IOException failure;
+
+    // Writer thread state
+    private int channelCount = -1;
+    private MappedByteBuffer segment;
+    private long segmentIndex = -1;
+    private int segmentRow;
+    // Rows in the current part, and in all parts together
+    private long partRows;
+    private volatile long rowCount;
+    private long lastFlush;
+
+    private MinMaxIndex index;
+    private double[] level1Min, level1Max, level2Min, level2Max;
+
+    public CaptureWriter(Path path, XKind xKind) throws IOException {
+        this.firstPath = path;
+        this.path = path;
+        this.xKind = xKind;
+        this.channel = open(path);
+
+        writerThread = new Thread(this::writeLoop, "capture-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public boolean offer(double x, double[] values, int count) {
+        return running && queue.offer(x, values, count);
+    }
+
+    private static FileChannel open(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // "name.ext" for the first part, "name-partN.ext" for the later ones
+    static Path partPath(Path path, int part) {
+        if (part == 1)
+            return path;
+        String name = path.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String numbered = dot > 0
+                ? String.format("%s-part%d%s", name.substring(0, dot), part, name.substring(dot))
+                : String.format("%s-part%d", name, part);
+        return path.resolveSibling(numbered);
+    }
+
+    // The part currently written to
+    public Path getPath() {
+        return path;
+    }
+
+    // Rows written to all parts
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public long getDroppedRows() {
+        return queue.droppedLines();
+    }
+
+    // Set when the writer thread stopped because of an I/O error
+    public IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        if (index != null)
+            index.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    private void writeLoop() {
+        try {
+            lastFlush = System.nanoTime();
+            while (running || !queue.isEmpty()) {
+                if (queue.drain(this::writeRow) == 0)
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+
+                if (System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS)
+                    flush();
+            }
+            flush();
+        } catch (IOException e) {
+            failure = e;
+            running = false;
+        } catch (UncheckedIOException e) {
+            failure = e.getCause();
+            running = false;
+        }
+    }
+
+    private void writeRow(double x, double[] values, int count) {
+        if (channelCount < 0)
+            start(count);
+        else if (count > channelCount)
+            startNextPart(count);
+        if (segment == null || segmentRow == CaptureFormat.SEGMENT_ROWS)
+            mapNextSegment();
+
+        int rows = CaptureFormat.SEGMENT_ROWS;
+        segment.putDouble(segmentRow * Double.BYTES, x);
+        for (int i = 0; i < channelCount; i++) {
+            double value = i < count ? values[i] : Double.NaN;
+            int offset = ((i + 1) * rows + segmentRow) * Double.BYTES;
+            segment.putDouble(offset, value);
+
+            if (value < level1Min[i]) level1Min[i] = value;
+            if (value > level1Max[i]) level1Max[i] = value;
+        }
+        segmentRow++;
+        partRows++;
+        rowCount++;
+
+        try {
+            if (segmentRow % MinMaxIndex.LEVEL1_ROWS == 0)
+                writeTiles(true);
+            if (segmentRow == CaptureFormat.SEGMENT_ROWS)
+                index.setIndexedRows(segmentIndex, segmentRow);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void start(int channels) {
+        channelCount = channels;
+        level1Min = new double[channels];
+        level1Max = new double[channels];
+        level2Min = new double[channels];
+        level2Max = new double[channels];
+        resetTiles(level1Min, level1Max);
+        resetTiles(level2Min, level2Max);
+        try {
+            index = new MinMaxIndex(MinMaxIndex.pathFor(path), channels, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Finishes the current file and its index and continues in the next part with the wider channel count
+    private void startNextPart(int channels) {
+        try {
+            flush();
+            Path next = partPath(firstPath, part + 1);
+            FileChannel nextChannel = open(next);
+            channel.close();
+            index.close();
+            channel = nextChannel;
+            path = next;
+            part++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segment = null;
+        segmentIndex = -1;
+        segmentRow = 0;
+        partRows = 0;
+        start(channels);
+    }
+
+    // Stores the tiles containing the last written row; incomplete tiles are rewritten once they fill up
+    private void writeTiles(boolean complete) throws IOException {
+        int lastRow = segmentRow - 1;
+        int level1Tile = lastRow / MinMaxIndex.LEVEL1_ROWS;
+        int level2Tile = lastRow / MinMaxIndex.LEVEL2_ROWS;
+        boolean level2Complete = complete && segmentRow % MinMaxIndex.LEVEL2_ROWS == 0;
+
+        for (int i = 0; i < channelCount; i++) {
+            index.putLevel1(segmentIndex, i, level1Tile, level1Min[i], level1Max[i]);
+            double min = Math.min(level2Min[i], level1Min[i]);
+            double max = Math.max(level2Max[i], level1Max[i]);
+            index.putLevel2(segmentIndex, i, level2Tile, min, max);
+            if (complete) {
+                level2Min[i] = level2Complete ? Double.POSITIVE_INFINITY : min;
+                level2Max[i] = level2Complete ? Double.NEGATIVE_INFINITY : max;
+            }
+        }
+        if (complete)
+            resetTiles(level1Min, level1Max);
+    }
+
+    private static void resetTiles(double[] min, double[] max) {
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+    }
+
+    private void mapNextSegment() {
+        try {
+            if (segment != null)
+                segment.force();
+            segmentIndex++;
+            long offset = CaptureFormat.segmentOffset(channelCount, CaptureFormat.SEGMENT_ROWS, segmentIndex);
+            long size = CaptureFormat.segmentBytes(channelCount, CaptureFormat.SEGMENT_ROWS);
+            // Mapping past the end grows the file by a whole segment at once
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, offset, size);
+            segment.order(ByteOrder.LITTLE_ENDIAN);
+            segmentRow = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush() throws IOException {
+        lastFlush = System.nanoTime();
+        if (channelCount < 0)
+            return;
+
+        if (segment != null) {
+            if (segmentRow % MinMaxIndex.LEVEL1_ROWS != 0)
+                writeTiles(false);
+            index.setIndexedRows(segmentIndex, segmentRow);
+            segment.force();
+            index.force();
+        }
+
+        ByteBuffer header = CaptureFormat.newHeader();
+        header.putLong(CaptureFormat.OFFSET_MAGIC, CaptureFormat.MAGIC);
+        header.putInt(CaptureFormat.OFFSET_VERSION, CaptureFormat.VERSION);
+        header.putInt(CaptureFormat.OFFSET_CHANNEL_COUNT, channelCount);
+        header.putInt(CaptureFormat.OFFSET_X_KIND, xKind.ordinal());
+        header.putInt(CaptureFormat.OFFSET_SEGMENT_ROWS, CaptureFormat.SEGMENT_ROWS);
+        header.putLong(CaptureFormat.OFFSET_ROW_COUNT, partRows);
+        header.putLong(CaptureFormat.OFFSET_CREATED_MILLIS, createdMillis);
+        channel.write(header, 0);
+    }
+}
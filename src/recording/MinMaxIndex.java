@@ -0,0 +1,192 @@
+package recording;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Memory-mapped min/max summary tiles of a capture file, stored next to it as "<capture>.idx".
+// There is one block per capture segment, laid out as:
+//   long indexedRows
+//   per channel: LEVEL1_TILES (min, max) pairs, each summarizing LEVEL1_ROWS rows
+//   per channel: LEVEL2_TILES (min, max) pairs, each summarizing LEVEL2_ROWS rows
+// Rows past indexedRows are not covered yet and have to be summarized before the tiles are used.
+// Whole segments and runs of them are summarized in memory by the reader's SegmentPyramid.
+// A reader opens an existing index read-only and only asks for write access once something has to be summarized;
+// where the index cannot be written (read-only media, no permission) the new tiles are kept in memory instead.
+public class MinMaxIndex implements AutoCloseable {
+    public static final int LEVEL1_ROWS = 64;
+    public static final int LEVEL2_ROWS = LEVEL1_ROWS * 64;
+    static final int LEVEL1_TILES = CaptureFormat.SEGMENT_ROWS / LEVEL1_ROWS;
+    static final int LEVEL2_TILES = CaptureFormat.SEGMENT_ROWS / LEVEL2_ROWS;
+
+    private static final long MAGIC = 0x584449544F4C5053L; // "SPLOTIDX"
+    private static final int HEADER_SIZE = 4096;
+
+    private final Path path;
+    private final int channelCount;
+    private final long blockBytes;
+    // Null while there is no valid index file to read from
+    private FileChannel channel;
+    private boolean writable;
+    // Set once write access was refused, the file is not asked again
+    private boolean memoryOnly;
+    private ByteBuffer[] blocks = new ByteBuffer[16];
+
+    // A writer truncates and needs write access; a reader opens whatever valid index is there
+    public MinMaxIndex(Path path, int channelCount, boolean truncate) throws IOException {
+        this.path = path;
+        this.channelCount = channelCount;
+        this.blockBytes = Long.BYTES + (long) channelCount * (LEVEL1_TILES + LEVEL2_TILES) * 2 * Double.BYTES;
+        if (truncate) {
+            create();
+            return;
+        }
+
+        try {
+            if (Files.exists(path)) {
+                FileChannel existing = FileChannel.open(path, StandardOpenOption.READ);
+                try {
+                    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                    existing.read(header, 0);
+                    if (header.getLong(0) == MAGIC && header.getInt(8) == channelCount
+                            && header.getInt(12) == CaptureFormat.SEGMENT_ROWS)
+                        channel = existing;
+                } finally {
+                    if (channel == null)
+                        existing.close();
+                }
+            }
+        } catch (IOException e) {
+            // An unreadable index is rebuilt like a stale one
+        }
+    }
+
+    public static Path pathFor(Path capture) {
+        return capture.resolveSibling(capture.getFileName() + ".idx");
+    }
+
+    public long getIndexedRows(long segment) throws IOException {
+        return block(segment).getLong(0);
+    }
+
+    public void setIndexedRows(long segment, long rows) throws IOException {
+        writableBlock(segment).putLong(0, rows);
+    }
+
+    public void putLevel1(long segment, int channelIndex, int tile, double min, double max) throws IOException {
+        putTile(writableBlock(segment), level1Offset(channelIndex, tile), min, max);
+    }
+
+    public void putLevel2(long segment, int channelIndex, int tile, double min, double max) throws IOException {
+        putTile(writableBlock(segment), level2Offset(channelIndex, tile), min, max);
+    }
+
+    public double getLevel1Min(long segment, int channelIndex, int tile) throws IOException {
+        return block(segment).getDouble(level1Offset(channelIndex, tile));
+    }
+
+    public double getLevel1Max(long segment, int channelIndex, int tile) throws IOException {
+        return block(segment).getDouble(level1Offset(channelIndex, tile) + Double.BYTES);
+    }
+
+    public double getLevel2Min(long segment, int channelIndex, int tile) throws IOException {
+        return block(segment).getDouble(level2Offset(channelIndex, tile));
+    }
+
+    public double getLevel2Max(long segment, int channelIndex, int tile) throws IOException {
+        return block(segment).getDouble(level2Offset(channelIndex, tile) + Double.BYTES);
+    }
+
+    public synchronized void force() {
+        for (ByteBuffer block : blocks) {
+            if (block instanceof MappedByteBuffer mapped && !mapped.isReadOnly())
+                mapped.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        force();
+        if (channel != null)
+            channel.close();
+    }
+
+    // The reader's indexing thread and its queries share the blocks
+    private synchronized ByteBuffer block(long segment) throws IOException {
+        if (segment >= blocks.length)
+            blocks = Arrays.copyOf(blocks, (int) Math.max(segment + 1, blocks.length * 2L));
+
+        ByteBuffer block = blocks[(int) segment];
+        if (block == null) {
+            long offset = HEADER_SIZE + segment * blockBytes;
+            if (writable) {
+                // Mapping past the end of the file grows it; new blocks read as "nothing indexed yet"
+                block = channel.map(FileChannel.MapMode.READ_WRITE, offset, blockBytes);
+            } else if (channel != null && offset + blockBytes <= channel.size()) {
+                block = channel.map(FileChannel.MapMode.READ_ONLY, offset, blockBytes);
+            } else {
+                block = ByteBuffer.allocate((int) blockBytes);
+            }
+            block.order(ByteOrder.LITTLE_ENDIAN);
+            blocks[(int) segment] = block;
+        }
+        return block;
+    }
+
+    private synchronized ByteBuffer writableBlock(long segment) throws IOException {
+        if (!writable && !memoryOnly) {
+            try {
+                create();
+            } catch (IOException e) {
+                memoryOnly = true;
+            }
+        }
+        ByteBuffer block = block(segment);
+        if (block.isReadOnly()) {
+            // Tiles read from a file that cannot be written are copied, the new ones stay in memory
+            ByteBuffer copy = ByteBuffer.allocate((int) blockBytes).order(ByteOrder.LITTLE_ENDIAN);
+            copy.put(block.duplicate().clear());
+            blocks[(int) segment] = block = copy;
+        }
+        return block;
+    }
+
+    // Opens the index for writing, keeping a valid one and rebuilding a stale or foreign one
+    private void create() throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        if (channel == null) {
+            file.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(0, MAGIC);
+            header.putInt(8, channelCount);
+            header.putInt(12, CaptureFormat.SEGMENT_ROWS);
+            file.write(header, 0);
+        } else {
+            channel.close();
+        }
+        channel = file;
+        writable = true;
+        // Blocks read so far were not written to, they are mapped again for writing
+        Arrays.fill(blocks, null);
+    }
+
+    private int level1Offset(int channelIndex, int tile) {
+        return Long.BYTES + ((channelIndex * LEVEL1_TILES + tile) * 2) * Double.BYTES;
+    }
+
+    private int level2Offset(int channelIndex, int tile) {
+        return Long.BYTES + ((channelCount * LEVEL1_TILES + channelIndex * LEVEL2_TILES + tile) * 2) * Double.BYTES;
+    }
+
+    private static void putTile(ByteBuffer block, int offset, double min, double max) {
+        block.putDouble(offset, min);
+        block.putDouble(offset + Double.BYTES, max);
+    }
+}
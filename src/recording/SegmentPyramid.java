@@ -0,0 +1,76 @@
+package recording;
+
+// Min/max summaries above the MinMaxIndex tiles: level 0 holds one (min, max) pair per segment and channel, every
+// level above it one per FANOUT nodes of the level below, so a query over any number of segments reads O(log)
+// of them. Kept in memory and filled as segments are indexed; a node is only used once every segment under it is.
+class SegmentPyramid {
+    static final int FANOUT = 16;
+
+    private final int channelCount;
+    private final int segmentCount;
+    // [level][(node * channelCount + channel) * 2] is the min, the slot after it the max
+    private final double[][] ranges;
+    // Segments below each node that were added so far
+    private final int[][] added;
+
+    SegmentPyramid(int segmentCount, int channelCount) {
+        this.channelCount = channelCount;
+        this.segmentCount = segmentCount;
+        int levels = 1;
+        for (long span = FANOUT; span < segmentCount; span *= FANOUT)
+            levels++;
+        ranges = new double[levels][];
+        added = new int[levels][];
+        long span = 1;
+        for (int level = 0; level < levels; level++, span *= FANOUT) {
+            int nodes = (int) ((segmentCount + span - 1) / span);
+            ranges[level] = new double[nodes * channelCount * 2];
+            for (int i = 0; i < ranges[level].length; i += 2) {
+                ranges[level][i] = Double.POSITIVE_INFINITY;
+                ranges[level][i + 1] = Double.NEGATIVE_INFINITY;
+            }
+            added[level] = new int[nodes];
+        }
+    }
+
+    int levels() {
+        return ranges.length;
+    }
+
+    // Segments covered by one node of the level
+    static long span(int level) {
+        long span = 1;
+        for (int i = 0; i < level; i++)
+            span *= FANOUT;
+        return span;
+    }
+
+    // mins[channel] and maxs[channel] summarize every row of the segment; called once per segment
+    synchronized void add(long segment, double[] mins, double[] maxs) {
+        long node = segment;
+        for (int level = 0; level < ranges.length; level++, node /= FANOUT) {
+            double[] range = ranges[level];
+            int offset = (int) node * channelCount * 2;
+            for (int c = 0; c < channelCount; c++) {
+                range[offset + c * 2] = Math.min(range[offset + c * 2], mins[c]);
+                range[offset + c * 2 + 1] = Math.max(range[offset + c * 2 + 1], maxs[c]);
+            }
+            added[level][(int) node]++;
+        }
+    }
+
+    // True once every segment below the node was added
+    synchronized boolean isComplete(int level, long node) {
+        long span = span(level);
+        long segments = Math.min(span, segmentCount - node * span);
+        return added[level][(int) node] == segments;
+    }
+
+    synchronized double min(int level, long node, int channel) {
+        return ranges[level][((int) node * channelCount + channel) * 2];
+    }
+
+    synchronized double max(int level, long node, int channel) {
+        return ranges[level][((int) node * channelCount + channel) * 2 + 1];
+    }
+}
@@ -0,0 +1,6 @@
+package recording;
+
+// Meaning of the X column stored in a capture file
+public enum XKind {
+    SAMPLE_INDEX, SECONDS
+}
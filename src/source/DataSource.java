@@ -0,0 +1,23 @@
+package source;
+
+import java.io.IOException;
+
+// A stream of raw bytes feeding the ingest pipeline: a serial port, a socket, a replayed file or a generator.
+// Sources deliver data on their own thread; the listener must not block for long.
+public interface DataSource {
+    interface Listener {
+        // The array is reused after the call returns
+        void onData(byte[] data, int offset, int length);
+
+        // The source stopped on its own; no more data will be delivered
+        void onError(String message);
+    }
+
+    String getName();
+
+    void open(Listener listener) throws IOException;
+
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    void close() throws IOException;
+}
@@ -0,0 +1,99 @@
+package source;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+// Builds a DataSource from the text typed into the port box or passed with --source:
+//   COM3, /dev/ttyUSB0                   serial port at the selected baud rate
+//   tcp://host:port                      TCP client
+//   udp://[bind-host]:port               UDP listener
+//   file:path[?rate=bytes/s,loop]        replay of a raw recording
+//   stdin                                replay of standard input
+//   synthetic[?channels=4,rate=1000,wave=sine,freq=1,amplitude=100,noise=0.05,burst=1,seed=1]
+public class DataSources {
+    public static final String SYNTHETIC_DEFAULT = "synthetic?channels=4,rate=1000";
+
+    private DataSources() {
+    }
+
+    public static DataSource create(String spec, int baudRate) {
+        spec = spec.trim();
+        if (spec.isEmpty())
+            throw new IllegalArgumentException("No source given");
+
+        int query = spec.indexOf('?');
+        String target = query < 0 ? spec : spec.substring(0, query);
+        Map<String, String> options = parseOptions(query < 0 ? "" : spec.substring(query + 1));
+
+        if (target.startsWith("tcp://")) {
+            HostPort address = parseHostPort(target.substring(6));
+            if (address.host == null)
+                throw new IllegalArgumentException("TCP source needs a host");
+            return new TcpSource(address.host, address.port);
+        } else if (target.startsWith("udp://")) {
+            HostPort address = parseHostPort(target.substring(6));
+            return new UdpSource(address.host, address.port);
+        } else if (target.startsWith("file:")) {
+            return new ReplaySource(Path.of(target.substring(5)),
+                    (long) number(options, "rate", 0), options.containsKey("loop"));
+        } else if (target.equals("stdin") || target.equals("-")) {
+            return new ReplaySource(null, (long) number(options, "rate", 0), false);
+        } else if (target.equals("synthetic")) {
+            String wave = options.getOrDefault("wave", "sine");
+            Waveform waveform;
+            try {
+                waveform = Waveform.valueOf(wave.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unknown waveform: %s", wave));
+            }
+            return new SyntheticSource((int) number(options, "channels", 4), number(options, "rate", 1000),
+                    waveform, number(options, "freq", 1), number(options, "amplitude", 100),
+                    number(options, "noise", 0.05), (int) number(options, "burst", 1),
+                    (long) number(options, "seed", 1));
+        } else if (target.matches("[A-Za-z][A-Za-z0-9+.-]+:.*")) {
+            // A mistyped scheme would otherwise reach jssc as a port name and fail with a confusing error
+            throw new IllegalArgumentException(String.format("Unknown source: %s", spec));
+        }
+        return new SerialPortSource(spec, baudRate);
+    }
+
+    private static Map<String, String> parseOptions(String text) {
+        Map<String, String> options = new HashMap<>();
+        for (String option : text.split("[,&]")) {
+            if (option.isBlank())
+                continue;
+            int equals = option.indexOf('=');
+            if (equals < 0)
+                options.put(option.trim(), "");
+            else
+                options.put(option.substring(0, equals).trim(), option.substring(equals + 1).trim());
+        }
+        return options;
+    }
+
+    private static double number(Map<String, String> options, String key, double defaultValue) {
+        String value = options.get(key);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid value for %s: %s", key, value));
+        }
+    }
+
+    private record HostPort(String host, int port) {
+    }
+
+    private static HostPort parseHostPort(String text) {
+        int colon = text.lastIndexOf(':');
+        String host = colon < 0 ? "" : text.substring(0, colon);
+        String port = text.substring(colon + 1);
+        try {
+            return new HostPort(host.isEmpty() ? null : host, Integer.parseInt(port));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("Invalid port in %s", text));
+        }
+    }
+}
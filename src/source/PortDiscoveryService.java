@@ -0,0 +1,98 @@
+package source;
+
+import jssc.SerialPortList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+// Enumerates serial ports on a thread of its own, so a machine with many tty devices never stalls the EDT.
+// The last list is cached for getPorts(); the listener hears about every change, including ports that were
+// unplugged or re-enumerated while open. Enumeration is slow (jssc opens every ttyS* node on Linux), so where
+// there is a /dev it only runs when the tty nodes in there change; elsewhere it runs every FALLBACK_PERIOD.
+public class PortDiscoveryService {
+    public interface Listener {
+        // Called on the discovery thread
+        void onPortsChanged(List<String> ports, List<String> added, List<String> removed);
+    }
+
+    private static final long FALLBACK_PERIOD = 5_000_000_000L;
+
+    private final Listener listener;
+    private final long periodNanos;
+    private final Thread thread;
+    private volatile boolean running = true;
+    private volatile boolean refreshRequested;
+    private volatile List<String> ports = List.of();
+
+    public PortDiscoveryService(long periodMillis, Listener listener) {
+        if (periodMillis <= 0)
+            throw new IllegalArgumentException("Discovery period must be positive");
+        this.listener = listener;
+        this.periodNanos = periodMillis * 1_000_000L;
+        thread = new Thread(this::run, "port-discovery");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Ports seen by the last poll; empty until the first one finished
+    public List<String> getPorts() {
+        return ports;
+    }
+
+    // Polls right away instead of at the end of the period; the listener is called even if nothing changed
+    public void refresh() {
+        refreshRequested = true;
+        LockSupport.unpark(thread);
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void run() {
+        boolean first = true;
+        String[] nodes = null;
+        long lastEnumeration = 0;
+        while (running) {
+            boolean forced = refreshRequested;
+            refreshRequested = false;
+            String[] currentNodes = ttyNodes();
+            boolean nodesChanged = currentNodes != null ? !Arrays.equals(currentNodes, nodes)
+                    : System.nanoTime() - lastEnumeration >= FALLBACK_PERIOD;
+            nodes = currentNodes;
+
+            if (first || forced || nodesChanged) {
+                lastEnumeration = System.nanoTime();
+                List<String> current = List.of(SerialPortList.getPortNames());
+                List<String> previous = ports;
+                if (first || forced || !current.equals(previous)) {
+                    List<String> added = new ArrayList<>(current);
+                    added.removeAll(previous);
+                    List<String> removed = new ArrayList<>(previous);
+                    removed.removeAll(current);
+                    ports = current;
+                    listener.onPortsChanged(current, added, removed);
+                }
+            }
+            first = false;
+
+            long deadline = System.nanoTime() + periodNanos;
+            long remaining;
+            while (running && !refreshRequested && (remaining = deadline - System.nanoTime()) > 0)
+                LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    // Sorted serial device nodes under /dev, a single directory read; null where there is no /dev
+    private static String[] ttyNodes() {
+        String[] names = new File("/dev").list((dir, name) -> name.startsWith("tty") || name.startsWith("cu.")
+                || name.startsWith("rfcomm"));
+        if (names != null)
+            Arrays.sort(names);
+        return names;
+    }
+}
@@ -0,0 +1,74 @@
+package source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.locks.LockSupport;
+
+// Replays a raw byte recording (or stdin) through the pipeline, optionally throttled to a fixed byte rate
+// so recorded production traffic arrives with the same pacing as it did from the device.
+public class ReplaySource extends ThreadedSource {
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Path path;
+    private final long bytesPerSecond;
+    private final boolean loop;
+    private InputStream input;
+    private long startNanos;
+    private long bytesDelivered;
+
+    // A null path reads stdin; bytesPerSecond 0 replays as fast as the pipeline accepts
+    public ReplaySource(Path path, long bytesPerSecond, boolean loop) {
+        super(CHUNK_SIZE);
+        this.path = path;
+        this.bytesPerSecond = bytesPerSecond;
+        this.loop = loop && path != null;
+    }
+
+    @Override
+    public String getName() {
+        return path == null ? "stdin" : path.toString();
+    }
+
+    @Override
+    protected void connect() throws IOException {
+        input = path == null ? System.in : Files.newInputStream(path);
+        startNanos = System.nanoTime();
+        bytesDelivered = 0;
+    }
+
+    @Override
+    protected int read(byte[] buffer) throws IOException, InterruptedException {
+        int length = buffer.length;
+        if (bytesPerSecond > 0) {
+            // Deliver what the target rate allows by now in steps of about 10 ms worth of data
+            long step = Math.clamp(bytesPerSecond / 100, 1, buffer.length);
+            long due = (long) ((System.nanoTime() - startNanos) * (bytesPerSecond / 1e9)) - bytesDelivered;
+            if (due < step) {
+                LockSupport.parkNanos((long) ((step - due) * (1e9 / bytesPerSecond)));
+                if (Thread.interrupted())
+                    throw new InterruptedException();
+                return 0;
+            }
+            length = (int) Math.min(due, buffer.length);
+        }
+
+        int read = input.read(buffer, 0, length);
+        if (read < 0 && loop) {
+            input.close();
+            input = Files.newInputStream(path);
+            return 0;
+        }
+        if (read > 0)
+            bytesDelivered += read;
+        return read;
+    }
+
+    @Override
+    protected void disconnect() throws IOException {
+        // Closing System.in would break any later stdin source
+        if (input != null && path != null)
+            input.close();
+    }
+}
@@ -0,0 +1,85 @@
+package source;
+
+import jssc.SerialPort;
+import jssc.SerialPortEvent;
+import jssc.SerialPortException;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+// Serial port read through jssc; data arrives on the jssc event thread
+public class SerialPortSource implements DataSource {
+    private final SerialPort serialPort;
+    private final int baudRate;
+
+    public SerialPortSource(String portName, int baudRate) {
+        this.serialPort = new SerialPort(portName);
+        this.baudRate = baudRate;
+    }
+
+    @Override
+    public String getName() {
+        return serialPort.getPortName();
+    }
+
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    @Override
+    public void open(Listener listener) throws IOException {
+        try {
+            serialPort.openPort();
+            serialPort.setEventsMask(SerialPort.MASK_RXCHAR + SerialPort.MASK_BREAK);
+            serialPort.addEventListener(event -> serialEvent(event, listener));
+            serialPort.setParams(baudRate, 8, 1, 0);
+        } catch (SerialPortException e) {
+            if (serialPort.isOpened()) {
+                try {
+                    serialPort.closePort();
+                } catch (SerialPortException ignored) {
+                }
+            }
+            throw new IOException(e.getExceptionType(), e);
+        }
+    }
+
+    private void serialEvent(SerialPortEvent event, Listener listener) {
+        if (!event.isRXCHAR())
+            return;
+
+        try {
+            int byteCount = serialPort.getInputBufferBytesCount();
+            if (byteCount == 0)
+                return;
+
+            byte[] data = serialPort.readBytes(byteCount);
+            listener.onData(data, 0, data.length);
+        } catch (SerialPortException e) {
+            listener.onError(e.getExceptionType());
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        try {
+            if (offset == 0 && length == data.length)
+                serialPort.writeBytes(data);
+            else
+                serialPort.writeBytes(Arrays.copyOfRange(data, offset, offset + length));
+        } catch (SerialPortException e) {
+            throw new IOException(e.getExceptionType(), e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!serialPort.isOpened())
+            return;
+        try {
+            serialPort.closePort();
+        } catch (SerialPortException e) {
+            throw new IOException(e.getExceptionType(), e);
+        }
+    }
+}
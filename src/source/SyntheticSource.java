@@ -0,0 +1,174 @@
+package source;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.locks.LockSupport;
+
+// Generates text-format sample rows ("v0,v1,...\n") at a fixed row rate, for load testing without hardware.
+// Each channel gets the waveform with its phase shifted by channel/channels of a period, plus gaussian noise.
+// Values depend only on the row index and the seed, so a run reproduces exactly regardless of chunking.
+// Rows are delivered in bursts of burstRows to mimic USB/serial drivers that hand data over in blocks.
+// Anything written to the source is looped back into the stream between rows.
+public class SyntheticSource extends ThreadedSource {
+    public static final int MAX_CHANNELS = 256;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_FIELD_BYTES = 24;
+    private static final int DECIMALS = 4;
+    private static final double SCALE = 1e4;
+
+    private final int channels;
+    private final double rowsPerSecond;
+    private final Waveform waveform;
+    private final double frequency;
+    private final double amplitude;
+    private final double noise;
+    private final int burstRows;
+    private final long seed;
+
+    private Random random;
+    private long rowIndex;
+    private long startNanos;
+
+    private final Object loopbackLock = new Object();
+    private byte[] loopback = new byte[256];
+    private int loopbackLength;
+
+    public SyntheticSource(int channels, double rowsPerSecond, Waveform waveform, double frequency,
+                           double amplitude, double noise, int burstRows, long seed) {
+        super(BUFFER_SIZE);
+        if (channels < 1 || channels > MAX_CHANNELS)
+            throw new IllegalArgumentException(String.format("Channel count must be between 1 and %d", MAX_CHANNELS));
+        if (!(rowsPerSecond > 0))
+            throw new IllegalArgumentException("Sample rate must be positive");
+        if (burstRows < 1)
+            throw new IllegalArgumentException("Burst size must be at least one row");
+        this.channels = channels;
+        this.rowsPerSecond = rowsPerSecond;
+        this.waveform = waveform;
+        this.frequency = frequency;
+        this.amplitude = amplitude;
+        this.noise = noise;
+        this.burstRows = burstRows;
+        this.seed = seed;
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public String getName() {
+        return String.format("synthetic (%d ch, %.0f S/s)", channels, rowsPerSecond);
+    }
+
+    public int getChannelCount() {
+        return channels;
+    }
+
+    // Upper bound for the bytes one row takes
+    public int maxRowBytes() {
+        return channels * MAX_FIELD_BYTES + 1;
+    }
+
+    @Override
+    protected void connect() {
+        random = new Random(seed);
+        rowIndex = 0;
+        startNanos = System.nanoTime();
+    }
+
+    @Override
+    protected int read(byte[] buffer) throws InterruptedException {
+        long due = (long) ((System.nanoTime() - startNanos) * (rowsPerSecond / 1e9)) - rowIndex;
+        if (due < burstRows) {
+            LockSupport.parkNanos((long) ((burstRows - due) * (1e9 / rowsPerSecond)));
+            if (Thread.interrupted())
+                throw new InterruptedException();
+            return 0;
+        }
+
+        int length = drainLoopback(buffer);
+        int rows = (int) Math.min(due, (buffer.length - length) / maxRowBytes());
+        return length + generate(buffer, length, rows);
+    }
+
+    // Formats the next rows into the buffer and returns the number of bytes written.
+    // The buffer must have room for rows * maxRowBytes() bytes.
+    public int generate(byte[] buffer, int offset, int rows) {
+        int position = offset;
+        for (int row = 0; row < rows; row++) {
+            double cycles = rowIndex * frequency / rowsPerSecond;
+            for (int channel = 0; channel < channels; channel++) {
+                double phase = cycles + (double) channel / channels;
+                phase -= Math.floor(phase);
+                double value = amplitude * waveform.valueAt(phase);
+                if (noise > 0 || waveform == Waveform.NOISE)
+                    value += amplitude * (waveform == Waveform.NOISE ? 1 : noise) * random.nextGaussian();
+                if (channel > 0)
+                    buffer[position++] = ',';
+                position = formatFixed(buffer, position, value);
+            }
+            buffer[position++] = '\n';
+            rowIndex++;
+        }
+        return position - offset;
+    }
+
+    // Writes the value with DECIMALS fractional digits without going through String
+    private static int formatFixed(byte[] buffer, int position, double value) {
+        if (!Double.isFinite(value) || Math.abs(value) >= 1e14) {
+            byte[] text = Double.toString(value).getBytes(StandardCharsets.US_ASCII);
+            System.arraycopy(text, 0, buffer, position, text.length);
+            return position + text.length;
+        }
+
+        long scaled = Math.round(value * SCALE);
+        if (scaled < 0) {
+            buffer[position++] = '-';
+            scaled = -scaled;
+        }
+        long integer = scaled / (long) SCALE;
+        long fraction = scaled % (long) SCALE;
+
+        int digits = 1;
+        for (long rest = integer / 10; rest > 0; rest /= 10)
+            digits++;
+        for (int i = digits - 1; i >= 0; i--) {
+            buffer[position + i] = (byte) ('0' + integer % 10);
+            integer /= 10;
+        }
+        position += digits;
+
+        buffer[position++] = '.';
+        for (int i = DECIMALS - 1; i >= 0; i--) {
+            buffer[position + i] = (byte) ('0' + fraction % 10);
+            fraction /= 10;
+        }
+        return position + DECIMALS;
+    }
+
+    private int drainLoopback(byte[] buffer) {
+        synchronized (loopbackLock) {
+            if (loopbackLength == 0)
+                return 0;
+            int length = Math.min(loopbackLength, buffer.length / 2);
+            System.arraycopy(loopback, 0, buffer, 0, length);
+            System.arraycopy(loopback, length, loopback, 0, loopbackLength - length);
+            loopbackLength -= length;
+            return length;
+        }
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        synchronized (loopbackLock) {
+            if (loopbackLength + length > loopback.length)
+                loopback = Arrays.copyOf(loopback, Math.max(loopback.length * 2, loopbackLength + length));
+            System.arraycopy(data, offset, loopback, loopbackLength, length);
+            loopbackLength += length;
+        }
+    }
+
+    @Override
+    protected void disconnect() {
+    }
+}
@@ -0,0 +1,60 @@
+package source;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+// TCP client, e.g. a network serial bridge (ser2net) or a device streaming over Wi-Fi
+public class TcpSource extends ThreadedSource {
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+
+    private final String host;
+    private final int port;
+    private Socket socket;
+    private InputStream input;
+    private OutputStream output;
+
+    public TcpSource(String host, int port) {
+        super(64 * 1024);
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("tcp://%s:%d", host, port);
+    }
+
+    @Override
+    protected void connect() throws IOException {
+        socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+            input = socket.getInputStream();
+            output = socket.getOutputStream();
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    protected int read(byte[] buffer) throws IOException {
+        return input.read(buffer);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        output.write(data, offset, length);
+        output.flush();
+    }
+
+    @Override
+    protected void disconnect() throws IOException {
+        if (socket != null)
+            socket.close();
+    }
+}
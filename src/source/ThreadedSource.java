@@ -0,0 +1,81 @@
+package source;
+
+import java.io.IOException;
+
+// Base for sources that block on their own reader thread: sockets, replayed streams and generators.
+// Subclasses fill the shared buffer in read(); close() unblocks it by releasing the underlying resource.
+public abstract class ThreadedSource implements DataSource {
+    private static final long JOIN_TIMEOUT_MILLIS = 1000;
+
+    private final byte[] buffer;
+    private volatile boolean closed;
+    private Thread thread;
+
+    protected ThreadedSource(int bufferSize) {
+        buffer = new byte[bufferSize];
+    }
+
+    // Called from open() on the caller's thread, failures are reported to the caller
+    protected abstract void connect() throws IOException;
+
+    // Returns the number of bytes placed in the buffer, or -1 at the end of the stream
+    protected abstract int read(byte[] buffer) throws IOException, InterruptedException;
+
+    // Releases the resource read() may be blocked on
+    protected abstract void disconnect() throws IOException;
+
+    @Override
+    public void open(Listener listener) throws IOException {
+        closed = false;
+        connect();
+        // Readers spend nearly all their time blocked, a virtual thread per source keeps many ports cheap
+        thread = Thread.ofVirtual().name("source-reader").start(() -> run(listener));
+    }
+
+    private void run(Listener listener) {
+        try {
+            while (!closed) {
+                int length = read(buffer);
+                if (length < 0) {
+                    if (!closed)
+                        listener.onError("End of stream");
+                    return;
+                }
+                if (length > 0)
+                    listener.onData(buffer, 0, length);
+            }
+        } catch (IOException e) {
+            if (!closed)
+                listener.onError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    protected boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        throw new IOException(String.format("%s is read-only", getName()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Thread reader = thread;
+        thread = null;
+        try {
+            disconnect();
+        } finally {
+            if (reader != null && reader != Thread.currentThread()) {
+                reader.interrupt();
+                try {
+                    reader.join(JOIN_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package source;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+
+// Listens for datagrams on a local port; every datagram payload is handed on as one chunk.
+// Writes are sent back to whoever sent the most recent datagram.
+public class UdpSource extends ThreadedSource {
+    private static final int MAX_DATAGRAM = 65507;
+
+    private final String bindHost;
+    private final int port;
+    private DatagramSocket socket;
+    private DatagramPacket packet;
+    private volatile SocketAddress peer;
+
+    public UdpSource(String bindHost, int port) {
+        super(MAX_DATAGRAM);
+        this.bindHost = bindHost;
+        this.port = port;
+    }
+
+    @Override
+    public String getName() {
+        return String.format("udp://%s:%d", bindHost == null ? "" : bindHost, port);
+    }
+
+    @Override
+    protected void connect() throws IOException {
+        socket = new DatagramSocket(bindHost == null ? new InetSocketAddress(port) : new InetSocketAddress(bindHost, port));
+        socket.setReceiveBufferSize(1 << 20);
+    }
+
+    @Override
+    protected int read(byte[] buffer) throws IOException {
+        if (packet == null)
+            packet = new DatagramPacket(buffer, buffer.length);
+        packet.setLength(buffer.length);
+        socket.receive(packet);
+        peer = packet.getSocketAddress();
+        return packet.getLength();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        SocketAddress address = peer;
+        if (address == null)
+            throw new IOException("No datagram received yet, nowhere to send to");
+        socket.send(new DatagramPacket(data, offset, length, address));
+    }
+
+    @Override
+    protected void disconnect() {
+        if (socket != null)
+            socket.close();
+    }
+}
@@ -0,0 +1,16 @@
+package source;
+
+public enum Waveform {
+    SINE, SQUARE, TRIANGLE, SAWTOOTH, NOISE;
+
+    // Value in [-1, 1] at the given phase in [0, 1)
+    public double valueAt(double phase) {
+        return switch (this) {
+            case SINE -> Math.sin(2 * Math.PI * phase);
+            case SQUARE -> phase < 0.5 ? 1 : -1;
+            case TRIANGLE -> phase < 0.5 ? 4 * phase - 1 : 3 - 4 * phase;
+            case SAWTOOTH -> 2 * phase - 1;
+            case NOISE -> 0;
+        };
+    }
+}
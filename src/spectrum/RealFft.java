@@ -0,0 +1,92 @@
+package spectrum;
+
+// Power spectrum of a real frame of power-of-two length N. The frame is packed into N/2 complex points,
+// transformed with an iterative radix-2 FFT and split into the N/2 + 1 bins of the real transform.
+// All tables and work arrays are allocated once per size; power() itself never allocates.
+public class RealFft {
+    private final int size;
+    private final int half;
+    private final int[] bitReverse;
+    private final double[] twiddleCos;
+    private final double[] twiddleSin;
+    private final double[] splitCos;
+    private final double[] splitSin;
+    private final double[] re;
+    private final double[] im;
+
+    public RealFft(int size) {
+        if (size < 4 || Integer.bitCount(size) != 1)
+            throw new IllegalArgumentException("FFT size must be a power of two of at least 4");
+        this.size = size;
+        this.half = size / 2;
+
+        bitReverse = new int[half];
+        int bits = Integer.numberOfTrailingZeros(half);
+        for (int i = 0; i < half; i++)
+            bitReverse[i] = Integer.reverse(i) >>> (32 - bits);
+
+        twiddleCos = new double[half / 2];
+        twiddleSin = new double[half / 2];
+        for (int j = 0; j < half / 2; j++) {
+            twiddleCos[j] = Math.cos(2 * Math.PI * j / half);
+            twiddleSin[j] = -Math.sin(2 * Math.PI * j / half);
+        }
+        splitCos = new double[half + 1];
+        splitSin = new double[half + 1];
+        for (int k = 0; k <= half; k++) {
+            splitCos[k] = Math.cos(2 * Math.PI * k / size);
+            splitSin[k] = -Math.sin(2 * Math.PI * k / size);
+        }
+        re = new double[half];
+        im = new double[half];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int bins() {
+        return half + 1;
+    }
+
+    // |X[k]|^2 for k = 0..N/2 of the N samples in frame
+    public void power(double[] frame, double[] power) {
+        for (int i = 0; i < half; i++) {
+            int j = bitReverse[i];
+            re[j] = frame[2 * i];
+            im[j] = frame[2 * i + 1];
+        }
+
+        for (int length = 2; length <= half; length <<= 1) {
+            int span = length / 2;
+            int step = half / length;
+            for (int start = 0; start < half; start += length) {
+                for (int j = 0; j < span; j++) {
+                    double wr = twiddleCos[j * step];
+                    double wi = twiddleSin[j * step];
+                    int a = start + j;
+                    int b = a + span;
+                    double vr = re[b] * wr - im[b] * wi;
+                    double vi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - vr;
+                    im[b] = im[a] - vi;
+                    re[a] += vr;
+                    im[a] += vi;
+                }
+            }
+        }
+
+        // X[k] = E[k] + W^k O[k], with E and O the transforms of the even and odd samples
+        for (int k = 0; k <= half; k++) {
+            int a = k == half ? 0 : k;
+            int b = k == 0 ? 0 : half - k;
+            double ar = re[a], ai = im[a];
+            double br = re[b], bi = -im[b];
+            double evenRe = (ar + br) / 2, evenIm = (ai + bi) / 2;
+            double oddRe = (ai - bi) / 2, oddIm = -(ar - br) / 2;
+            double xr = evenRe + splitCos[k] * oddRe - splitSin[k] * oddIm;
+            double xi = evenIm + splitCos[k] * oddIm + splitSin[k] * oddRe;
+            power[k] = xr * xr + xi * xi;
+        }
+    }
+}
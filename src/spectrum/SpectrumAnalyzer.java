@@ -0,0 +1,264 @@
+package spectrum;
+
+import ingest.SampleQueue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+// Windowed, averaged power spectra of every channel's most recent samples, computed on a worker thread.
+// The EDT only copies rows into a queue; results are handed back through a triple buffer so neither side waits.
+public class SpectrumAnalyzer {
+    public record Settings(int size, WindowFunction window, double overlap, int averages) {
+        public Settings {
+            if (size < 4 || Integer.bitCount(size) != 1)
+                throw new IllegalArgumentException("FFT size must be a power of two of at least 4");
+            if (overlap < 0 || overlap >= 1)
+                throw new IllegalArgumentException("Overlap must be in [0, 1)");
+            if (averages < 1)
+                throw new IllegalArgumentException("At least one spectrum must be averaged");
+        }
+
+        int hop() {
+            return Math.max(1, (int) Math.round(size * (1 - overlap)));
+        }
+    }
+
+    // Magnitudes in dB relative to a full-scale sine of amplitude 1, one row per channel
+    public static class Spectrum {
+        private int channelCount;
+        private int bins;
+        private double[][] magnitudes = new double[0][];
+        private double[] binWidths = new double[0];
+
+        public int getChannelCount() {
+            return channelCount;
+        }
+
+        public int getBins() {
+            return bins;
+        }
+
+        // Zero until the channel has produced its first full frame
+        public double getBinWidth(int channel) {
+            return binWidths[channel];
+        }
+
+        public double[] getMagnitudes(int channel) {
+            return magnitudes[channel];
+        }
+
+        private void ensureCapacity(int channels, int bins) {
+            if (magnitudes.length < channels || (channels > 0 && magnitudes[0].length != bins)) {
+                magnitudes = new double[Math.max(channels, magnitudes.length)][bins];
+                binWidths = new double[magnitudes.length];
+            }
+        }
+    }
+
+    private static final double FLOOR_DB = -200;
+    private static final long PUBLISH_INTERVAL = 33_000_000L;
+    private static final long IDLE_PARK = 2_000_000L;
+    private static final int DIRTY = 4;
+
+    private final SampleQueue input = new SampleQueue(1 << 20);
+    private final Runnable updateListener;
+    private final Thread worker;
+    private volatile boolean running = true;
+    private volatile Settings settings;
+
+    // EDT-side staging row that places a connection's values after the channels of earlier connections
+    private double[] row = new double[16];
+
+    // Triple buffer: the worker writes back, the reader owns front, middle is exchanged with a dirty flag
+    private final Spectrum[] buffers = {new Spectrum(), new Spectrum(), new Spectrum()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    // Worker-only state
+    private Settings active;
+    private RealFft fft;
+    private double[] window;
+    private double windowSum;
+    private double[] frame;
+    private double[] power;
+    private Channel[] channels = new Channel[0];
+    private int channelCount;
+    private boolean pendingPublish;
+    private long lastPublish;
+    private final SampleQueue.Consumer accept = this::accept;
+
+    private static class Channel {
+        double[] values;
+        double[] xs;
+        int position;
+        long filled;
+        int sinceTransform;
+        double[] average;
+        int averaged;
+        double binWidth;
+    }
+
+    public SpectrumAnalyzer(Settings settings, Runnable updateListener) {
+        this.settings = settings;
+        this.updateListener = updateListener;
+        worker = new Thread(this::run, "spectrum-analyzer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+    }
+
+    // Called from the thread that drains the connections; channels before channelBase are left untouched
+    public void offer(int channelBase, double x, double[] values, int count) {
+        int length = channelBase + count;
+        if (length > row.length)
+            row = new double[Integer.highestOneBit(length) << 1];
+        if (channelBase > 0)
+            Arrays.fill(row, 0, channelBase, Double.NaN);
+        System.arraycopy(values, 0, row, channelBase, count);
+        input.offer(x, row, length);
+    }
+
+    public long getDroppedRows() {
+        return input.droppedLines();
+    }
+
+    // Latest published spectra, valid until the next call from the same thread
+    public Spectrum getLatest() {
+        if ((middle.get() & DIRTY) != 0)
+            front = middle.getAndSet(front) & ~DIRTY;
+        return buffers[front];
+    }
+
+    public void close() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            if (active != settings)
+                configure(settings);
+
+            int drained = input.drain(accept);
+
+            if (pendingPublish && System.nanoTime() - lastPublish >= PUBLISH_INTERVAL) {
+                publish();
+                updateListener.run();
+            }
+            if (drained == 0)
+                LockSupport.parkNanos(IDLE_PARK);
+        }
+    }
+
+    private void configure(Settings next) {
+        active = next;
+        int size = next.size();
+        fft = new RealFft(size);
+        window = new double[size];
+        windowSum = next.window().fill(window);
+        frame = new double[size];
+        power = new double[fft.bins()];
+        for (int c = 0; c < channelCount; c++)
+            channels[c] = newChannel();
+        pendingPublish = true;
+    }
+
+    private Channel newChannel() {
+        Channel channel = new Channel();
+        channel.values = new double[active.size()];
+        channel.xs = new double[active.size()];
+        channel.average = new double[fft.bins()];
+        return channel;
+    }
+
+    private void accept(double x, double[] values, int count) {
+        if (count > channelCount) {
+            if (count > channels.length)
+                channels = Arrays.copyOf(channels, Math.max(count, channels.length * 2));
+            for (int c = channelCount; c < count; c++)
+                channels[c] = newChannel();
+            channelCount = count;
+        }
+
+        int size = active.size();
+        int hop = active.hop();
+        for (int c = 0; c < count; c++) {
+            double value = values[c];
+            if (Double.isNaN(value))
+                continue;
+            Channel channel = channels[c];
+            channel.values[channel.position] = value;
+            channel.xs[channel.position] = x;
+            channel.position = (channel.position + 1) & (size - 1);
+            channel.filled++;
+            if (channel.filled >= size && ++channel.sinceTransform >= hop) {
+                channel.sinceTransform = 0;
+                transform(channel);
+            }
+        }
+    }
+
+    private void transform(Channel channel) {
+        int size = active.size();
+        // position is the oldest sample once the ring is full
+        int start = channel.position;
+        int firstPart = size - start;
+        for (int i = 0; i < firstPart; i++)
+            frame[i] = channel.values[start + i] * window[i];
+        for (int i = firstPart; i < size; i++)
+            frame[i] = channel.values[i - firstPart] * window[i];
+        fft.power(frame, power);
+
+        if (channel.averaged < active.averages())
+            channel.averaged++;
+        double weight = 1.0 / channel.averaged;
+        double[] average = channel.average;
+        for (int k = 0; k < average.length; k++)
+            average[k] += (power[k] - average[k]) * weight;
+
+        double span = channel.xs[(start + size - 1) & (size - 1)] - channel.xs[start];
+        if (span > 0)
+            channel.binWidth = (size - 1) / span / size;
+        pendingPublish = true;
+    }
+
+    private void publish() {
+        Spectrum spectrum = buffers[back];
+        int bins = fft.bins();
+        spectrum.ensureCapacity(channelCount, bins);
+        spectrum.channelCount = channelCount;
+        spectrum.bins = bins;
+
+        // A sine of amplitude A gives |X[k]| = A * sum(w) / 2 in its bin
+        double scale = 2 / windowSum;
+        double scaleDb = 20 * Math.log10(scale);
+        for (int c = 0; c < channelCount; c++) {
+            Channel channel = channels[c];
+            double[] magnitudes = spectrum.magnitudes[c];
+            double[] average = channel.average;
+            spectrum.binWidths[c] = channel.averaged == 0 ? 0 : channel.binWidth;
+            for (int k = 0; k < bins; k++) {
+                double db = 10 * Math.log10(average[k]) + (k == 0 || k == bins - 1 ? scaleDb - 6.020599913279624 : scaleDb);
+                magnitudes[k] = Math.max(db, FLOOR_DB);
+            }
+        }
+
+        back = middle.getAndSet(back | DIRTY) & ~DIRTY;
+        pendingPublish = false;
+        lastPublish = System.nanoTime();
+    }
+}
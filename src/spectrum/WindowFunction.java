@@ -0,0 +1,32 @@
+package spectrum;
+
+public enum WindowFunction {
+    RECTANGULAR("Rectangular"), HANN("Hann"), BLACKMAN("Blackman");
+
+    private final String label;
+
+    WindowFunction(String label) {
+        this.label = label;
+    }
+
+    // Fills the coefficients of a periodic window of coefficients.length points and returns their sum
+    public double fill(double[] coefficients) {
+        int n = coefficients.length;
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            double phase = 2 * Math.PI * i / n;
+            coefficients[i] = switch (this) {
+                case RECTANGULAR -> 1;
+                case HANN -> 0.5 - 0.5 * Math.cos(phase);
+                case BLACKMAN -> 0.42 - 0.5 * Math.cos(phase) + 0.08 * Math.cos(2 * phase);
+            };
+            sum += coefficients[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,295 @@
+package transmit;
+
+import metrics.PipelineMetrics;
+import source.DataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Outgoing bytes of one DataSource, written on a thread of its own so a slow or flow-controlled port never
+// holds up the EDT or the reader. Whatever was queued by the time the thread wakes up goes out in one write()
+// call, together with any periodic commands that are due. A streamed file fills the batches only while nothing
+// else is waiting, and is read no faster than the port accepts it.
+public class TransmitQueue {
+    public interface ErrorListener {
+        void onError(String message);
+    }
+
+    public interface StreamListener {
+        // error is null when the whole file was sent, or when the transfer was cancelled
+        void onFinished(Path file, long bytesSent, IOException error);
+    }
+
+    // A command written every period until cancelled
+    public static class Schedule {
+        private final byte[] command;
+        private final long periodNanos;
+        private long deadline;
+        private volatile boolean cancelled;
+
+        private Schedule(byte[] command, long periodNanos) {
+            this.command = command;
+            this.periodNanos = periodNanos;
+            this.deadline = System.nanoTime();
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private record FileStream(Path file, StreamListener listener) {
+    }
+
+    public static final int CAPACITY = 1 << 16;
+    private static final int BATCH_SIZE = 4096;
+    private static final long IDLE_PARK = 1_000_000_000L;
+
+    private final DataSource sink;
+    private final PipelineMetrics metrics;
+    private final ErrorListener errorListener;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    // Interactive sends, guarded by this
+    private final byte[] ring = new byte[CAPACITY];
+    private int head;
+    private int size;
+    private volatile int queuedBytes;
+
+    private final List<Schedule> schedules = new CopyOnWriteArrayList<>();
+    // Set by streamFile(), cleared by the transmit thread once the file is done
+    private volatile FileStream pendingStream;
+    private volatile boolean streamCancelled;
+
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+
+    // Transmit thread only
+    private final byte[] batch = new byte[BATCH_SIZE];
+    private int batchLength;
+    private InputStream streamInput;
+    private FileStream stream;
+    private long streamBytes;
+
+    public TransmitQueue(DataSource sink, PipelineMetrics metrics, ErrorListener errorListener) {
+        this.sink = sink;
+        this.metrics = metrics;
+        this.errorListener = errorListener;
+        thread = new Thread(this::run, "transmit-" + sink.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // Queues data followed by terminator as one unit; false, with nothing queued, when they do not fit
+    public boolean send(byte[] data, byte[] terminator) {
+        int length = data.length + terminator.length;
+        synchronized (this) {
+            if (size + length > CAPACITY)
+                return false;
+            put(data);
+            put(terminator);
+            queuedBytes = size;
+        }
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    public Schedule schedule(byte[] command, long periodNanos) {
+        if (command.length == 0)
+            throw new IllegalArgumentException("Nothing to send");
+        if (periodNanos < 1_000_000L)
+            throw new IllegalArgumentException("Period must be at least 1 ms");
+        Schedule schedule = new Schedule(command, periodNanos);
+        schedules.add(schedule);
+        LockSupport.unpark(thread);
+        return schedule;
+    }
+
+    public boolean hasSchedules() {
+        return !schedules.isEmpty();
+    }
+
+    public void cancelSchedules() {
+        for (Schedule schedule : schedules)
+            schedule.cancel();
+        schedules.clear();
+    }
+
+    // Starts sending the file; the listener is called on the transmit thread when it ends
+    public void streamFile(Path file, StreamListener listener) {
+        if (pendingStream != null)
+            throw new IllegalStateException("A file is already being sent");
+        streamCancelled = false;
+        pendingStream = new FileStream(file, listener);
+        LockSupport.unpark(thread);
+    }
+
+    public boolean isStreaming() {
+        return pendingStream != null;
+    }
+
+    public void cancelStream() {
+        streamCancelled = true;
+        LockSupport.unpark(thread);
+    }
+
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    public long getWrites() {
+        return writes.get();
+    }
+
+    // Interactive bytes not yet handed to the port, safe to call from any thread
+    public int getQueuedBytes() {
+        return queuedBytes;
+    }
+
+    // Returns right away, it is called on the EDT. Close the sink afterwards: a write blocked on a stalled port
+    // then fails and ends the thread, without an error report since the queue is already closed.
+    public void close() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    private void put(byte[] data) {
+        int tail = (head + size) & (CAPACITY - 1);
+        int first = Math.min(data.length, CAPACITY - tail);
+        System.arraycopy(data, 0, ring, tail, first);
+        System.arraycopy(data, first, ring, 0, data.length - first);
+        size += data.length;
+    }
+
+    private synchronized void takeQueued() {
+        int length = Math.min(size, BATCH_SIZE - batchLength);
+        int first = Math.min(length, CAPACITY - head);
+        System.arraycopy(ring, head, batch, batchLength, first);
+        System.arraycopy(ring, 0, batch, batchLength + first, length - first);
+        head = (head + length) & (CAPACITY - 1);
+        size -= length;
+        queuedBytes = size;
+        batchLength += length;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                takeQueued();
+                long wait = runSchedules();
+                if (batchLength == 0)
+                    readStream();
+                if (batchLength > 0) {
+                    flush();
+                    continue;
+                }
+                LockSupport.parkNanos(this, Math.min(wait, IDLE_PARK));
+            }
+        } catch (IOException e) {
+            finishStream(e);
+            if (running)
+                errorListener.onError(e.getMessage());
+        }
+        finishStream(null);
+    }
+
+    // Appends the commands that are due, returns the nanoseconds until the next one
+    private long runSchedules() throws IOException {
+        long wait = Long.MAX_VALUE;
+        long now = System.nanoTime();
+        for (Schedule schedule : schedules) {
+            if (schedule.cancelled) {
+                schedules.remove(schedule);
+                continue;
+            }
+            if (now >= schedule.deadline) {
+                append(schedule.command);
+                schedule.deadline += schedule.periodNanos;
+                // After a stall, skip the missed periods instead of sending a burst
+                if (schedule.deadline <= now)
+                    schedule.deadline = now + schedule.periodNanos;
+            }
+            wait = Math.min(wait, schedule.deadline - now);
+        }
+        return wait;
+    }
+
+    private void append(byte[] data) throws IOException {
+        if (batchLength + data.length > BATCH_SIZE)
+            flush();
+        if (data.length > BATCH_SIZE) {
+            write(data, data.length);
+            return;
+        }
+        System.arraycopy(data, 0, batch, batchLength, data.length);
+        batchLength += data.length;
+    }
+
+    private void readStream() {
+        if (stream == null && pendingStream != null) {
+            stream = pendingStream;
+            streamBytes = 0;
+            try {
+                streamInput = Files.newInputStream(stream.file());
+            } catch (IOException e) {
+                finishStream(e);
+                return;
+            }
+        }
+        if (stream == null)
+            return;
+        if (streamCancelled) {
+            finishStream(null);
+            return;
+        }
+        try {
+            int read = streamInput.read(batch, 0, BATCH_SIZE);
+            if (read < 0) {
+                finishStream(null);
+                return;
+            }
+            batchLength = read;
+            streamBytes += read;
+        } catch (IOException e) {
+            finishStream(e);
+        }
+    }
+
+    private void finishStream(IOException error) {
+        FileStream finished = stream;
+        if (finished == null)
+            return;
+        if (streamInput != null) {
+            try {
+                streamInput.close();
+            } catch (IOException ignored) {
+            }
+            streamInput = null;
+        }
+        stream = null;
+        pendingStream = null;
+        finished.listener().onFinished(finished.file(), streamBytes, error);
+    }
+
+    private void flush() throws IOException {
+        if (batchLength == 0)
+            return;
+        write(batch, batchLength);
+        batchLength = 0;
+    }
+
+    // Blocks for as long as the port needs, which is what paces a streamed file
+    private void write(byte[] data, int length) throws IOException {
+        sink.write(data, 0, length);
+        bytesSent.addAndGet(length);
+        writes.incrementAndGet();
+        metrics.bytesSent.add(length);
+    }
+}
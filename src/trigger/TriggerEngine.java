@@ -0,0 +1,291 @@
+package trigger;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Oscilloscope-style trigger evaluated inline on the ingest thread, one row at a time. The last preRows rows
+// are kept in a ring; when the trigger fires they are copied into a frame that then collects postRows more.
+// Completed frames are handed to the EDT through a triple buffer, so only whole frames are ever drawn and
+// neither side waits. Nothing is allocated unless the settings or the channel count change, and never more than
+// Settings.MAX_SAMPLES per frame: channels past maxChannels() are left out of the frames.
+public class TriggerEngine {
+    public enum Condition {
+        RISING("Rising edge"), FALLING("Falling edge"), ABOVE("Above level"), BELOW("Below level");
+
+        private final String label;
+
+        Condition(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public enum Mode {
+        // AUTO captures a frame anyway when nothing triggered for AUTO_TIMEOUT, SINGLE stops after one frame
+        AUTO("Auto"), NORMAL("Normal"), SINGLE("Single");
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    public record Settings(int channel, Condition condition, double level, double hysteresis, Mode mode,
+                           int preRows, int postRows) {
+        public static final int MAX_ROWS = 1 << 20;
+        // Values one frame may hold, X included; three frames and the ring are kept, so this bounds the memory
+        // a wide input can make the ingest thread allocate
+        public static final int MAX_SAMPLES = 1 << 22;
+
+        public Settings {
+            if (channel < 0)
+                throw new IllegalArgumentException("Trigger channel must not be negative");
+            if (Double.isNaN(level))
+                throw new IllegalArgumentException("Trigger level must be a number");
+            if (!(hysteresis >= 0))
+                throw new IllegalArgumentException("Hysteresis must not be negative");
+            if (preRows < 0 || postRows < 1 || preRows + postRows > MAX_ROWS)
+                throw new IllegalArgumentException(String.format("Trigger window must hold 1 to %d samples", MAX_ROWS));
+        }
+
+        // Channels a frame keeps; the ones after them are left out of the frames
+        public int maxChannels() {
+            return maxChannels(MAX_SAMPLES);
+        }
+
+        int maxChannels(int maxSamples) {
+            return maxSamples / (preRows + postRows) - 1;
+        }
+
+        public void requireChannels(int channels) {
+            if (channels > maxChannels())
+                throw new IllegalArgumentException(String.format("A window of %d samples holds at most %d channels",
+                        preRows + postRows, maxChannels()));
+        }
+    }
+
+    private static final long AUTO_TIMEOUT = 100_000_000L;
+    private static final int DIRTY = 4;
+
+    private final LongSupplier nanoClock;
+    private final long autoTimeoutNanos;
+    private final int maxSamples;
+    private volatile Settings settings;
+    private volatile boolean rearmRequested;
+    private volatile boolean stopped;
+
+    private final TriggerFrame[] frames = {new TriggerFrame(), new TriggerFrame(), new TriggerFrame()};
+    private final AtomicInteger middle = new AtomicInteger(1);
+    private int front = 2;
+
+    // Ingest thread only
+    private Settings active;
+    private int back;
+    private int width;
+    private double[] ringX = new double[0];
+    private double[] ring = new double[0];
+    private int ringPosition;
+    private int ringFilled;
+    private boolean armed;
+    private int capturedRows;
+    private boolean capturing;
+    private long waitingSince;
+    private long frameSequence;
+
+    public TriggerEngine(Settings settings) {
+        this(settings, System::nanoTime, AUTO_TIMEOUT, Settings.MAX_SAMPLES);
+    }
+
+    // Tests bring their own clock and a smaller bound on the frame size
+    TriggerEngine(Settings settings, LongSupplier nanoClock, long autoTimeoutNanos, int maxSamples) {
+        this.settings = settings;
+        this.nanoClock = nanoClock;
+        this.autoTimeoutNanos = autoTimeoutNanos;
+        this.maxSamples = maxSamples;
+    }
+
+    public Settings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(Settings settings) {
+        this.settings = settings;
+    }
+
+    // Waits for the next trigger again after a SINGLE frame
+    public void rearm() {
+        rearmRequested = true;
+    }
+
+    // True once a SINGLE capture completed and no rearm() followed
+    public boolean isStopped() {
+        return stopped;
+    }
+
+    // Latest completed frame, null until there is one; valid until the next call from the same thread
+    public TriggerFrame getLatest() {
+        if ((middle.get() & DIRTY) != 0)
+            front = middle.getAndSet(front) & ~DIRTY;
+        TriggerFrame frame = frames[front];
+        return frame.rows > 0 ? frame : null;
+    }
+
+    public void accept(double x, double[] values, int count) {
+        if (active != settings || (count > width && width < active.maxChannels(maxSamples)))
+            configure(settings, Math.max(count, width));
+        if (rearmRequested) {
+            rearmRequested = false;
+            stopped = false;
+            capturing = false;
+            armed = startsArmed(active.condition());
+            waitingSince = nanoClock.getAsLong();
+        }
+
+        if (capturing) {
+            store(frames[back], capturedRows, x, values, count);
+            if (++capturedRows == active.preRows() + active.postRows())
+                complete();
+        } else if (!stopped && ringFilled >= active.preRows()) {
+            boolean fire = triggered(values, count);
+            boolean forced = !fire && active.mode() == Mode.AUTO
+                    && nanoClock.getAsLong() - waitingSince > autoTimeoutNanos;
+            if (fire || forced) {
+                frames[back].forced = forced;
+                startFrame(x, values, count);
+            }
+        } else if (!stopped && !startsArmed(active.condition())) {
+            // Still filling the pre-trigger window, an edge must be crossed from scratch afterwards
+            triggered(values, count);
+        }
+
+        remember(x, values, count);
+    }
+
+    private boolean triggered(double[] values, int count) {
+        double value = active.channel() < count ? values[active.channel()] : Double.NaN;
+        if (value != value)
+            return false;
+        double level = active.level();
+        double hysteresis = active.hysteresis();
+        return switch (active.condition()) {
+            case RISING -> {
+                // Armed only once the signal has been clearly below the level
+                if (value < level - hysteresis)
+                    armed = true;
+                boolean fire = armed && value >= level;
+                if (fire)
+                    armed = false;
+                yield fire;
+            }
+            case FALLING -> {
+                if (value > level + hysteresis)
+                    armed = true;
+                boolean fire = armed && value <= level;
+                if (fire)
+                    armed = false;
+                yield fire;
+            }
+            case ABOVE -> {
+                // Fires once the level is exceeded, then again only after the signal was clearly below it
+                if (value <= level - hysteresis)
+                    armed = true;
+                boolean fire = armed && value > level;
+                if (fire)
+                    armed = false;
+                yield fire;
+            }
+            case BELOW -> {
+                if (value >= level + hysteresis)
+                    armed = true;
+                boolean fire = armed && value < level;
+                if (fire)
+                    armed = false;
+                yield fire;
+            }
+        };
+    }
+
+    // A level condition fires as soon as the signal is past the level, an edge has to see it cross first
+    private static boolean startsArmed(Condition condition) {
+        return condition == Condition.ABOVE || condition == Condition.BELOW;
+    }
+
+    private void startFrame(double x, double[] values, int count) {
+        TriggerFrame frame = frames[back];
+        int preRows = active.preRows();
+        // Oldest ring row first
+        int slot = ringPosition;
+        for (int row = 0; row < preRows; row++) {
+            frame.xs[row] = ringX[slot];
+            for (int c = 0; c < width; c++)
+                frame.values[c][row] = ring[slot * width + c];
+            if (++slot == preRows)
+                slot = 0;
+        }
+        frame.triggerRow = preRows;
+        frame.triggerX = x;
+        store(frame, preRows, x, values, count);
+        capturedRows = preRows + 1;
+        capturing = true;
+        if (capturedRows == preRows + active.postRows())
+            complete();
+    }
+
+    private void store(TriggerFrame frame, int row, double x, double[] values, int count) {
+        frame.xs[row] = x;
+        for (int c = 0; c < width; c++)
+            frame.values[c][row] = c < count ? values[c] : Double.NaN;
+    }
+
+    private void complete() {
+        TriggerFrame frame = frames[back];
+        frame.rows = capturedRows;
+        frame.channelCount = width;
+        frame.sequence = ++frameSequence;
+        back = middle.getAndSet(back | DIRTY) & ~DIRTY;
+        frames[back].ensureCapacity(width, active.preRows() + active.postRows());
+
+        capturing = false;
+        waitingSince = nanoClock.getAsLong();
+        if (active.mode() == Mode.SINGLE)
+            stopped = true;
+    }
+
+    private void remember(double x, double[] values, int count) {
+        int preRows = active.preRows();
+        if (preRows == 0)
+            return;
+        ringX[ringPosition] = x;
+        int offset = ringPosition * width;
+        for (int c = 0; c < width; c++)
+            ring[offset + c] = c < count ? values[c] : Double.NaN;
+        if (++ringPosition == preRows)
+            ringPosition = 0;
+        if (ringFilled < preRows)
+            ringFilled++;
+    }
+
+    private void configure(Settings next, int channels) {
+        active = next;
+        width = Math.min(channels, next.maxChannels(maxSamples));
+        ringX = new double[next.preRows()];
+        ring = new double[next.preRows() * width];
+        ringPosition = 0;
+        ringFilled = 0;
+        armed = startsArmed(next.condition());
+        capturing = false;
+        stopped = false;
+        waitingSince = nanoClock.getAsLong();
+        frames[back].ensureCapacity(width, next.preRows() + next.postRows());
+    }
+}
@@ -0,0 +1,61 @@
+package trigger;
+
+// One captured trigger window: preRows samples before the trigger sample and the trigger sample plus
+// postRows - 1 after it, column-wise per channel. Channels a row did not carry are NaN.
+public class TriggerFrame {
+    int rows;
+    int channelCount;
+    int triggerRow;
+    double triggerX;
+    boolean forced;
+    long sequence;
+    double[] xs = new double[0];
+    double[][] values = new double[0][];
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getChannelCount() {
+        return channelCount;
+    }
+
+    // Index of the trigger sample within the frame
+    public int getTriggerRow() {
+        return triggerRow;
+    }
+
+    public double getTriggerX() {
+        return triggerX;
+    }
+
+    // True for frames an AUTO trigger captured without its condition being met
+    public boolean isForced() {
+        return forced;
+    }
+
+    // Counts up with every completed frame
+    public long getSequence() {
+        return sequence;
+    }
+
+    public double getX(int row) {
+        return xs[row];
+    }
+
+    public double[] getValues(int channel) {
+        return values[channel];
+    }
+
+    void ensureCapacity(int channels, int rows) {
+        if (xs.length != rows)
+            xs = new double[rows];
+        // Columns of channels the frame no longer keeps are dropped, so a narrower frame frees their memory
+        if (values.length != channels || (channels > 0 && values[0].length != rows)) {
+            double[][] resized = new double[channels][];
+            for (int c = 0; c < resized.length; c++)
+                resized[c] = c < values.length && values[c].length == rows ? values[c] : new double[rows];
+            values = resized;
+        }
+    }
+}
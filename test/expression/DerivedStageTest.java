@@ -0,0 +1,94 @@
+package expression;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DerivedStageTest {
+    private final List<double[]> rows = new ArrayList<>();
+    private final List<Double> xs = new ArrayList<>();
+
+    private DerivedStage stage(String... expressions) {
+        List<CompiledExpression> compiled = new ArrayList<>();
+        for (String expression : expressions)
+            compiled.add(ExpressionCompiler.compile(expression));
+        return new DerivedStage(compiled, (x, values, count) -> {
+            xs.add(x);
+            rows.add(Arrays.copyOf(values, count));
+        });
+    }
+
+    @Test
+    void appendsDerivedChannelsBehindTheFirstRow() {
+        DerivedStage stage = stage("ch0 + ch1", "ch0 * 2");
+        stage.add(0.5, new double[]{1, 2, 3}, 3);
+        stage.add(1.5, new double[]{4, 5, 6}, 3);
+        assertTrue(rows.isEmpty());
+        stage.flush();
+
+        assertEquals(3, stage.getBase());
+        assertEquals(2, stage.getDerivedCount());
+        assertEquals(List.of(0.5, 1.5), xs);
+        assertArrayEquals(new double[]{1, 2, 3, 3, 2}, rows.get(0));
+        assertArrayEquals(new double[]{4, 5, 6, 9, 8}, rows.get(1));
+    }
+
+    @Test
+    void padsShortRowsUpToTheBase() {
+        DerivedStage stage = stage("ch0 - ch1");
+        stage.add(0, new double[]{5, 1, 9}, 3);
+        stage.add(1, new double[]{7}, 1);
+        stage.flush();
+
+        assertArrayEquals(new double[]{5, 1, 9, 4}, rows.get(0));
+        double[] padded = rows.get(1);
+        assertEquals(4, padded.length);
+        assertEquals(7, padded[0]);
+        assertTrue(Double.isNaN(padded[1]));
+        assertTrue(Double.isNaN(padded[2]));
+        // ch1 is missing, so is the difference, but it stays on the derived channel's index
+        assertTrue(Double.isNaN(padded[3]));
+    }
+
+    @Test
+    void movesChannelsOfWiderRowsBehindTheDerivedOnes() {
+        DerivedStage stage = stage("ch0 * 10");
+        stage.add(0, new double[]{1, 2}, 2);
+        stage.add(1, new double[]{3, 4, 5, 6}, 4);
+        stage.flush();
+
+        assertArrayEquals(new double[]{1, 2, 10}, rows.get(0));
+        assertArrayEquals(new double[]{3, 4, 30, 5, 6}, rows.get(1));
+    }
+
+    @Test
+    void baseCoversEveryChannelTheExpressionsRead() {
+        DerivedStage stage = stage("ch3");
+        stage.add(0, new double[]{1}, 1);
+        stage.flush();
+
+        assertEquals(4, stage.getBase());
+        double[] row = rows.get(0);
+        assertEquals(5, row.length);
+        assertTrue(Double.isNaN(row[4]));
+    }
+
+    @Test
+    void flushesFullBatchesOnItsOwn() {
+        DerivedStage stage = stage("ch0 + 1");
+        double[] row = new double[1];
+        for (int i = 0; i < 1000; i++) {
+            row[0] = i;
+            stage.add(i, row, 1);
+        }
+        assertTrue(rows.size() >= 768, "emitted " + rows.size());
+        stage.flush();
+        assertEquals(1000, rows.size());
+        for (int i = 0; i < 1000; i++)
+            assertEquals(i + 1, rows.get(i)[1]);
+    }
+}
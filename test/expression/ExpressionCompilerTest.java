@@ -0,0 +1,82 @@
+package expression;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpressionCompilerTest {
+    private static double[] evaluate(String text, double[]... columns) {
+        DerivedChannel channel = ExpressionCompiler.compile(text).newInstance();
+        int rows = columns.length > 0 ? columns[0].length : 1;
+        double[] out = new double[rows];
+        channel.evaluate(columns, rows, out);
+        return out;
+    }
+
+    @Test
+    void scalesAChannel() {
+        assertArrayEquals(new double[]{0, 3.3, 3.3 / 4095 * 2048},
+                evaluate("ch0 * 3.3 / 4095", new double[]{0, 4095, 2048}), 1e-12);
+    }
+
+    @Test
+    void followsPrecedenceAndParentheses() {
+        assertEquals(7, evaluate("1 + 2 * 3")[0]);
+        assertEquals(9, evaluate("(1 + 2) * 3")[0]);
+        assertEquals(-1, evaluate("-(2 - 1)")[0]);
+        assertEquals(2, evaluate("8 / 2 / 2")[0]);
+        assertEquals(1, evaluate("7 % 3")[0]);
+        assertEquals(-1.5, evaluate("-7.5 % 3")[0]);
+        assertEquals(1500, evaluate("1.5e3")[0]);
+    }
+
+    @Test
+    void callsFunctions() {
+        double[] x = {3, -4};
+        double[] y = {4, 3};
+        assertArrayEquals(new double[]{5, 5}, evaluate("sqrt(ch0*ch0 + ch1*ch1)", x, y), 1e-12);
+        assertArrayEquals(new double[]{5, 5}, evaluate("hypot(ch0, ch1)", x, y), 1e-12);
+        assertArrayEquals(new double[]{4, 3}, evaluate("max(ch0, ch1)", x, y));
+        assertEquals(Math.PI, evaluate("atan2(0, -1)")[0], 1e-12);
+        assertEquals(1, evaluate("sin(PI / 2)")[0], 1e-12);
+    }
+
+    @Test
+    void reportsTheChannelsItReads() {
+        assertEquals(0, ExpressionCompiler.compile("1 + 2").getChannelCount());
+        assertEquals(4, ExpressionCompiler.compile("ch3 - ch0").getChannelCount());
+        assertEquals("ch3 - ch0", ExpressionCompiler.compile("ch3 - ch0").getText());
+    }
+
+    @Test
+    void propagatesMissingValues() {
+        double[] out = evaluate("ch0 + ch1", new double[]{1, Double.NaN}, new double[]{2, 2});
+        assertEquals(3, out[0]);
+        assertTrue(Double.isNaN(out[1]));
+    }
+
+    @Test
+    void averagesOverAMovingWindowAcrossBatches() {
+        DerivedChannel channel = ExpressionCompiler.compile("avg(ch0, 3)").newInstance();
+        double[] out = new double[4];
+        channel.evaluate(new double[][]{{3, 6, Double.NaN, 9}}, 4, out);
+        assertArrayEquals(new double[]{3, 4.5, 4.5, 6}, out);
+        channel.evaluate(new double[][]{{12}}, 1, out);
+        assertEquals(9, out[0]);
+
+        // Every instance keeps a window of its own
+        DerivedChannel other = ExpressionCompiler.compile("avg(ch0, 3)").newInstance();
+        other.evaluate(new double[][]{{Double.NaN}}, 1, out);
+        assertTrue(Double.isNaN(out[0]));
+    }
+
+    @Test
+    void rejectsInvalidExpressions() {
+        for (String text : new String[]{"", "1 +", "(1 + 2", "1 2", "foo(1)", "System.exit(0)", "ch999",
+                "sqrt(1, 2)", "avg(ch0, 0)", "avg(ch0, x)", "1..2", "\"text\"", "ch0; ch1"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                    () -> ExpressionCompiler.compile(text), text);
+            assertNotNull(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CobsFrameDecoderTest {
+    private final List<double[]> rows = new ArrayList<>();
+    private final CobsFrameDecoder decoder = new CobsFrameDecoder((values, count) -> rows.add(Arrays.copyOf(values, count)));
+
+    private void feed(byte[] bytes) {
+        decoder.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void decodesEverySampleType() {
+        feed(frame(CobsFrameDecoder.TYPE_INT16, -1, false, -32768, 0, 32767));
+        feed(frame(CobsFrameDecoder.TYPE_INT32, -1, false, Integer.MIN_VALUE, 1, Integer.MAX_VALUE));
+        feed(frame(CobsFrameDecoder.TYPE_FLOAT32, -1, true, 1.5, -0.25, 1e6));
+
+        assertEquals(3, rows.size());
+        assertArrayEquals(new double[]{-32768, 0, 32767}, rows.get(0));
+        assertArrayEquals(new double[]{Integer.MIN_VALUE, 1, Integer.MAX_VALUE}, rows.get(1));
+        assertArrayEquals(new double[]{1.5, -0.25, 1e6}, rows.get(2));
+        assertEquals(3, decoder.getDecodedFrames());
+        assertEquals(0, decoder.getCorruptedFrames());
+    }
+
+    @Test
+    void decodesFramesSplitAcrossReads() {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < 10; i++)
+            stream.writeBytes(frame(CobsFrameDecoder.TYPE_INT16, i, true, i, 0, -i));
+        byte[] bytes = stream.toByteArray();
+        for (int i = 0; i < bytes.length; i++)
+            decoder.feed(bytes, i, 1);
+
+        assertEquals(10, rows.size());
+        assertArrayEquals(new double[]{9, 0, -9}, rows.get(9));
+        assertEquals(0, decoder.getDroppedFrames());
+    }
+
+    @Test
+    void decodesLongPacketsAcrossCobsBlocks() {
+        double[] samples = new double[255];
+        for (int i = 0; i < samples.length; i++)
+            samples[i] = i % 3 == 0 ? 0 : i * 1000;
+        feed(frame(CobsFrameDecoder.TYPE_INT32, 7, true, samples));
+        assertEquals(1, rows.size());
+        assertArrayEquals(samples, rows.get(0));
+    }
+
+    @Test
+    void rejectsBadCrc() {
+        byte[] packet = packet(CobsFrameDecoder.TYPE_INT16, -1, true, 1, 2);
+        packet[3] ^= 0x10;
+        feed(cobsEncode(packet));
+        assertTrue(rows.isEmpty());
+        assertEquals(1, decoder.getCorruptedFrames());
+    }
+
+    @Test
+    void rejectsWrongLengthAndBadStuffing() {
+        byte[] packet = packet(CobsFrameDecoder.TYPE_INT16, -1, false, 1, 2);
+        feed(cobsEncode(Arrays.copyOf(packet, packet.length - 1)));
+        feed(new byte[]{5, 1, 2, 0});
+        assertTrue(rows.isEmpty());
+        assertEquals(2, decoder.getCorruptedFrames());
+    }
+
+    @Test
+    void recoversAfterAnOverlongFrame() {
+        byte[] noise = new byte[5000];
+        Arrays.fill(noise, (byte) 0x55);
+        feed(noise);
+        feed(new byte[]{0});
+        feed(frame(CobsFrameDecoder.TYPE_INT16, -1, false, 42));
+        assertEquals(1, decoder.getCorruptedFrames());
+        assertArrayEquals(new double[]{42}, rows.get(0));
+    }
+
+    @Test
+    void countsSkippedSequenceNumbers() {
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 65534, false, 1));
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 65535, false, 2));
+        // Wraps around and loses 0 to 2
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 3, false, 3));
+        assertEquals(3, decoder.getDroppedFrames());
+        assertEquals(0, decoder.getSequenceResyncs());
+    }
+
+    @Test
+    void resyncsOnRepeatedOrRestartedSequence() {
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 500, false, 1));
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 500, false, 1));
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 0, false, 1));
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 1, false, 1));
+        assertEquals(0, decoder.getDroppedFrames());
+        assertEquals(2, decoder.getSequenceResyncs());
+        assertEquals(4, rows.size());
+    }
+
+    @Test
+    void resetForgetsTheSequence() {
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 10, false, 1));
+        decoder.reset();
+        feed(frame(CobsFrameDecoder.TYPE_INT16, 20, false, 1));
+        assertEquals(0, decoder.getDroppedFrames());
+    }
+
+    private static byte[] frame(int type, int sequence, boolean crc, double... samples) {
+        return cobsEncode(packet(type, sequence, crc, samples));
+    }
+
+    // A negative sequence leaves the sequence field out
+    private static byte[] packet(int type, int sequence, boolean crc, double... samples) {
+        int sampleSize = type == CobsFrameDecoder.TYPE_INT16 ? 2 : 4;
+        ByteBuffer packet = ByteBuffer.allocate(4 + samples.length * sampleSize + 2).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = type | (sequence >= 0 ? CobsFrameDecoder.FLAG_SEQUENCE : 0) | (crc ? CobsFrameDecoder.FLAG_CRC : 0);
+        packet.put((byte) flags).put((byte) samples.length);
+        if (sequence >= 0)
+            packet.putShort((short) sequence);
+        for (double sample : samples) {
+            switch (type) {
+                case CobsFrameDecoder.TYPE_INT16 -> packet.putShort((short) sample);
+                case CobsFrameDecoder.TYPE_INT32 -> packet.putInt((int) sample);
+                default -> packet.putFloat((float) sample);
+            }
+        }
+        if (crc)
+            packet.putShort((short) crc16(packet.array(), packet.position()));
+        return Arrays.copyOf(packet.array(), packet.position());
+    }
+
+    // CRC-16/CCITT-FALSE, bit by bit
+    private static int crc16(byte[] data, int length) {
+        int crc = 0xFFFF;
+        for (int i = 0; i < length; i++) {
+            crc ^= (data[i] & 0xFF) << 8;
+            for (int bit = 0; bit < 8; bit++)
+                crc = (crc & 0x8000) != 0 ? ((crc << 1) ^ 0x1021) & 0xFFFF : (crc << 1) & 0xFFFF;
+        }
+        return crc;
+    }
+
+    private static byte[] cobsEncode(byte[] packet) {
+        byte[] encoded = new byte[packet.length + packet.length / 254 + 2];
+        int codeIndex = 0;
+        int write = 1;
+        int code = 1;
+        for (byte b : packet) {
+            if (b == 0) {
+                encoded[codeIndex] = (byte) code;
+                codeIndex = write++;
+                code = 1;
+            } else {
+                encoded[write++] = b;
+                if (++code == 0xFF) {
+                    encoded[codeIndex] = (byte) code;
+                    codeIndex = write++;
+                    code = 1;
+                }
+            }
+        }
+        encoded[codeIndex] = (byte) code;
+        encoded[write++] = 0;
+        return Arrays.copyOf(encoded, write);
+    }
+}
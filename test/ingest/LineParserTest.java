@@ -0,0 +1,123 @@
+package ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineParserTest {
+    private final List<double[]> rows = new ArrayList<>();
+    private final LineParser parser = new LineParser((values, count) -> rows.add(Arrays.copyOf(values, count)));
+
+    private void feed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        parser.feed(bytes, 0, bytes.length);
+    }
+
+    @Test
+    void parsesSeparatedValues() {
+        feed("1.5, -2\t3e2 4\n");
+        assertEquals(1, rows.size());
+        assertArrayEquals(new double[]{1.5, -2, 300, 4}, rows.get(0));
+        assertEquals(0, parser.getParseFailures());
+    }
+
+    @Test
+    void joinsLinesSplitAcrossReads() {
+        byte[] bytes = "10,20\n30,40\n".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i++)
+            parser.feed(bytes, i, 1);
+        assertEquals(2, rows.size());
+        assertArrayEquals(new double[]{10, 20}, rows.get(0));
+        assertArrayEquals(new double[]{30, 40}, rows.get(1));
+    }
+
+    @Test
+    void labelsKeepTheirChannel() {
+        feed("temp:21.5 hum: 40\n");
+        feed("hum:41\n");
+        assertEquals(2, rows.size());
+        assertArrayEquals(new double[]{21.5, 40}, rows.get(0));
+        assertArrayEquals(new double[]{Double.NaN, 41}, rows.get(1));
+        assertArrayEquals(new String[]{"temp", "hum"}, parser.getChannels().getLabels());
+    }
+
+    @Test
+    void acceptsSpecialValuesAndSuffixes() {
+        feed("NaN -Infinity +Infinity 1.5f 2d -0\n");
+        double[] row = rows.get(0);
+        assertTrue(Double.isNaN(row[0]));
+        assertEquals(Double.NEGATIVE_INFINITY, row[1]);
+        assertEquals(Double.POSITIVE_INFINITY, row[2]);
+        assertEquals(1.5, row[3]);
+        assertEquals(2, row[4]);
+        assertEquals(Double.doubleToRawLongBits(-0.0), Double.doubleToRawLongBits(row[5]));
+    }
+
+    @Test
+    void roundsLikeDoubleValueOf() {
+        Random random = new Random(42);
+        StringBuilder line = new StringBuilder();
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < ChannelRegistry.MAX_CHANNELS; i++) {
+            String token = switch (i % 4) {
+                case 0 -> Double.toString(random.nextDouble() * 1000);
+                case 1 -> String.format("%.3f", random.nextGaussian());
+                case 2 -> Double.toString(random.nextDouble() * 1e-300);
+                default -> "12345678901234567890123." + random.nextInt(1000);
+            };
+            tokens.add(token);
+            line.append(token).append(',');
+        }
+        feed(line.append('\n').toString());
+
+        double[] row = rows.get(0);
+        for (int i = 0; i < tokens.size(); i++)
+            assertEquals(Double.valueOf(tokens.get(i)), row[i], tokens.get(i));
+    }
+
+    @Test
+    void skipsFieldsThatAreNotNumbers() {
+        feed("1,abc,2,1e,--3\n");
+        assertArrayEquals(new double[]{1, 2}, rows.get(0));
+        assertEquals(3, parser.getParseFailures());
+    }
+
+    @Test
+    void dropsLinesWithoutNumbers() {
+        feed("hello world\n\n");
+        assertTrue(rows.isEmpty());
+    }
+
+    @Test
+    void capsOverlongTokens() {
+        feed("x".repeat(100_000) + " 7\n");
+        assertEquals(1, rows.size());
+        assertArrayEquals(new double[]{7}, rows.get(0));
+        assertEquals(1, parser.getParseFailures());
+    }
+
+    @Test
+    void ignoresFieldsPastTheChannelLimit() {
+        feed("1,".repeat(ChannelRegistry.MAX_CHANNELS + 10) + "\n");
+        assertEquals(ChannelRegistry.MAX_CHANNELS, rows.get(0).length);
+        assertEquals(10, parser.getParseFailures());
+    }
+
+    @Test
+    void resetDropsThePartialLineButKeepsTheChannels() {
+        feed("1,2,");
+        parser.reset();
+        feed("3\n");
+        assertArrayEquals(new double[]{3, Double.NaN}, rows.get(0));
+
+        parser.resetChannels();
+        feed("4\n");
+        assertArrayEquals(new double[]{4}, rows.get(1));
+    }
+}
@@ -0,0 +1,106 @@
+package ingest;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingStageTest {
+    private final List<Double> xs = new ArrayList<>();
+    private final List<double[]> rows = new ArrayList<>();
+    private final SampleQueue.Consumer sink = (x, values, count) -> {
+        xs.add(x);
+        rows.add(Arrays.copyOf(values, count));
+    };
+
+    @Test
+    void spreadsRowsOverTheTimeTheChunkTookToArrive() {
+        // 1 ms per byte, so 100 bytes started arriving 0.1 s before they were read
+        TimingStage timing = new TimingStage(0.001);
+        timing.beginChunk(10, 0, 100);
+        timing.accept(50, new double[]{1}, 1, sink);
+        timing.accept(100, new double[]{2}, 1, sink);
+        assertEquals(9.95, xs.get(0), 1e-9);
+        assertEquals(10, xs.get(1), 1e-9);
+    }
+
+    @Test
+    void chunksDoNotReachBackIntoTheOneBefore() {
+        TimingStage timing = new TimingStage(0);
+        timing.beginChunk(10, 0, 10);
+        timing.accept(10, new double[]{1}, 1, sink);
+        timing.beginChunk(10.02, 0, 10);
+        timing.accept(5, new double[]{1}, 1, sink);
+        assertEquals(10, xs.get(0), 1e-9);
+        assertEquals(10.01, xs.get(1), 1e-9);
+    }
+
+    @Test
+    void xNeverDecreases() {
+        TimingStage timing = new TimingStage(0);
+        timing.beginChunk(5, 0, 10);
+        timing.accept(10, new double[]{1}, 1, sink);
+        timing.beginChunk(4, 0, 10);
+        timing.accept(1, new double[]{1}, 1, sink);
+        assertEquals(5, xs.get(1));
+        assertEquals(5, timing.gap());
+    }
+
+    @Test
+    void mapsTheDeviceClockOntoHostTimeAndDropsItsColumn() {
+        TimingStage timing = new TimingStage(0);
+        timing.setTimestampColumn(new TimingStage.TimestampColumn(1, 1e-3));
+        timing.beginChunk(100, 0, 10);
+        timing.accept(10, new double[]{7, 1000, 8}, 3, sink);
+        timing.beginChunk(100.3, 0, 10);
+        timing.accept(10, new double[]{9, 1250, 10}, 3, sink);
+        // A later chunk that took longer to arrive keeps the smaller delay of the first one
+        timing.beginChunk(100.9, 0, 10);
+        timing.accept(10, new double[]{11, 1500, 12}, 3, sink);
+
+        assertEquals(100, xs.get(0), 1e-9);
+        assertEquals(100.25, xs.get(1), 1e-9);
+        assertEquals(100.5, xs.get(2), 1e-9);
+        assertArrayEquals(new double[]{7, 8}, rows.get(0));
+        assertArrayEquals(new double[]{11, 12}, rows.get(2));
+    }
+
+    @Test
+    void rowsWithoutAUsableTimestampKeepHostTime() {
+        TimingStage timing = new TimingStage(0);
+        timing.setTimestampColumn(new TimingStage.TimestampColumn(0, 1));
+        timing.beginChunk(3, 0, 10);
+        timing.accept(10, new double[]{Double.NaN, 4}, 2, sink);
+        timing.accept(10, new double[]{}, 0, sink);
+
+        assertEquals(3, xs.get(0), 1e-9);
+        assertArrayEquals(new double[]{4}, rows.get(0));
+        assertEquals(0, rows.get(1).length);
+    }
+
+    @Test
+    void reanchorsWhenTheDeviceClockRunsBackwards() {
+        TimingStage timing = new TimingStage(0);
+        timing.setTimestampColumn(new TimingStage.TimestampColumn(0, 1));
+        timing.beginChunk(50, 0, 10);
+        timing.accept(10, new double[]{1000}, 1, sink);
+        // The device restarted and counts from zero again
+        timing.beginChunk(60, 0, 10);
+        timing.accept(10, new double[]{2}, 1, sink);
+        timing.beginChunk(61.2, 0, 10);
+        timing.accept(10, new double[]{3}, 1, sink);
+
+        assertEquals(60, xs.get(1), 1e-9);
+        assertEquals(61, xs.get(2), 1e-9);
+    }
+
+    @Test
+    void rejectsInvalidTimestampColumns() {
+        assertThrows(IllegalArgumentException.class, () -> new TimingStage.TimestampColumn(-1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TimingStage.TimestampColumn(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimingStage.TimestampColumn(0, Double.NaN));
+    }
+}
@@ -0,0 +1,70 @@
+package plotting;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import recording.CaptureReader;
+import recording.CaptureWriter;
+import recording.XKind;
+
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureRendererTest {
+    private static final int ROWS = 200_000;
+
+    @TempDir
+    Path directory;
+
+    // Channel 0 is a sine between -1 and 1 with a long break in X halfway through, channel 1 is never sent
+    private Path recordWithGap() throws Exception {
+        Path path = directory.resolve("gap.cap");
+        try (CaptureWriter writer = new CaptureWriter(path, XKind.SECONDS)) {
+            double[] row = new double[2];
+            for (int i = 0; i < ROWS; i++) {
+                row[0] = Math.sin(i / 100.0);
+                row[1] = Double.NaN;
+                double x = i < ROWS / 2 ? i : i + 10_000_000;
+                while (!writer.offer(x, row, 2))
+                    Thread.onSpinWait();
+            }
+        }
+        return path;
+    }
+
+    private static void assertFiniteRange(CaptureRenderer renderer) {
+        assertTrue(Double.isFinite(renderer.getMinY()), "min " + renderer.getMinY());
+        assertTrue(Double.isFinite(renderer.getMaxY()), "max " + renderer.getMaxY());
+        assertEquals(-1, renderer.getMinY(), 1e-3);
+        assertEquals(1, renderer.getMaxY(), 1e-3);
+    }
+
+    @Test
+    void emptyColumnsDoNotWidenTheRange() throws Exception {
+        try (CaptureReader capture = new CaptureReader(recordWithGap())) {
+            CountDownLatch indexed = new CountDownLatch((ROWS + (1 << 16) - 1) >> 16);
+            CaptureRenderer renderer = new CaptureRenderer(capture);
+
+            // Previews while the index is built, then the tiles
+            renderer.update(800);
+            assertFiniteRange(renderer);
+            capture.startIndexing(indexed::countDown);
+            assertTrue(indexed.await(10, TimeUnit.SECONDS));
+            renderer.update(800);
+            assertFiniteRange(renderer);
+        }
+    }
+
+    @Test
+    void zoomedIntoTheGapFallsBackToADefaultRange() throws Exception {
+        try (CaptureReader capture = new CaptureReader(recordWithGap())) {
+            CaptureRenderer renderer = new CaptureRenderer(capture);
+            renderer.zoom(1e-4, ROWS / 2.0 + 5_000_000);
+            renderer.update(800);
+            assertEquals(0, renderer.getMinY());
+            assertEquals(1, renderer.getMaxY());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package plotting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecimatorTest {
+    private static final int WIDTH = 100;
+    private static final int SAMPLES = 100_000;
+
+    private static double[] noise() {
+        Random random = new Random(9);
+        double[] y = new double[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+            y[i] = random.nextGaussian();
+        return y;
+    }
+
+    private static Decimator decimate(Decimator.Mode mode, double[] y) {
+        Decimator decimator = new Decimator();
+        decimator.setMode(mode);
+        decimator.begin(0, SAMPLES, WIDTH);
+        for (int i = 0; i < y.length; i++)
+            decimator.add(i, y[i]);
+        decimator.finish();
+        return decimator;
+    }
+
+    @Test
+    void m4KeepsTheFirstLastAndExtremesOfEveryColumn() {
+        double[] y = noise();
+        Decimator decimator = decimate(Decimator.Mode.M4, y);
+        assertTrue(decimator.size() <= 4 * (WIDTH + 1), "kept " + decimator.size());
+
+        int perColumn = SAMPLES / WIDTH;
+        for (int column = 0; column < WIDTH; column++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = column * perColumn; i < (column + 1) * perColumn; i++) {
+                min = Math.min(min, y[i]);
+                max = Math.max(max, y[i]);
+            }
+            double keptMin = Double.POSITIVE_INFINITY;
+            double keptMax = Double.NEGATIVE_INFINITY;
+            boolean first = false, last = false;
+            for (int i = 0; i < decimator.size(); i++) {
+                double x = decimator.getX()[i];
+                if (x < column * perColumn || x >= (column + 1) * perColumn)
+                    continue;
+                keptMin = Math.min(keptMin, decimator.getY()[i]);
+                keptMax = Math.max(keptMax, decimator.getY()[i]);
+                first |= x == column * perColumn;
+                last |= x == (column + 1) * perColumn - 1;
+            }
+            assertEquals(min, keptMin, "column " + column);
+            assertEquals(max, keptMax, "column " + column);
+            assertTrue(first && last, "column " + column);
+        }
+    }
+
+    @Test
+    void m4KeepsSparseSamplesAsTheyAre() {
+        Decimator decimator = new Decimator();
+        decimator.begin(0, 10, 1000);
+        for (int i = 0; i <= 10; i++)
+            decimator.add(i, i * i);
+        decimator.finish();
+        assertEquals(11, decimator.size());
+        for (int i = 0; i <= 10; i++) {
+            assertEquals(i, decimator.getX()[i]);
+            assertEquals(i * i, decimator.getY()[i]);
+        }
+    }
+
+    @Test
+    void lttbKeepsAboutOneSamplePerColumn() {
+        double[] y = noise();
+        Decimator decimator = decimate(Decimator.Mode.LTTB, y);
+        assertTrue(decimator.size() <= WIDTH + 3, "kept " + decimator.size());
+        assertTrue(decimator.size() >= WIDTH, "kept " + decimator.size());
+        assertEquals(0, decimator.getX()[0]);
+        assertEquals(SAMPLES - 1, decimator.getX()[decimator.size() - 1]);
+        for (int i = 1; i < decimator.size(); i++)
+            assertTrue(decimator.getX()[i] > decimator.getX()[i - 1]);
+        // Every kept sample is one of the input samples
+        for (int i = 0; i < decimator.size(); i++)
+            assertEquals(y[(int) decimator.getX()[i]], decimator.getY()[i]);
+    }
+
+    @Test
+    void noneKeepsEverySample() {
+        Decimator decimator = decimate(Decimator.Mode.NONE, noise());
+        assertEquals(SAMPLES, decimator.size());
+    }
+}
@@ -0,0 +1,82 @@
+package plotting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GorillaCodecTest {
+    private final GorillaCodec.BitWriter writer = new GorillaCodec.BitWriter();
+
+    private void assertRoundTrip(double[] xs, double[] ys) {
+        long[] bits = GorillaCodec.encode(xs, ys, xs.length, writer);
+        double[] decodedXs = new double[xs.length];
+        double[] decodedYs = new double[ys.length];
+        GorillaCodec.decode(bits, xs.length, decodedXs, decodedYs);
+        for (int i = 0; i < xs.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(xs[i]), Double.doubleToRawLongBits(decodedXs[i]), "x " + i);
+            assertEquals(Double.doubleToRawLongBits(ys[i]), Double.doubleToRawLongBits(decodedYs[i]), "y " + i);
+        }
+    }
+
+    @Test
+    void roundTripsRandomValues() {
+        Random random = new Random(1);
+        double[] xs = new double[1000];
+        double[] ys = new double[1000];
+        double x = 0;
+        for (int i = 0; i < xs.length; i++) {
+            x += random.nextDouble();
+            xs[i] = x;
+            ys[i] = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+        }
+        assertRoundTrip(xs, ys);
+    }
+
+    @Test
+    void roundTripsDecimalValues() {
+        double[] xs = new double[2000];
+        double[] ys = new double[2000];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = i * 0.001;
+            ys[i] = Double.parseDouble(String.format("%.2f", Math.sin(i / 50.0) * 100));
+        }
+        assertRoundTrip(xs, ys);
+    }
+
+    @Test
+    void compressesEvenlySpacedDecimals() {
+        double[] xs = new double[1024];
+        double[] ys = new double[1024];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = 1000 + i;
+            ys[i] = (i % 100) / 10.0;
+        }
+        long[] bits = GorillaCodec.encode(xs, ys, xs.length, writer);
+        // Far below the 128 bits per sample of the raw doubles
+        assertTrue(bits.length * 64L < xs.length * 16L, bits.length * 64 + " bits");
+        assertRoundTrip(xs, ys);
+    }
+
+    @Test
+    void roundTripsSpecialValues() {
+        double[] xs = {0, 1, 2, 3, 4, 5, 6, 7};
+        double[] ys = {Double.NaN, -0.0, 0.0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                Double.MIN_VALUE, Double.MAX_VALUE, -1e-300};
+        assertRoundTrip(xs, ys);
+    }
+
+    @Test
+    void roundTripsIrregularAndDecreasingX() {
+        double[] xs = {5, 4, 1e300, -1e300, 0.5, 0.5, 1e-10, 3};
+        double[] ys = {1, 2, 3, 4, 5, 6, 7, 8};
+        assertRoundTrip(xs, ys);
+    }
+
+    @Test
+    void roundTripsSingleSampleAndReusedWriter() {
+        assertRoundTrip(new double[]{42}, new double[]{0.1});
+        assertRoundTrip(new double[]{1, 2}, new double[]{Math.PI, Math.E});
+    }
+}
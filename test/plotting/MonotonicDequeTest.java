@@ -0,0 +1,52 @@
+package plotting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MonotonicDequeTest {
+    @Test
+    void tracksTheExtremesOfASlidingWindow() {
+        int window = 50;
+        MonotonicDeque min = new MonotonicDeque(window, false);
+        MonotonicDeque max = new MonotonicDeque(window, true);
+        double[] values = new double[2000];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(100);
+            min.push(i, values[i]);
+            max.push(i, values[i]);
+            min.evictBefore(i - window + 1);
+            max.evictBefore(i - window + 1);
+
+            double expectedMin = Double.POSITIVE_INFINITY;
+            double expectedMax = Double.NEGATIVE_INFINITY;
+            for (int j = Math.max(0, i - window + 1); j <= i; j++) {
+                expectedMin = Math.min(expectedMin, values[j]);
+                expectedMax = Math.max(expectedMax, values[j]);
+            }
+            assertEquals(expectedMin, min.peek(), "min at " + i);
+            assertEquals(expectedMax, max.peek(), "max at " + i);
+        }
+    }
+
+    @Test
+    void emptiesWhenEverythingIsEvicted() {
+        MonotonicDeque max = new MonotonicDeque(4, true);
+        assertTrue(max.isEmpty());
+        max.push(10, 1);
+        max.push(11, 3);
+        max.push(12, 2);
+        assertEquals(3, max.peek());
+        max.evictBefore(12);
+        assertEquals(2, max.peek());
+        max.evictBefore(13);
+        assertTrue(max.isEmpty());
+
+        max.push(13, 5);
+        max.clear();
+        assertTrue(max.isEmpty());
+    }
+}
@@ -0,0 +1,137 @@
+package plotting;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampleBufferTest {
+    @Test
+    void keepsTheNewestSamplesUnderTheirSequences() {
+        SampleBuffer buffer = new SampleBuffer(4);
+        assertTrue(buffer.isEmpty());
+        for (int i = 0; i < 10; i++)
+            buffer.add(i, i * 10);
+
+        assertEquals(4, buffer.size());
+        assertEquals(6, buffer.firstSequence());
+        assertEquals(10, buffer.nextSequence());
+        assertEquals(7, buffer.getX(7));
+        assertEquals(90, buffer.getY(9));
+        assertEquals(6, buffer.getMinX());
+        assertEquals(9, buffer.getMaxX());
+        assertEquals(60, buffer.getMinY());
+        assertEquals(90, buffer.getMaxY());
+    }
+
+    @Test
+    void rangesFollowEvictedExtremes() {
+        SampleBuffer buffer = new SampleBuffer(3);
+        buffer.add(0, 100);
+        buffer.add(1, -100);
+        buffer.add(2, 5);
+        buffer.add(3, 7);
+        assertEquals(-100, buffer.getMinY());
+        assertEquals(7, buffer.getMaxY());
+        buffer.add(4, 6);
+        assertEquals(5, buffer.getMinY());
+        assertEquals(2, buffer.getMinX());
+    }
+
+    @Test
+    void findsViewportsByX() {
+        SampleBuffer buffer = new SampleBuffer(100);
+        for (int i = 0; i < 150; i++)
+            buffer.add(i / 2, i);
+
+        // Retained sequences 50..149 have X 25..74, two samples per X
+        assertEquals(50, buffer.lowerBound(0));
+        assertEquals(60, buffer.lowerBound(30));
+        assertEquals(62, buffer.upperBound(30));
+        assertEquals(62, buffer.lowerBound(30.5));
+        assertEquals(150, buffer.lowerBound(1000));
+        assertEquals(150, buffer.upperBound(74));
+    }
+
+    @Test
+    void rangeYMatchesAScan() {
+        SampleBuffer buffer = new SampleBuffer(300);
+        Random random = new Random(5);
+        for (int i = 0; i < 1000; i++)
+            buffer.add(i, i % 7 == 0 ? Double.NaN : random.nextGaussian());
+
+        double[] range = new double[2];
+        for (int i = 0; i < 500; i++) {
+            long from = buffer.firstSequence() - 10 + random.nextInt(320);
+            long to = from + random.nextInt(320);
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (long n = Math.max(from, buffer.firstSequence()); n < Math.min(to, buffer.nextSequence()); n++) {
+                double y = buffer.getY(n);
+                if (y < min) min = y;
+                if (y > max) max = y;
+            }
+            buffer.rangeY(from, to, range);
+            assertEquals(min, range[0], from + ".." + to);
+            assertEquals(max, range[1], from + ".." + to);
+        }
+    }
+
+    @Test
+    void dropsSamplesFromTheFront() {
+        SampleBuffer buffer = new SampleBuffer(8);
+        for (int i = 0; i < 5; i++)
+            buffer.add(i, i == 1 ? -100 : i);
+        buffer.dropBefore(2);
+        assertEquals(3, buffer.size());
+        assertEquals(2, buffer.getMinY());
+        assertEquals(2, buffer.getMinX());
+        // Never past the newest sample, never backwards
+        buffer.dropBefore(100);
+        assertTrue(buffer.isEmpty());
+        assertEquals(5, buffer.firstSequence());
+        buffer.dropBefore(0);
+        assertEquals(5, buffer.firstSequence());
+    }
+
+    @Test
+    void copiesKeepTheNumbering() {
+        SampleBuffer buffer = new SampleBuffer(10);
+        for (int i = 0; i < 25; i++)
+            buffer.add(i, -i);
+
+        SampleBuffer smaller = new SampleBuffer(4, buffer);
+        assertEquals(21, smaller.firstSequence());
+        assertEquals(25, smaller.nextSequence());
+        assertEquals(-24, smaller.getMinY());
+        assertEquals(-21, smaller.getMaxY());
+
+        SampleBuffer larger = new SampleBuffer(100, buffer);
+        assertEquals(15, larger.firstSequence());
+        assertEquals(-15, larger.getY(15));
+        larger.add(25, 1);
+        assertEquals(11, larger.size());
+        double[] range = new double[2];
+        larger.rangeY(0, 100, range);
+        assertEquals(-24, range[0]);
+        assertEquals(1, range[1]);
+    }
+
+    @Test
+    void clearStartsOver() {
+        SampleBuffer buffer = new SampleBuffer(4);
+        buffer.add(1, 1);
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.nextSequence());
+        buffer.add(5, 2);
+        assertEquals(5, buffer.getMinX());
+        assertEquals(2, buffer.getMaxY());
+    }
+
+    @Test
+    void rejectsAnEmptyCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SampleBuffer(0));
+    }
+}
@@ -0,0 +1,122 @@
+package recording;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureReaderTest {
+    // Spans several pyramid nodes and ends in a partial segment
+    private static final int ROWS = 40 * CaptureFormat.SEGMENT_ROWS + 1234;
+
+    @TempDir
+    Path directory;
+
+    private Path record(int rows) throws Exception {
+        Path path = directory.resolve("test.cap");
+        Random random = new Random(7);
+        try (CaptureWriter writer = new CaptureWriter(path, XKind.SAMPLE_INDEX)) {
+            double[] row = new double[2];
+            for (int i = 0; i < rows; i++) {
+                row[0] = random.nextGaussian() + (i == 1_000_000 ? 50 : 0);
+                row[1] = i % 3 == 0 ? Double.NaN : -i;
+                while (!writer.offer(i, row, 2))
+                    Thread.onSpinWait();
+            }
+        }
+        return path;
+    }
+
+    private static void indexAll(CaptureReader capture) throws InterruptedException {
+        long segments = (capture.getRowCount() + CaptureFormat.SEGMENT_ROWS - 1) / CaptureFormat.SEGMENT_ROWS;
+        CountDownLatch indexed = new CountDownLatch((int) segments);
+        capture.startIndexing(indexed::countDown);
+        assertTrue(indexed.await(30, TimeUnit.SECONDS));
+    }
+
+    private static void assertEnvelope(CaptureReader capture, int channel, long from, long to) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (long row = Math.max(from, 0); row < Math.min(to, capture.getRowCount()); row++) {
+            double value = capture.getValue(channel, row);
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        double[] minMax = new double[2];
+        capture.envelope(channel, from, to, minMax);
+        assertEquals(min, minMax[0], "min of " + from + ".." + to);
+        assertEquals(max, minMax[1], "max of " + from + ".." + to);
+    }
+
+    @Test
+    void readsBackWhatWasWritten() throws Exception {
+        try (CaptureReader capture = new CaptureReader(record(ROWS))) {
+            assertEquals(ROWS, capture.getRowCount());
+            assertEquals(2, capture.getChannelCount());
+            assertEquals(XKind.SAMPLE_INDEX, capture.getXKind());
+            assertEquals(12345, capture.getX(12345));
+            assertEquals(-12344, capture.getValue(1, 12344));
+            assertTrue(Double.isNaN(capture.getValue(1, 12345)));
+            assertEquals(100, capture.findRow(99.5));
+            assertEquals(ROWS, capture.findRow(ROWS + 10));
+        }
+    }
+
+    @Test
+    void envelopesMatchTheRawSamples() throws Exception {
+        try (CaptureReader capture = new CaptureReader(record(ROWS))) {
+            indexAll(capture);
+            Random random = new Random(3);
+            assertEnvelope(capture, 0, 0, ROWS);
+            assertEnvelope(capture, 1, 0, ROWS);
+            assertEnvelope(capture, 0, 999_999, 1_000_001);
+            assertEnvelope(capture, 0, 16L * CaptureFormat.SEGMENT_ROWS, 32L * CaptureFormat.SEGMENT_ROWS);
+            assertEnvelope(capture, 0, 16L * CaptureFormat.SEGMENT_ROWS - 1, ROWS + 100);
+            for (int i = 0; i < 200; i++) {
+                long from = random.nextInt(ROWS);
+                long to = from + random.nextInt(ROWS - (int) from + 1);
+                assertEnvelope(capture, random.nextInt(2), from, to);
+            }
+        }
+    }
+
+    @Test
+    void rebuildsAMissingIndex() throws Exception {
+        Path path = record(3 * CaptureFormat.SEGMENT_ROWS);
+        Files.delete(MinMaxIndex.pathFor(path));
+        try (CaptureReader capture = new CaptureReader(path)) {
+            // Previews cover the range with a bounded number of samples before the tiles exist
+            double[] minMax = new double[2];
+            capture.envelope(1, 0, capture.getRowCount(), minMax);
+            assertTrue(minMax[0] <= minMax[1]);
+            indexAll(capture);
+            assertEnvelope(capture, 1, 0, capture.getRowCount());
+            assertEnvelope(capture, 0, 100, 150_000);
+        }
+        assertTrue(Files.exists(MinMaxIndex.pathFor(path)));
+    }
+
+    @Test
+    void emptyRangesGiveAnEmptyEnvelope() throws Exception {
+        try (CaptureReader capture = new CaptureReader(record(1000))) {
+            double[] minMax = new double[2];
+            capture.envelope(0, 500, 500, minMax);
+            assertTrue(minMax[0] > minMax[1]);
+            capture.envelope(1, 3, 4, minMax);
+            assertTrue(minMax[0] > minMax[1]);
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() throws Exception {
+        Path path = directory.resolve("text.cap");
+        Files.writeString(path, "not a capture".repeat(100));
+        assertThrows(java.io.IOException.class, () -> new CaptureReader(path));
+    }
+}
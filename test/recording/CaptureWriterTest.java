@@ -0,0 +1,80 @@
+package recording;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CaptureWriterTest {
+    @TempDir
+    Path directory;
+
+    private static void offer(CaptureWriter writer, double x, double... values) {
+        while (!writer.offer(x, values, values.length))
+            Thread.onSpinWait();
+    }
+
+    @Test
+    void padsShorterRowsWithNaN() throws Exception {
+        Path path = directory.resolve("short.cap");
+        try (CaptureWriter writer = new CaptureWriter(path, XKind.SECONDS)) {
+            offer(writer, 0.5, 1, 2, 3);
+            offer(writer, 1.5, 4);
+        }
+        try (CaptureReader capture = new CaptureReader(path)) {
+            assertEquals(2, capture.getRowCount());
+            assertEquals(3, capture.getChannelCount());
+            assertEquals(XKind.SECONDS, capture.getXKind());
+            assertEquals(1.5, capture.getX(1));
+            assertEquals(4, capture.getValue(0, 1));
+            assertTrue(Double.isNaN(capture.getValue(2, 1)));
+        }
+    }
+
+    @Test
+    void widerRowsContinueInANewPart() throws Exception {
+        Path path = directory.resolve("wide.cap");
+        int firstRows = CaptureFormat.SEGMENT_ROWS + 100;
+        try (CaptureWriter writer = new CaptureWriter(path, XKind.SAMPLE_INDEX)) {
+            for (int i = 0; i < firstRows; i++)
+                offer(writer, i, i);
+            for (int i = firstRows; i < firstRows + 50; i++)
+                offer(writer, i, i, -i, i % 2);
+            offer(writer, firstRows + 50, 7);
+            writer.close();
+            assertEquals(firstRows + 51, writer.getRowCount());
+            assertEquals(CaptureWriter.partPath(path, 2), writer.getPath());
+        }
+
+        try (CaptureReader capture = new CaptureReader(path)) {
+            assertEquals(firstRows, capture.getRowCount());
+            assertEquals(1, capture.getChannelCount());
+            assertEquals(firstRows - 1, capture.getValue(0, firstRows - 1));
+        }
+        Path second = directory.resolve("wide-part2.cap");
+        assertTrue(Files.exists(MinMaxIndex.pathFor(second)));
+        try (CaptureReader capture = new CaptureReader(second)) {
+            assertEquals(51, capture.getRowCount());
+            assertEquals(3, capture.getChannelCount());
+            assertEquals(firstRows, capture.getX(0));
+            assertEquals(-firstRows - 1, capture.getValue(1, 1));
+            assertEquals(7, capture.getValue(0, 50));
+            assertTrue(Double.isNaN(capture.getValue(2, 50)));
+            double[] minMax = new double[2];
+            capture.envelope(2, 0, 50, minMax);
+            assertEquals(0, minMax[0]);
+            assertEquals(1, minMax[1]);
+        }
+    }
+
+    @Test
+    void namesPartsAfterTheFirstFile() {
+        Path path = directory.resolve("run.cap");
+        assertEquals(path, CaptureWriter.partPath(path, 1));
+        assertEquals(directory.resolve("run-part3.cap"), CaptureWriter.partPath(path, 3));
+        assertEquals(directory.resolve("run-part2"), CaptureWriter.partPath(directory.resolve("run"), 2));
+    }
+}
@@ -0,0 +1,87 @@
+package recording;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinMaxIndexTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackTilesAfterReopening() throws Exception {
+        Path path = MinMaxIndex.pathFor(directory.resolve("a.cap"));
+        assertEquals(directory.resolve("a.cap.idx"), path);
+        try (MinMaxIndex index = new MinMaxIndex(path, 3, true)) {
+            index.putLevel1(0, 2, 5, -1, 1);
+            index.putLevel2(2, 1, MinMaxIndex.LEVEL2_TILES - 1, -7, 8);
+            index.setIndexedRows(0, 384);
+            index.setIndexedRows(2, CaptureFormat.SEGMENT_ROWS);
+        }
+
+        try (MinMaxIndex index = new MinMaxIndex(path, 3, false)) {
+            assertEquals(384, index.getIndexedRows(0));
+            assertEquals(0, index.getIndexedRows(1));
+            assertEquals(CaptureFormat.SEGMENT_ROWS, index.getIndexedRows(2));
+            // Segments past the end of the file are not indexed yet
+            assertEquals(0, index.getIndexedRows(40));
+            assertEquals(-1, index.getLevel1Min(0, 2, 5));
+            assertEquals(1, index.getLevel1Max(0, 2, 5));
+            assertEquals(-7, index.getLevel2Min(2, 1, MinMaxIndex.LEVEL2_TILES - 1));
+            assertEquals(8, index.getLevel2Max(2, 1, MinMaxIndex.LEVEL2_TILES - 1));
+        }
+    }
+
+    @Test
+    void readingLeavesTheFileAlone() throws Exception {
+        Path path = directory.resolve("b.cap.idx");
+        try (MinMaxIndex index = new MinMaxIndex(path, 1, true)) {
+            index.setIndexedRows(0, 64);
+        }
+        long size = Files.size(path);
+        try (MinMaxIndex index = new MinMaxIndex(path, 1, false)) {
+            assertEquals(64, index.getIndexedRows(0));
+            assertEquals(0, index.getIndexedRows(5));
+        }
+        assertEquals(size, Files.size(path));
+    }
+
+    @Test
+    void startsOverOnAForeignIndex() throws Exception {
+        Path path = directory.resolve("c.cap.idx");
+        try (MinMaxIndex index = new MinMaxIndex(path, 2, true)) {
+            index.setIndexedRows(0, 128);
+        }
+        try (MinMaxIndex index = new MinMaxIndex(path, 4, false)) {
+            assertEquals(0, index.getIndexedRows(0));
+            index.setIndexedRows(0, 64);
+        }
+        try (MinMaxIndex index = new MinMaxIndex(path, 4, false)) {
+            assertEquals(64, index.getIndexedRows(0));
+        }
+    }
+
+    @Test
+    void pyramidNodesSummarizeTheirSegments() {
+        int segments = SegmentPyramid.FANOUT * 2 + 3;
+        SegmentPyramid pyramid = new SegmentPyramid(segments, 1);
+        // The top level has a few nodes rather than a single root
+        assertEquals(2, pyramid.levels());
+        assertEquals(SegmentPyramid.FANOUT, SegmentPyramid.span(1));
+
+        for (int segment = 0; segment < segments; segment++) {
+            assertFalse(pyramid.isComplete(1, 2));
+            pyramid.add(segment, new double[]{-segment}, new double[]{segment});
+        }
+        assertTrue(pyramid.isComplete(1, 2));
+        assertEquals(-(segments - 1), pyramid.min(1, 2, 0));
+        assertEquals(SegmentPyramid.FANOUT * 2 - 1, pyramid.max(1, 1, 0));
+        assertEquals(-(SegmentPyramid.FANOUT * 2 - 1), pyramid.min(1, 1, 0));
+        assertEquals(SegmentPyramid.FANOUT - 1, pyramid.max(1, 0, 0));
+        assertEquals(5, pyramid.max(0, 5, 0));
+    }
+}
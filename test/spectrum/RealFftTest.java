@@ -0,0 +1,75 @@
+package spectrum;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RealFftTest {
+    @Test
+    void matchesDirectTransform() {
+        for (int size : new int[]{4, 8, 64, 1024}) {
+            Random random = new Random(size);
+            double[] frame = new double[size];
+            for (int i = 0; i < size; i++)
+                frame[i] = random.nextGaussian();
+
+            RealFft fft = new RealFft(size);
+            double[] power = new double[fft.bins()];
+            fft.power(frame, power);
+
+            for (int k = 0; k < fft.bins(); k++) {
+                double re = 0, im = 0;
+                for (int n = 0; n < size; n++) {
+                    re += frame[n] * Math.cos(2 * Math.PI * k * n / size);
+                    im -= frame[n] * Math.sin(2 * Math.PI * k * n / size);
+                }
+                double expected = re * re + im * im;
+                assertEquals(expected, power[k], 1e-9 * size * size, "size " + size + " bin " + k);
+            }
+        }
+    }
+
+    @Test
+    void findsTheFrequencyOfASine() {
+        int size = 256;
+        double[] frame = new double[size];
+        for (int i = 0; i < size; i++)
+            frame[i] = 3 * Math.sin(2 * Math.PI * 17 * i / size) + 1;
+
+        RealFft fft = new RealFft(size);
+        double[] power = new double[fft.bins()];
+        fft.power(frame, power);
+
+        assertEquals(size / 2 + 1, fft.bins());
+        assertEquals((double) size * size, power[0], 1e-6);
+        assertEquals(Math.pow(3 * size / 2.0, 2), power[17], 1e-6);
+        for (int k = 1; k < fft.bins(); k++) {
+            if (k != 17)
+                assertEquals(0, power[k], 1e-6, "bin " + k);
+        }
+    }
+
+    @Test
+    void givesTheSameResultWhenReused() {
+        RealFft fft = new RealFft(32);
+        double[] frame = new double[32];
+        frame[3] = 1;
+        double[] first = new double[fft.bins()];
+        double[] second = new double[fft.bins()];
+        fft.power(frame, first);
+        fft.power(frame, second);
+        assertArrayEquals(first, second);
+        // A unit impulse has a flat spectrum
+        for (double bin : first)
+            assertEquals(1, bin, 1e-12);
+    }
+
+    @Test
+    void rejectsSizesThatAreNotPowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new RealFft(0));
+        assertThrows(IllegalArgumentException.class, () -> new RealFft(2));
+        assertThrows(IllegalArgumentException.class, () -> new RealFft(48));
+    }
+}
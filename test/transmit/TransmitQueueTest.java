@@ -0,0 +1,167 @@
+package transmit;
+
+import metrics.LatencyHistogram;
+import metrics.PipelineMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import source.DataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransmitQueueTest {
+    // Collects what was written; writes wait for the gate, which starts open
+    private static class RecordingSink implements DataSource {
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        private final CountDownLatch firstWrite = new CountDownLatch(1);
+        private volatile String failure;
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public void open(Listener listener) {
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            firstWrite.countDown();
+            if (failure != null)
+                throw new IOException(failure);
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (written) {
+                written.write(data, offset, length);
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+
+        byte[] bytes() {
+            synchronized (written) {
+                return written.toByteArray();
+            }
+        }
+
+        String text() {
+            return new String(bytes(), StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final RecordingSink sink = new RecordingSink();
+    private final PipelineMetrics metrics = new PipelineMetrics(() -> 0, () -> 0,
+            new LatencyHistogram(), new LatencyHistogram());
+    private final CompletableFuture<String> error = new CompletableFuture<>();
+    private final TransmitQueue queue = new TransmitQueue(sink, metrics, error::complete);
+
+    @AfterEach
+    void close() {
+        queue.close();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void sendsTextWithItsTerminatorInOrder() throws Exception {
+        assertTrue(queue.send("a".getBytes(), new byte[]{'\n'}));
+        assertTrue(queue.send("bc".getBytes(), new byte[]{'\r', '\n'}));
+        await(() -> queue.getBytesSent() == 6);
+        assertEquals("a\nbc\r\n", sink.text());
+        assertEquals(0, queue.getQueuedBytes());
+        assertEquals(6, metrics.getBytesSent());
+    }
+
+    @Test
+    void rejectsWhatDoesNotFitWithoutQueuingAnyOfIt() throws Exception {
+        sink.gate = new CountDownLatch(1);
+        assertTrue(queue.send(new byte[10], new byte[0]));
+        assertTrue(sink.firstWrite.await(5, TimeUnit.SECONDS));
+
+        // The thread is stuck in the first write, the ring fills up behind it
+        byte[] full = new byte[TransmitQueue.CAPACITY - 1];
+        Arrays.fill(full, (byte) 'x');
+        assertTrue(queue.send(full, new byte[]{'\n'}));
+        assertEquals(TransmitQueue.CAPACITY, queue.getQueuedBytes());
+        assertFalse(queue.send(new byte[]{'y'}, new byte[0]));
+        assertEquals(TransmitQueue.CAPACITY, queue.getQueuedBytes());
+
+        sink.gate.countDown();
+        await(() -> queue.getBytesSent() == 10 + TransmitQueue.CAPACITY);
+        byte[] bytes = sink.bytes();
+        assertEquals('x', bytes[10]);
+        assertEquals('\n', bytes[bytes.length - 1]);
+    }
+
+    @Test
+    void repeatsScheduledCommandsUntilCancelled() throws Exception {
+        TransmitQueue.Schedule schedule = queue.schedule("p".getBytes(), TimeUnit.MILLISECONDS.toNanos(5));
+        assertTrue(queue.hasSchedules());
+        await(() -> queue.getBytesSent() >= 3);
+        queue.cancelSchedules();
+        assertFalse(queue.hasSchedules());
+        long sent = queue.getBytesSent();
+        Thread.sleep(50);
+        assertTrue(queue.getBytesSent() <= sent + 1);
+        assertTrue(sink.text().chars().allMatch(c -> c == 'p'));
+        schedule.cancel();
+
+        assertThrows(IllegalArgumentException.class, () -> queue.schedule(new byte[0], 1_000_000_000L));
+        assertThrows(IllegalArgumentException.class, () -> queue.schedule(new byte[]{1}, 1000));
+    }
+
+    @Test
+    void streamsAFile(@TempDir Path directory) throws Exception {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++)
+            content[i] = (byte) i;
+        Path file = Files.write(directory.resolve("firmware.bin"), content);
+
+        // Held in the first write, so the transfer is still running when a second one is asked for
+        sink.gate = new CountDownLatch(1);
+        CompletableFuture<Long> finished = new CompletableFuture<>();
+        queue.streamFile(file, (path, bytesSent, failure) -> {
+            if (failure != null)
+                finished.completeExceptionally(failure);
+            else
+                finished.complete(bytesSent);
+        });
+        assertThrows(IllegalStateException.class, () -> queue.streamFile(file, (path, bytesSent, failure) -> {
+        }));
+        sink.gate.countDown();
+        assertEquals(content.length, finished.get(5, TimeUnit.SECONDS));
+        await(() -> !queue.isStreaming());
+        assertArrayEquals(content, sink.bytes());
+    }
+
+    @Test
+    void reportsWriteErrors() throws Exception {
+        sink.failure = "port gone";
+        queue.send("x".getBytes(), new byte[0]);
+        assertEquals("port gone", error.get(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,186 @@
+package trigger;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TriggerEngineTest {
+    private static TriggerEngine.Settings settings(TriggerEngine.Condition condition, double hysteresis,
+                                                   TriggerEngine.Mode mode, int preRows, int postRows) {
+        return new TriggerEngine.Settings(0, condition, 0.5, hysteresis, mode, preRows, postRows);
+    }
+
+    // Square wave on channel 0 with the given period, the row number on channel 1
+    private static void feedSquare(TriggerEngine engine, int from, int to, int period) {
+        double[] row = new double[2];
+        for (int i = from; i < to; i++) {
+            row[0] = (i / (period / 2)) % 2;
+            row[1] = i;
+            engine.accept(i, row, 2);
+        }
+    }
+
+    @Test
+    void capturesPreAndPostRowsAroundARisingEdge() {
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.RISING, 0,
+                TriggerEngine.Mode.NORMAL, 5, 10));
+        assertNull(engine.getLatest());
+        feedSquare(engine, 0, 30, 20);
+
+        TriggerFrame frame = engine.getLatest();
+        assertNotNull(frame);
+        assertEquals(15, frame.getRows());
+        assertEquals(2, frame.getChannelCount());
+        assertEquals(5, frame.getTriggerRow());
+        // The first rising edge after the pre-trigger window filled is at row 10
+        assertEquals(10, frame.getTriggerX());
+        assertFalse(frame.isForced());
+        for (int row = 0; row < frame.getRows(); row++) {
+            assertEquals(5 + row, frame.getX(row));
+            assertEquals(5 + row, frame.getValues(1)[row]);
+        }
+        assertEquals(0, frame.getValues(0)[frame.getTriggerRow() - 1]);
+        assertEquals(1, frame.getValues(0)[frame.getTriggerRow()]);
+    }
+
+    @Test
+    void firesOnFallingEdges() {
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.FALLING, 0,
+                TriggerEngine.Mode.NORMAL, 2, 2));
+        feedSquare(engine, 0, 30, 20);
+        assertEquals(20, engine.getLatest().getTriggerX());
+    }
+
+    @Test
+    void hysteresisIgnoresNoiseAroundTheLevel() {
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.RISING, 0.2,
+                TriggerEngine.Mode.NORMAL, 0, 1));
+        double[] row = new double[1];
+        double[] signal = {0, 0.6, 0.45, 0.55, 0.45, 0.6, 0.2, 0.7};
+        long sequence = 0;
+        int fired = 0;
+        for (int i = 0; i < signal.length; i++) {
+            row[0] = signal[i];
+            engine.accept(i, row, 1);
+            TriggerFrame frame = engine.getLatest();
+            if (frame != null && frame.getSequence() != sequence) {
+                sequence = frame.getSequence();
+                fired++;
+                assertTrue(frame.getTriggerX() == 1 || frame.getTriggerX() == 7, "fired at " + frame.getTriggerX());
+            }
+        }
+        assertEquals(2, fired);
+    }
+
+    // X of every frame the signal triggers, one row per frame
+    private static List<Double> fireAt(TriggerEngine engine, double... signal) {
+        List<Double> fired = new ArrayList<>();
+        double[] row = new double[1];
+        long sequence = 0;
+        for (int i = 0; i < signal.length; i++) {
+            row[0] = signal[i];
+            engine.accept(i, row, 1);
+            TriggerFrame frame = engine.getLatest();
+            if (frame != null && frame.getSequence() != sequence) {
+                sequence = frame.getSequence();
+                fired.add(frame.getTriggerX());
+            }
+        }
+        return fired;
+    }
+
+    @Test
+    void levelConditionsRearmPastTheHysteresisBand() {
+        TriggerEngine above = new TriggerEngine(settings(TriggerEngine.Condition.ABOVE, 0.2,
+                TriggerEngine.Mode.NORMAL, 0, 1));
+        assertEquals(List.of(0.0, 5.0), fireAt(above, 0.6, 0.7, 0.45, 0.6, 0.2, 0.55, 0.9));
+
+        TriggerEngine below = new TriggerEngine(settings(TriggerEngine.Condition.BELOW, 0.2,
+                TriggerEngine.Mode.NORMAL, 0, 1));
+        assertEquals(List.of(0.0, 5.0), fireAt(below, 0.4, 0.3, 0.6, 0.4, 0.8, 0.45, 0.1));
+    }
+
+    @Test
+    void levelConditionsFireRightAfterThePreTriggerWindow() {
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.ABOVE, 0,
+                TriggerEngine.Mode.NORMAL, 3, 1));
+        assertEquals(List.of(3.0), fireAt(engine, 1, 1, 1, 1, 1, 1));
+    }
+
+    @Test
+    void singleModeStopsUntilRearmed() {
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.RISING, 0,
+                TriggerEngine.Mode.SINGLE, 0, 2));
+        feedSquare(engine, 0, 100, 20);
+        assertTrue(engine.isStopped());
+        TriggerFrame frame = engine.getLatest();
+        assertEquals(10, frame.getTriggerX());
+        assertEquals(1, frame.getSequence());
+
+        engine.rearm();
+        feedSquare(engine, 100, 140, 20);
+        frame = engine.getLatest();
+        assertEquals(2, frame.getSequence());
+        assertEquals(110, frame.getTriggerX());
+    }
+
+    @Test
+    void autoModeCapturesWithoutATrigger() {
+        AtomicLong clock = new AtomicLong();
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.ABOVE, 0,
+                TriggerEngine.Mode.AUTO, 0, 3), clock::get, 100, TriggerEngine.Settings.MAX_SAMPLES);
+        double[] row = {0};
+        engine.accept(0, row, 1);
+        clock.set(100);
+        engine.accept(1, row, 1);
+        assertNull(engine.getLatest());
+
+        clock.set(101);
+        for (int i = 2; i < 5; i++)
+            engine.accept(i, row, 1);
+        TriggerFrame frame = engine.getLatest();
+        assertNotNull(frame);
+        assertTrue(frame.isForced());
+        assertEquals(2, frame.getTriggerX());
+    }
+
+    @Test
+    void leavesOutChannelsPastTheMemoryBound() {
+        int rows = TriggerEngine.Settings.MAX_ROWS;
+        TriggerEngine.Settings wide = settings(TriggerEngine.Condition.RISING, 0, TriggerEngine.Mode.NORMAL,
+                rows / 2, rows / 2);
+        int kept = wide.maxChannels();
+        assertTrue(kept >= 1);
+        assertThrows(IllegalArgumentException.class, () -> wide.requireChannels(kept + 1));
+        wide.requireChannels(kept);
+
+        // 100 rows of X and 19 channels fit in 2000 samples
+        TriggerEngine engine = new TriggerEngine(settings(TriggerEngine.Condition.RISING, 0,
+                TriggerEngine.Mode.NORMAL, 10, 90), System::nanoTime, 0, 2000);
+        double[] row = new double[100];
+        for (int i = 0; i < 120; i++) {
+            row[0] = i >= 15 ? 1 : 0;
+            engine.accept(i, row, row.length);
+        }
+        assertEquals(19, engine.getLatest().getChannelCount());
+        assertEquals(100, engine.getLatest().getRows());
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new TriggerEngine.Settings(-1,
+                TriggerEngine.Condition.RISING, 0, 0, TriggerEngine.Mode.AUTO, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TriggerEngine.Settings(0,
+                TriggerEngine.Condition.RISING, Double.NaN, 0, TriggerEngine.Mode.AUTO, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TriggerEngine.Settings(0,
+                TriggerEngine.Condition.RISING, 0, -1, TriggerEngine.Mode.AUTO, 10, 10));
+        assertThrows(IllegalArgumentException.class, () -> new TriggerEngine.Settings(0,
+                TriggerEngine.Condition.RISING, 0, 0, TriggerEngine.Mode.AUTO, 10, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TriggerEngine.Settings(0,
+                TriggerEngine.Condition.RISING, 0, 0, TriggerEngine.Mode.AUTO, TriggerEngine.Settings.MAX_ROWS, 1));
+    }
+}